@@ -8,14 +8,12 @@ public enum Activity {
 	WORK(){
 		public void defaultAction(Unit unit) throws ModelException{
 			Cube unitCube = unit.occupiesCube();
-			for (Cube c : unitCube.getSurroundingCubes()){
-				try{
-					unit.workAt(c.getXPosition(), c.getYPosition(), c.getZPosition());
-				} catch (NullPointerException ex){
-					continue;
-				}
+			int x = unitCube.getXPosition(), y = unitCube.getYPosition(), z = unitCube.getZPosition();
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (unit.getWorld().isInside(nx, ny, nz))
+					unit.workAt(nx, ny, nz);
 			}
-				
 		}
 	},
 	REST(){
@@ -32,9 +30,12 @@ public enum Activity {
 //				Cube a = unit.getWorld().getRandomSpawnCube();
 //				target = a.getPosition();
 //			}
-			for (Cube c : unit.getWorld().viableSpawnCubes){
+			World world = unit.getWorld();
+			for (int index = 0 ; index < world.getNbCubes() ; index++){
+				if (! world.isWalkable(index))
+					continue;
 				try{
-					unit.moveTo(c.getPosition());
+					unit.moveTo(world.getCubeAtIndex(index).getPosition());
 					break;
 				} catch (ModelException ex){
 					continue;
@@ -44,15 +45,22 @@ public enum Activity {
 	},
 	FIGHT(){
 		public void defaultAction(Unit unit) throws ModelException{
-			for (Unit u : unit.getWorld().getActiveUnits()){
-				try{
-					unit.fight(u);
-					break;
-				} catch (ModelException ex){
-					continue;
+			// the Units within reach stand in the Cubes around the Cube of this Unit, on its level
+			World world = unit.getWorld();
+			int[] cube = unit.getCubeCoordinate();
+			for (int dx = -1 ; dx <= 1 ; dx++)
+				for (int dy = -1 ; dy <= 1 ; dy++){
+					if (! world.isInside(cube[0] + dx, cube[1] + dy, cube[2]))
+						continue;
+					for (Unit u : world.getUnitsIn(world.getCubeIndex(cube[0] + dx, cube[1] + dy, cube[2]))){
+						try{
+							unit.fight(u);
+							return;
+						} catch (ModelException ex){
+							continue;
+						}
+					}
 				}
-			}				
-		
 		}
 	};
 	
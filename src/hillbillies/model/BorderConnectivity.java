@@ -0,0 +1,100 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class keeping track of which solid Cubes of a World are connected to a border of the World through other
+ * directly adjacent solid Cubes. It keeps the contract of the ConnectedToBorder of the course, but is set up
+ * for a whole terrain at once instead of one change per passable Cube, and numbers Cubes by their index in the
+ * World.
+ * @invar	A Cube is solid connected to the border if and only if it is solid and a chain of directly adjacent
+ * 			solid Cubes leads from it to a Cube on the border.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public abstract class BorderConnectivity {
+
+	/**
+	 * Initialize a new connectivity for a World with the dimensions of the given terrain.
+	 */
+	BorderConnectivity(TerrainStore terrain){
+		this.nbX = terrain.getNbCubesX();
+		this.nbY = terrain.getNbCubesY();
+		this.nbZ = terrain.getNbCubesZ();
+	}
+
+	/**
+	 * Check whether the Cube at the given coordinates is a solid Cube connected to a border of the World
+	 * through other directly adjacent solid Cubes.
+	 */
+	public abstract boolean isSolidConnectedToBorder(int x, int y, int z);
+
+	/**
+	 * Make the Cube at the given coordinates solid instead of passable.
+	 * @return	The coordinates of the Cubes that became connected to the border by this change. If there are
+	 * 			any, the given Cube is one of them.
+	 */
+	public abstract List<int[]> changePassableToSolid(int x, int y, int z);
+
+	/**
+	 * Make the Cube at the given coordinates passable instead of solid.
+	 * @return	The coordinates of the solid Cubes that were connected to the border before this change, but
+	 * 			are not anymore.
+	 */
+	public abstract List<int[]> changeSolidToPassable(int x, int y, int z);
+
+	/**
+	 * Make the Cubes with the given indices solid instead of passable, in a single pass.
+	 * @param cubes		The indices of the Cubes, in the first places of the array.
+	 * @param nbCubes	The number of indices given.
+	 * @return	The coordinates of the Cubes that became connected to the border by this change.
+	 * @note	This connectivity makes the Cubes solid one by one. Subclasses may do better.
+	 */
+	public List<int[]> changePassableToSolid(int[] cubes, int nbCubes){
+		List<int[]> result = new ArrayList<int[]>();
+		for (int i = 0 ; i < nbCubes ; i++)
+			result.addAll(this.changePassableToSolid(cubes[i] % this.nbX, (cubes[i] / this.nbX) % this.nbY, cubes[i] / (this.nbX * this.nbY)));
+		return result;
+	}
+
+	/**
+	 * Make the Cubes with the given indices passable instead of solid, in a single pass.
+	 * @param cubes		The indices of the Cubes, in the first places of the array.
+	 * @param nbCubes	The number of indices given.
+	 * @return	The coordinates of the solid Cubes that were connected to the border before this change, but
+	 * 			are not anymore.
+	 * @note	This connectivity makes the Cubes passable one by one. Subclasses may do better.
+	 */
+	public List<int[]> changeSolidToPassable(int[] cubes, int nbCubes){
+		List<int[]> result = new ArrayList<int[]>();
+		for (int i = 0 ; i < nbCubes ; i++)
+			result.addAll(this.changeSolidToPassable(cubes[i] % this.nbX, (cubes[i] / this.nbX) % this.nbY, cubes[i] / (this.nbX * this.nbY)));
+		return result;
+	}
+
+	final boolean isInside(int x, int y, int z){
+		return (x >= 0) && (x < this.nbX) && (y >= 0) && (y < this.nbY) && (z >= 0) && (z < this.nbZ);
+	}
+
+	final int getIndex(int x, int y, int z){
+		return x + y * this.nbX + z * this.nbX * this.nbY;
+	}
+
+	final boolean isBorder(int index){
+		int x = index % this.nbX, y = (index / this.nbX) % this.nbY, z = index / (this.nbX * this.nbY);
+		return (x == 0) || (x == this.nbX - 1) || (y == 0) || (y == this.nbY - 1) || (z == 0) || (z == this.nbZ - 1);
+	}
+
+	/**
+	 * Constants registering the steps to the six directly adjacent Cubes.
+	 */
+	static final int[] ADJACENT_DX = {-1, 1, 0, 0, 0, 0};
+	static final int[] ADJACENT_DY = {0, 0, -1, 1, 0, 0};
+	static final int[] ADJACENT_DZ = {0, 0, 0, 0, -1, 1};
+
+	final int nbX;
+	final int nbY;
+	final int nbZ;
+}
@@ -162,6 +162,7 @@ public class Boulder {
 				this.position[2] = this.fallingTo;
 			else 
 				this.position[2] += dt*this.fallSpeed;
+			this.world.targetsChanged(FieldTarget.BOULDER);
 		}
 	}
 	
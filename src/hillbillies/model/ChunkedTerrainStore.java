@@ -0,0 +1,235 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A store for the CubeTypes of a World that divides the World into chunks of CHUNK_SIZE Cubes along every axis.
+ * A chunk whose Cubes all have the same type is stored as that single type, and only expands into an array of
+ * one byte per Cube when one of its Cubes is changed into another type. Generated Worlds are mostly solid rock
+ * deep down and air up top, so most of their chunks never expand.
+ * Every chunk has a version that increases with every change of one of its Cubes, and a dirty flag that is set
+ * by every change and cleared by whoever processed it, so other parts of the game can invalidate what they
+ * derived from the terrain per chunk.
+ * The structures a World derives from a chunked store, such as its neighbour masks, walkable components and
+ * connection to the border, are chunked as well, so the whole World shrinks with its terrain.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public final class ChunkedTerrainStore extends TerrainStore {
+
+	/**
+	 * Initialize a new store holding the given values of CubeTypes.
+	 * @param types	The value of the CubeType of every Cube, by its x, y and z coordinate.
+	 * @post	Every chunk whose Cubes all have the same type is stored as that type.
+	 * @post	No chunk is dirty, and every chunk has version 0.
+	 */
+	ChunkedTerrainStore(int[][][] types){
+		super(types.length, types[0].length, types[0][0].length);
+		this.chunksX = (this.getNbCubesX() + CHUNK_SIZE - 1) >> CHUNK_BITS;
+		this.chunksY = (this.getNbCubesY() + CHUNK_SIZE - 1) >> CHUNK_BITS;
+		int nbChunks = this.chunksX * this.chunksY * ((this.getNbCubesZ() + CHUNK_SIZE - 1) >> CHUNK_BITS);
+		this.uniform = new byte[nbChunks];
+		this.cubes = new byte[nbChunks][];
+		this.versions = new int[nbChunks];
+		for (int chunk = 0 ; chunk < nbChunks ; chunk++)
+			this.load(chunk, types);
+	}
+
+	/**
+	 * Store the given types of the Cubes of the given chunk, as a single type if they are all the same.
+	 */
+	private void load(int chunk, int[][][] types){
+		int x0 = this.getChunkX(chunk) << CHUNK_BITS, y0 = this.getChunkY(chunk) << CHUNK_BITS, z0 = this.getChunkZ(chunk) << CHUNK_BITS;
+		int x1 = Math.min(x0 + CHUNK_SIZE, this.getNbCubesX()), y1 = Math.min(y0 + CHUNK_SIZE, this.getNbCubesY()),
+				z1 = Math.min(z0 + CHUNK_SIZE, this.getNbCubesZ());
+		int first = types[x0][y0][z0];
+		this.uniform[chunk] = (byte) first;
+		for (int x = x0 ; x < x1 ; x++)
+			for (int y = y0 ; y < y1 ; y++)
+				for (int z = z0 ; z < z1 ; z++)
+					if (types[x][y][z] != first){
+						if (this.cubes[chunk] == null)
+							this.expand(chunk);
+						this.cubes[chunk][getOffset(x, y, z)] = (byte) types[x][y][z];
+					}
+	}
+
+	@Override
+	public int getType(int x, int y, int z){
+		int chunk = this.getChunkIndex(x, y, z);
+		byte[] cubes = this.cubes[chunk];
+		if (cubes == null)
+			return this.uniform[chunk];
+		return cubes[getOffset(x, y, z)];
+	}
+
+	/**
+	 * Set the value of the CubeType of the Cube at the given coordinates to the given value.
+	 * @post	If the type of the Cube changes, the chunk of the Cube is expanded if it was stored as a single type,
+	 * 			its version is increased and it is dirty.
+	 * 			|if (getType(x, y, z) != value)
+	 * 			|	then new.getChunkVersion(getChunkIndex(x, y, z)) == getChunkVersion(getChunkIndex(x, y, z)) + 1
+	 * 			|		&& new.isDirty(getChunkIndex(x, y, z))
+	 */
+	@Override
+	void setType(int x, int y, int z, int value){
+		if (this.getType(x, y, z) == value)
+			return;
+		int chunk = this.getChunkIndex(x, y, z);
+		if (this.cubes[chunk] == null)
+			this.expand(chunk);
+		this.cubes[chunk][getOffset(x, y, z)] = (byte) value;
+		this.versions[chunk] += 1;
+		this.dirty.set(chunk);
+	}
+
+	/**
+	 * Replace the single type of the given chunk by an array holding that type for every Cube.
+	 */
+	private void expand(int chunk){
+		byte[] cubes = new byte[CHUNK_VOLUME];
+		if (this.uniform[chunk] != 0)
+			Arrays.fill(cubes, this.uniform[chunk]);
+		this.cubes[chunk] = cubes;
+		this.nbExpanded += 1;
+	}
+
+	/**
+	 * Return a new chunked array holding the given value for every Cube of this store.
+	 */
+	@Override
+	CubeArray createCubeArray(int initial){
+		return CubeArray.chunked(this.getNbCubesX(), this.getNbCubesY(), this.getNbCubesZ(), initial);
+	}
+
+	/**
+	 * Return a new chunked array holding the given value for every Cube of this store.
+	 */
+	@Override
+	CubeArray createSmallCubeArray(int initial){
+		return this.createCubeArray(initial);
+	}
+
+	@Override
+	public long getStorageSize(){
+		return this.uniform.length + (long) this.nbExpanded * CHUNK_VOLUME;
+	}
+
+	/**
+	 * Return the number of chunks of this store.
+	 */
+	public int getNbChunks(){
+		return this.uniform.length;
+	}
+
+	/**
+	 * Return the number of chunks of this store that are stored with one byte per Cube.
+	 */
+	public int getNbExpandedChunks(){
+		return this.nbExpanded;
+	}
+
+	/**
+	 * Return the index of the chunk holding the Cube at the given coordinates.
+	 * Chunks are numbered like Cubes: along the x-axis first, then along the y-axis and then along the z-axis.
+	 */
+	public int getChunkIndex(int x, int y, int z){
+		return (x >> CHUNK_BITS) + this.chunksX * ((y >> CHUNK_BITS) + this.chunksY * (z >> CHUNK_BITS));
+	}
+
+	/**
+	 * Return the x coordinate of the chunk with the given index, in chunks.
+	 */
+	public int getChunkX(int chunk){
+		return chunk % this.chunksX;
+	}
+
+	/**
+	 * Return the y coordinate of the chunk with the given index, in chunks.
+	 */
+	public int getChunkY(int chunk){
+		return (chunk / this.chunksX) % this.chunksY;
+	}
+
+	/**
+	 * Return the z coordinate of the chunk with the given index, in chunks.
+	 */
+	public int getChunkZ(int chunk){
+		return chunk / (this.chunksX * this.chunksY);
+	}
+
+	/**
+	 * Check whether all Cubes of the chunk with the given index are stored as a single type.
+	 */
+	public boolean isUniform(int chunk){
+		return this.cubes[chunk] == null;
+	}
+
+	/**
+	 * Return the version of the chunk with the given index, which increases with every change of one of its Cubes.
+	 */
+	public int getChunkVersion(int chunk){
+		return this.versions[chunk];
+	}
+
+	/**
+	 * Check whether one of the Cubes of the chunk with the given index changed since its dirty flag was cleared.
+	 */
+	public boolean isDirty(int chunk){
+		return this.dirty.get(chunk);
+	}
+
+	/**
+	 * Return the indices of the dirty chunks, in increasing order.
+	 */
+	public int[] getDirtyChunks(){
+		return this.dirty.stream().toArray();
+	}
+
+	/**
+	 * Clear the dirty flag of the chunk with the given index.
+	 * @post	| ! new.isDirty(chunk)
+	 */
+	public void clearDirty(int chunk){
+		this.dirty.clear(chunk);
+	}
+
+	/**
+	 * Return the position of the Cube at the given coordinates in the array of its chunk.
+	 */
+	private static int getOffset(int x, int y, int z){
+		return (x & CHUNK_MASK) | ((y & CHUNK_MASK) << CHUNK_BITS) | ((z & CHUNK_MASK) << (2 * CHUNK_BITS));
+	}
+
+	/**
+	 * Constant registering the number of bits of a coordinate that give the position of a Cube in its chunk.
+	 */
+	public static final int CHUNK_BITS = 4;
+
+	/**
+	 * Constant registering the number of Cubes of a chunk along every axis.
+	 */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int CHUNK_VOLUME = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+
+	private final int chunksX;
+	private final int chunksY;
+
+	/**
+	 * Variable registering, per chunk, the value of the type of its Cubes if it is not expanded.
+	 */
+	private final byte[] uniform;
+
+	/**
+	 * Variable registering, per chunk, the values of the types of its Cubes, or null if it is not expanded.
+	 */
+	private final byte[][] cubes;
+
+	private final int[] versions;
+	private final BitSet dirty = new BitSet();
+	private int nbExpanded;
+}
@@ -0,0 +1,157 @@
+package hillbillies.model;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import ogp.framework.util.ModelException;
+
+/**
+ * A class of schedulers that make the solid Cubes of a World that lost their connection to the border cave in.
+ * Every such Cube is given a random delay of at most the maximal delay of its scheduler, and caves in at the
+ * first tick after its delay has passed, so a loose mass crumbles over a few seconds instead of all at once.
+ * At most the budget of the scheduler of Cubes cave in every tick; the others wait for the next tick, in the
+ * order of their time.
+ * @invar	The budget of a scheduler is never negative.
+ * 			|getBudget() >= 0
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class CollapseScheduler {
+
+	/**
+	 * Initialize a new scheduler for the given World with the given budget.
+	 * @param budget	The number of Cubes that may cave in every tick, or zero for no limit.
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 */
+	CollapseScheduler(World world, int budget) throws IllegalArgumentException{
+		this.world = world;
+		this.setBudget(budget);
+	}
+
+	/**
+	 * Return the number of Cubes that may cave in every tick.
+	 * @return	Zero if every Cube whose delay has passed caves in at the next tick.
+	 */
+	public int getBudget(){
+		return this.budget;
+	}
+
+	/**
+	 * Set the number of Cubes that may cave in every tick to the given number.
+	 * @param budget	The new budget, or zero for no limit.
+	 * @post	The budget of this scheduler is the given budget.
+	 * 			|new.getBudget() == budget
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 * 			|budget < 0
+	 */
+	public void setBudget(int budget) throws IllegalArgumentException{
+		if (budget < 0)
+			throw new IllegalArgumentException("Negative budget");
+		this.budget = budget;
+	}
+
+	/**
+	 * Schedule the Cubes at the given coordinates to cave in.
+	 * @param cubes	The coordinates of the Cubes, as arrays {x, y, z}.
+	 * @post	Every given Cube that was not scheduled yet caves in after a random delay of at most MAX_DELAY
+	 * 			seconds from the current time of the World of this scheduler.
+	 */
+	void schedule(List<int[]> cubes){
+		for (int[] cube : cubes){
+			int index = this.world.getCubeIndex(cube[0], cube[1], cube[2]);
+			if (this.scheduled.get(index))
+				continue;
+			this.scheduled.set(index);
+			this.queue.add(new Collapse(this.world.getTime() + this.random.nextDouble() * MAX_DELAY, index));
+		}
+	}
+
+	/**
+	 * Make the Cubes whose delay has passed at the given time cave in, in the order of their time.
+	 * @param time	The time of the World at the end of the current tick.
+	 * @post	At most the budget of Cubes, unless it is zero, are removed from this scheduler. Those that are
+	 * 			still solid and not connected to the border have caved in.
+	 * @throws ModelException
+	 * 			The debris of a Cube could not be placed in the World.
+	 */
+	void runCollapses(double time) throws ModelException{
+		int remaining = (this.budget == 0) ? Integer.MAX_VALUE : this.budget;
+		while ((remaining > 0) && ! this.queue.isEmpty() && (this.queue.peek().time <= time)){
+			int index = this.queue.poll().cube;
+			this.scheduled.clear(index);
+			remaining -= 1;
+			Cube cube = this.world.getCubeAtIndex(index);
+			// the Cube may have been dug out or joined to the border again since it was scheduled
+			if (cube.isPassableType() || this.world.isSolidConnectedToBorder(cube.getXPosition(), cube.getYPosition(), cube.getZPosition()))
+				continue;
+			this.world.caveInCube(cube.getXPosition(), cube.getYPosition(), cube.getZPosition());
+			this.nbCollapses += 1;
+		}
+	}
+
+	/**
+	 * Return the number of Cubes that caved in through this scheduler.
+	 */
+	public long getNbCollapses(){
+		return this.nbCollapses;
+	}
+
+	/**
+	 * Return the number of Cubes that are scheduled to cave in.
+	 */
+	public int getBacklog(){
+		return this.queue.size();
+	}
+
+	/**
+	 * Return the number of Cubes whose delay has passed at the given time, but that did not cave in yet.
+	 */
+	public int getNbOverdue(double time){
+		int result = 0;
+		for (Collapse collapse : this.queue)
+			if (collapse.time <= time)
+				result += 1;
+		return result;
+	}
+
+	/**
+	 * A class of Cubes scheduled to cave in at a given time.
+	 */
+	private static class Collapse implements Comparable<Collapse> {
+
+		private Collapse(double time, int cube){
+			this.time = time;
+			this.cube = cube;
+		}
+
+		@Override
+		public int compareTo(Collapse other){
+			return Double.compare(this.time, other.time);
+		}
+
+		private final double time;
+		private final int cube;
+	}
+
+	/**
+	 * Constant registering the maximal delay, in seconds, between losing the connection to the border and caving in.
+	 */
+	public static final double MAX_DELAY = 5.0;
+
+	/**
+	 * Constant registering the number of Cubes that may cave in every tick in a new World.
+	 */
+	public static final int DEFAULT_BUDGET = 64;
+
+	private final World world;
+	private int budget;
+	private final PriorityQueue<Collapse> queue = new PriorityQueue<Collapse>();
+	private final BitSet scheduled = new BitSet();
+	private final Random random = new Random();
+	private long nbCollapses;
+}
@@ -0,0 +1,40 @@
+package hillbillies.model;
+
+/**
+ * An enumeration of the ways a World can keep track of the solid Cubes connected to its border.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public enum ConnectivityBackend {
+
+	/**
+	 * Every change flood-fills the solid blobs around it: cheap to set up and fast as long as the border is near,
+	 * but a Cube mined deep inside a large solid mass can cost a search of the whole mass.
+	 */
+	FLOOD_FILL {
+		@Override
+		BorderConnectivity createConnectivity(TerrainStore terrain){
+			return new FloodFillConnectivity(terrain);
+		}
+	},
+
+	/**
+	 * A spanning forest of the solid Cubes with replacement edges kept on levels: every change costs amortised
+	 * polylogarithmic time, whatever the size of the solid mass, at the price of more memory and a slower setup.
+	 */
+	DYNAMIC {
+		@Override
+		BorderConnectivity createConnectivity(TerrainStore terrain){
+			return new DynamicConnectivity(terrain);
+		}
+	};
+
+	/**
+	 * Create a connectivity of this backend for the given terrain.
+	 * @param terrain	The types of the Cubes of a World.
+	 * @return	A connectivity in which a Cube is solid connected to the border if and only if it is solid in
+	 * 			the given terrain and a chain of directly adjacent solid Cubes links it to the border.
+	 */
+	abstract BorderConnectivity createConnectivity(TerrainStore terrain);
+}
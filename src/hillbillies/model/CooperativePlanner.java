@@ -0,0 +1,417 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import ogp.framework.util.ModelException;
+
+/**
+ * A class of cooperative route planners (windowed hierarchical cooperative A*, WHCA*) for the Units of a World
+ * whose Faction opted in.
+ * Time is divided into slots of SLOT_DURATION seconds. A shared reservation table records which Unit will be
+ * in which Cube during which slot. A Unit plans in space and time: it may step to a neighbouring Cube, taking
+ * as many slots as the step takes it, or wait a slot where it is, and it never enters a Cube another Unit
+ * reserved for the same slot, nor swaps Cubes with another Unit. The search looks WINDOW slots ahead and
+ * is guided beyond that by the exact cost to the goal ignoring other Units, which is computed once per goal
+ * and shared by all Units heading there. The Cubes and slots of the planned window are then reserved, and the
+ * Unit plans again when half of the window has passed.
+ * A Unit that has waited MAX_WAITS slots in a row plans its next window alone, ignoring the reservations of
+ * other Units, and reserves what is still free. Units never block each other in this game, so such a Unit
+ * always gets through, and the others plan around it: no crowd can wait for each other forever.
+ * Units of Factions that did not opt in neither reserve nor respect reservations.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class CooperativePlanner {
+
+	/**
+	 * Initialize a new cooperative planner for the given World.
+	 * @param world	The World of this new planner.
+	 */
+	CooperativePlanner(World world){
+		this.world = world;
+	}
+
+	/**
+	 * Return the Cube the given Unit, in the given start Cube, has to step to next toward the given goal.
+	 * @return	The index of the Cube to step to now, or WAIT if the Unit has to stay where it is for now.
+	 * @post	If the given Unit has no plan toward the goal that still fits the terrain, its position and the
+	 * 			time, a new plan is made and reserved, and the reservations of its old plan are released.
+	 * @post	If the given Unit has waited MAX_WAITS slots in a row, a new plan is made ignoring the reservations
+	 * 			of other Units.
+	 * @throws ModelException
+	 * 			The goal can not be reached from the start.
+	 */
+	int getNextStep(Unit unit, Cube start, Cube goal) throws ModelException{
+		int startIndex = this.world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition());
+		int goalIndex = this.world.getCubeIndex(goal.getXPosition(), goal.getYPosition(), goal.getZPosition());
+		long slot = this.getCurrentSlot();
+		Plan plan = this.plans.get(unit);
+		if ((plan == null) || ! plan.isValid(this.world, startIndex, goalIndex, slot)){
+			if (! this.world.isReachable(start, goal))
+				throw new ModelException("No path available");
+			plan = this.plan(unit, startIndex, goalIndex, slot, (plan == null) ? 0 : plan.nbWaited);
+		}
+		while (true){
+			int next = plan.position + 1;
+			if (plan.cubes[next] != startIndex){
+				// a step may start as soon as its first slot has begun
+				if (slot < plan.slots[next] - plan.durations[next])
+					return WAIT;
+				plan.position = next;
+				plan.nbWaited = 0;
+				return plan.cubes[next];
+			}
+			if (slot < plan.slots[next]){
+				this.nbWaits += 1;
+				return WAIT;
+			}
+			plan.position = next;
+			plan.nbWaited += 1;
+			if ((plan.position == plan.cubes.length - 1) || (plan.nbWaited >= MAX_WAITS))
+				plan = this.plan(unit, startIndex, goalIndex, slot, plan.nbWaited);
+		}
+	}
+
+	/**
+	 * Release all reservations of the given Unit and forget its plan.
+	 * @post	The given Unit has no reservations.
+	 * 			|new.getNbReservations() <= getNbReservations()
+	 */
+	void release(Unit unit){
+		Plan plan = this.plans.remove(unit);
+		if (plan != null)
+			for (long key : plan.keys)
+				if (this.reservations.get(key) == unit)
+					this.reservations.remove(key);
+	}
+
+	/**
+	 * Make and reserve a new plan for the given Unit from the Cube with the given start index at the given slot,
+	 * after it has waited the given number of slots in a row.
+	 * @note	Once the Unit has waited MAX_WAITS slots in a row, the plan ignores the reservations of other Units.
+	 */
+	private Plan plan(Unit unit, int start, int goal, long slot, int nbWaited){
+		this.release(unit);
+		this.removeExpiredReservations(slot);
+		this.nbPlans += 1;
+		boolean alone = (nbWaited >= MAX_WAITS);
+		if (alone)
+			this.nbSoloPlans += 1;
+		float[] distance = this.getDistances(goal);
+		// the time a slot gives, in the cost of steps at base speed 1
+		double slotCost = SLOT_DURATION * unit.getWalkingSpeed();
+		int nbCubes = this.world.getNbCubes();
+		int[] offsets = this.world.getNeighbourOffsets();
+
+		PriorityQueue<Node> open = new PriorityQueue<Node>();
+		Set<Long> closed = new HashSet<Long>();
+		open.add(new Node(start, slot, null, 0, distance[start] / slotCost));
+		Node last = null;
+		while (! open.isEmpty()){
+			Node node = open.poll();
+			if (! closed.add(node.slot * nbCubes + node.cube))
+				continue;
+			if ((node.cube == goal) || (node.slot - slot >= WINDOW)){
+				last = node;
+				break;
+			}
+			if (alone || ! this.isReservedByOther(unit, node.cube, node.slot + 1))
+				open.add(new Node(node.cube, node.slot + 1, node, 0, node.slot + 1 - slot + distance[node.cube] / slotCost));
+			for (int mask = this.world.getNeighbourMask(node.cube) ; mask != 0 ; mask &= mask - 1){
+				int n = Integer.numberOfTrailingZeros(mask);
+				int next = node.cube + offsets[n];
+				if (distance[next] == Float.POSITIVE_INFINITY)
+					continue;
+				int duration = (int) Math.max(1, Math.ceil(Neighbourhood.COST[n] / slotCost - 1e-9));
+				if (! alone && ! this.isFree(unit, node.cube, next, node.slot, duration))
+					continue;
+				long arrival = node.slot + duration;
+				if (closed.contains(arrival * nbCubes + next))
+					continue;
+				open.add(new Node(next, arrival, node, duration, arrival - slot + distance[next] / slotCost));
+			}
+		}
+		if (last == null)
+			// every way out is reserved for the whole window: wait where the Unit is
+			last = new Node(start, slot + 1, new Node(start, slot, null, 0, 0), 0, 0);
+		Plan plan = new Plan(last, goal);
+		if (! alone)
+			plan.nbWaited = nbWaited;
+		for (int i = 0 ; i < plan.cubes.length ; i++)
+			for (long s = (i == 0) ? slot : plan.slots[i-1] + 1 ; s <= plan.slots[i] ; s++)
+				this.reserve(unit, plan, plan.cubes[i], s);
+		this.plans.put(unit, plan);
+		return plan;
+	}
+
+	/**
+	 * Check whether the given Unit can step from the Cube with the given index to the Cube with the given
+	 * other index, leaving at the given slot and taking the given number of slots.
+	 * @return	False if another Unit reserved the Cube stepped to for one of the slots of the step, or steps
+	 * 			the other way at the same time.
+	 */
+	private boolean isFree(Unit unit, int from, int to, long slot, int duration){
+		for (long s = slot + 1 ; s <= slot + duration ; s++)
+			if (this.isReservedByOther(unit, to, s))
+				return false;
+		Unit other = this.reservations.get(this.getKey(to, slot));
+		return (other == null) || (other == unit) || (this.reservations.get(this.getKey(from, slot + duration)) != other);
+	}
+
+	private boolean isReservedByOther(Unit unit, int cube, long slot){
+		Unit other = this.reservations.get(this.getKey(cube, slot));
+		return (other != null) && (other != unit);
+	}
+
+	private void reserve(Unit unit, Plan plan, int cube, long slot){
+		long key = this.getKey(cube, slot);
+		if (! this.reservations.containsKey(key)){
+			this.reservations.put(key, unit);
+			plan.keys.add(key);
+			List<Integer> cubes = this.reservedCubes.get(slot);
+			if (cubes == null){
+				cubes = new ArrayList<Integer>();
+				this.reservedCubes.put(slot, cubes);
+			}
+			cubes.add(cube);
+		}
+	}
+
+	private long getKey(int cube, long slot){
+		return slot * this.world.getNbCubes() + cube;
+	}
+
+	/**
+	 * Remove the reservations for slots that have passed from the table, a whole slot at a time.
+	 * @note	The keys of expired reservations stay in the plans that made them, but no Unit can reserve a slot
+	 * 			that has passed again, so releasing such a key removes nothing.
+	 */
+	private void removeExpiredReservations(long slot){
+		Iterator<Map.Entry<Long, List<Integer>>> expired = this.reservedCubes.headMap(slot).entrySet().iterator();
+		while (expired.hasNext()){
+			Map.Entry<Long, List<Integer>> entry = expired.next();
+			for (int cube : entry.getValue())
+				this.reservations.remove(this.getKey(cube, entry.getKey()));
+			expired.remove();
+		}
+	}
+
+	/**
+	 * Return the costs of cheapest routes from every Cube to the Cube with the given index, ignoring other Units.
+	 * @return	An array with, for every Cube index, the cost at base speed 1, or positive infinity if the Cube
+	 * 			can not reach the goal.
+	 */
+	private float[] getDistances(int goal){
+		if (this.distancesVersion != this.world.getTerrainVersion()){
+			this.distances.clear();
+			this.distancesVersion = this.world.getTerrainVersion();
+		}
+		float[] distance = this.distances.get(goal);
+		if (distance != null)
+			return distance;
+		int[] offsets = this.world.getNeighbourOffsets();
+		distance = new float[this.world.getNbCubes()];
+		Arrays.fill(distance, Float.POSITIVE_INFINITY);
+		IndexHeap heap = new IndexHeap(distance.length, distance);
+		distance[goal] = 0f;
+		heap.addOrDecrease(goal);
+		while (! heap.isEmpty()){
+			int current = heap.poll();
+			for (int mask = this.world.getNeighbourMask(current) ; mask != 0 ; mask &= mask - 1){
+				int n = Integer.numberOfTrailingZeros(mask);
+				int neighbour = current + offsets[n];
+				// a Unit in the neighbour steps back to the current Cube
+				float cost = distance[current] + Neighbourhood.COST[Neighbourhood.getOpposite(n)];
+				if (cost < distance[neighbour]){
+					distance[neighbour] = cost;
+					heap.addOrDecrease(neighbour);
+				}
+			}
+		}
+		this.distances.put(goal, distance);
+		return distance;
+	}
+
+	/**
+	 * Return the slot the current time of the World lies in.
+	 */
+	private long getCurrentSlot(){
+		return (long) Math.floor(this.world.getTime() / SLOT_DURATION);
+	}
+
+	/**
+	 * Return the number of plans made.
+	 */
+	public long getNbPlans(){
+		return this.nbPlans;
+	}
+
+	/**
+	 * Return the number of times a Unit waited for a slot to let another Unit pass.
+	 */
+	public long getNbWaits(){
+		return this.nbWaits;
+	}
+
+	/**
+	 * Return the number of plans made ignoring the reservations of other Units, after waiting too long.
+	 */
+	public long getNbSoloPlans(){
+		return this.nbSoloPlans;
+	}
+
+	/**
+	 * Return the number of reservations in the table.
+	 */
+	public int getNbReservations(){
+		return this.reservations.size();
+	}
+
+	/**
+	 * Return the Unit that reserved the Cube at the given coordinates for the slot holding the given time.
+	 * @return	Null if no Unit reserved it.
+	 */
+	public Unit getReservation(int x, int y, int z, double time){
+		return this.reservations.get(this.getKey(this.world.getCubeIndex(x, y, z), (long) Math.floor(time / SLOT_DURATION)));
+	}
+
+	/**
+	 * Constant registering the length of a slot, in seconds of game time.
+	 */
+	public static final double SLOT_DURATION = 0.25;
+
+	/**
+	 * Constant registering the number of slots a plan looks ahead.
+	 */
+	public static final int WINDOW = 32;
+
+	/**
+	 * Constant registering the number of slots a Unit waits in a row before it plans ignoring other Units.
+	 */
+	public static final int MAX_WAITS = 4;
+
+	/**
+	 * Constant returned by getNextStep when the Unit has to wait.
+	 */
+	static final int WAIT = -1;
+
+	/**
+	 * The planned Cubes of one Unit, with the slots at which it arrives in them and the number of slots the
+	 * steps to them take, and the keys of the reservations made for them.
+	 */
+	private static final class Plan {
+
+		Plan(Node last, int goal){
+			List<Node> nodes = new ArrayList<Node>();
+			for (Node node = last ; node != null ; node = node.parent)
+				nodes.add(0, node);
+			this.cubes = new int[nodes.size()];
+			this.slots = new long[nodes.size()];
+			this.durations = new int[nodes.size()];
+			for (int i = 0 ; i < nodes.size() ; i++){
+				this.cubes[i] = nodes.get(i).cube;
+				this.slots[i] = nodes.get(i).slot;
+				this.durations[i] = nodes.get(i).duration;
+			}
+			this.goal = goal;
+		}
+
+		/**
+		 * Check whether this plan still fits a Unit in the Cube with the given start index heading for the
+		 * given goal at the given slot.
+		 */
+		boolean isValid(World world, int start, int goal, long slot){
+			if ((goal != this.goal) || (this.cubes[this.position] != start) || (this.position == this.cubes.length - 1))
+				return false;
+			// plan again once half of the window has passed, unless the goal is in sight
+			if ((this.cubes[this.cubes.length - 1] != goal) && (slot >= this.slots[0] + WINDOW / 2))
+				return false;
+			for (int i = this.position + 1 ; i < this.cubes.length ; i++)
+				if (! world.isWalkable(this.cubes[i]))
+					return false;
+			return true;
+		}
+
+		final int[] cubes;
+		final long[] slots;
+		final int[] durations;
+		final int goal;
+		final List<Long> keys = new ArrayList<Long>();
+		int position;
+
+		/**
+		 * Variable registering the number of slots the Unit has waited in a row.
+		 */
+		int nbWaited;
+	}
+
+	/**
+	 * A Cube at a slot reached by a plan, ordered by the estimated number of slots to the goal.
+	 */
+	private static final class Node implements Comparable<Node> {
+
+		Node(int cube, long slot, Node parent, int duration, double priority){
+			this.cube = cube;
+			this.slot = slot;
+			this.parent = parent;
+			this.duration = duration;
+			this.priority = priority;
+		}
+
+		@Override
+		public int compareTo(Node other){
+			return Double.compare(this.priority, other.priority);
+		}
+
+		final int cube;
+		final long slot;
+		final Node parent;
+		final int duration;
+		final double priority;
+	}
+
+	private final World world;
+
+	/**
+	 * Variable registering, per Cube and slot, the Unit that reserved it.
+	 */
+	private final Map<Long, Unit> reservations = new HashMap<Long, Unit>();
+
+	/**
+	 * Variable registering, per slot, the Cubes reserved for it, so passed slots expire as a whole.
+	 */
+	private final TreeMap<Long, List<Integer>> reservedCubes = new TreeMap<Long, List<Integer>>();
+
+	/**
+	 * Variable registering the plan of every cooperating Unit that is underway.
+	 */
+	private final Map<Unit, Plan> plans = new HashMap<Unit, Plan>();
+
+	/**
+	 * Variable registering the costs to the most recent goals, least recently used first.
+	 */
+	private final LinkedHashMap<Integer, float[]> distances = new LinkedHashMap<Integer, float[]>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest){
+			return this.size() > 8;
+		}
+	};
+
+	private long distancesVersion;
+	private long nbPlans;
+	private long nbWaits;
+	private long nbSoloPlans;
+}
@@ -11,6 +11,9 @@ import hillbillies.part2.listener.TerrainChangeListener;
 import ogp.framework.util.ModelException;
 /**
  * A Class of Cubes, of which the game world is built. Every Cube has x, y and z coordinates, a CubeType and a World.
+ * A Cube is a view on one position of its World: the World stores the types of its Cubes in a flat array and the
+ * Logs and Boulders only for the Cubes that hold them, and hands out Cubes when they are asked for. Two Cubes
+ * are equal if and only if they are views on the same position of the same World.
  * @author Jakob De Hertogh
  * @author Kristof Van Cappellen
  *
@@ -19,26 +22,13 @@ public class Cube {
 	/**
 	 * 
 	 * @param World This Cube's World
-	 * @param xPosition	The x-coordinate of this Cube
-	 * @param yPosition	The y-coordinate of this Cube
-	 * @param zPosition	The z-coordinate of this Cube
-	 * @param type The CubeType for this Cube
+	 * @param index	The index of this Cube in its World.
 	 * @post	This Cube's World is set to the given World.
-	 * @post	This Cube's x, y and z coordinates are set to the given coordinates, as well as combined in its position array.
-	 * @post	This Cube's Type is set to the given CubeType
-	 * @post	This Cube's center position is set.
+	 * @post	This Cube's index is set to the given index.
 	 */
-	public Cube(World World, int xPosition, int yPosition, int zPosition, CubeType type){
+	Cube(World World, int index){
 		this.world = World;
-		this.xPosition = xPosition;
-		this.yPosition = yPosition; 
-		this.zPosition = zPosition;
-		this.cubetype = type;
-		int[] pos = new int[]{this.xPosition, this.yPosition, this.zPosition};
-		double[]cubeCenter = new double[]{this.xPosition + 0.5, this.yPosition + 0.5, this.zPosition + 0.5};
-		this.Position = pos ;
-		this.cubeCenter = cubeCenter;
-						
+		this.index = index;
 	}
 	/**
 	 * Return this Cube's world.
@@ -54,7 +44,7 @@ public class Cube {
 	 * @post	This Cube contains the given Log.
 	 */
 	public void addLog(Log log){
-		this.Logs.add(log);
+		this.world.addLogTo(this.index, log);
 	}
 	
 	/**
@@ -62,7 +52,7 @@ public class Cube {
 	 */
 	@Basic
 	public Set<Log> getLogs(){
-		return this.Logs;
+		return this.world.getLogsIn(this.index);
 	}
 	
 	/**
@@ -71,7 +61,7 @@ public class Cube {
 	 * @post	The given Log is no longer in this Cube
 	 */
 	public void removeLog(Log log){
-		this.Logs.remove(log);
+		this.world.removeLogFrom(this.index, log);
 	}
 	
 
@@ -97,7 +87,7 @@ public class Cube {
 	 * @return a random Boulder from this Cube's Boudlers.
 	 */
 	public Boulder randomBoulder(){
-		int size = this.Boulders.size();
+		int size = this.getBoulders().size();
 		int item = new Random().nextInt(size);
 		int i = 0;
 		for (Boulder boulder : this.getBoulders()){
@@ -114,14 +104,14 @@ public class Cube {
 	 * @post	This Cube contains the given Boulder.
 	 */
 	public void addBoulder(Boulder boulder){
-		this.Boulders.add(boulder);
+		this.world.addBoulderTo(this.index, boulder);
 	}
 	/**
 	 * Return all the Boulders that occupy this Cube.
 	 */
 	@Basic
 	public Set<Boulder> getBoulders(){
-		return this.Boulders;
+		return this.world.getBouldersIn(this.index);
 	}
 	/**
 	 * Remove the given Boulder from this Cube.
@@ -129,23 +119,15 @@ public class Cube {
 	 * @post	The given Boulder is no longer in this Cube
 	 */
 	public void removeBoulder(Boulder boulder){
-		this.Boulders.remove(boulder);
+		this.world.removeBoulderFrom(this.index, boulder);
 	}
 	
 	/**
-	 * 
-	 * @return
+	 * Return the Units that stand in this Cube.
+	 * @return	A new set of the active Units of the World of this Cube whose position lies in this Cube.
 	 */
 	public Set<Unit> isOccupiedByUnits(){
-		Set <Unit> result = new HashSet<Unit>();
-		for (Unit i : this.world.getActiveUnits()){
-			if (((int)Math.floor(i.getXPosition())==this.getXPosition()) 
-					&& ((int)Math.floor(i.getYPosition())==this.getYPosition()) 
-					&&((int)Math.floor(i.getZPosition())==this.getZPosition())){
-				result.add(i);
-			}
-		}
-		return result;
+		return new HashSet<Unit>(this.world.getUnitsIn(this.index));
 	}
 	
 	/**
@@ -153,9 +135,7 @@ public class Cube {
 	 * @return true if and only if this Cube is of a passable type and has a neighbouring Cube is of a solid type.
 	 */
 	public boolean isValidCube(){
-		if ((this.isPassableType())&&(this.hasSolidNeighbor()))
-			return true;
-		return false;
+		return this.world.isWalkable(this.index);
 	}
 	
 	/**
@@ -163,35 +143,43 @@ public class Cube {
 	 */
 	@Basic
 	public int getXPosition(){
-		return this.xPosition;
+		return this.index % this.world.getNbCubesX();
 	}
 	/**
 	 * Return this Cube's y coordinate.
 	 */
 	@Basic
 	public int getYPosition(){
-		return this.yPosition;
+		return (this.index / this.world.getNbCubesX()) % this.world.getNbCubesY();
 	}
 	/**
 	 * Return this Cube's z coordinate.
 	 */
 	@Basic
 	public int getZPosition(){
-		return this.zPosition;
+		return this.index / (this.world.getNbCubesX() * this.world.getNbCubesY());
 	}
 	/**
-	 * Return this Cube's position.
+	 * Return the index of this Cube in its World.
+	 * 			|result == getWorld().getCubeIndex(getXPosition(), getYPosition(), getZPosition())
 	 */
 	@Basic
+	public int getIndex(){
+		return this.index;
+	}
+	/**
+	 * Return this Cube's position.
+	 * @return	A new array holding the x, y and z coordinate of this Cube.
+	 */
 	public int[] getPosition(){
-		return this.Position;
+		return new int[]{this.getXPosition(), this.getYPosition(), this.getZPosition()};
 	}
 	/**
 	 * Return the coordinates of this Cube's center.
+	 * @return	A new array holding the coordinates of this Cube's position, each increased by 0.5.
 	 */
-	@Basic
 	public double[] getCubeCenter(){
-		return this.cubeCenter;
+		return new double[]{this.getXPosition() + 0.5, this.getYPosition() + 0.5, this.getZPosition() + 0.5};
 	}
 	
 	/**
@@ -199,16 +187,24 @@ public class Cube {
 	 */
 	@Basic
 	public CubeType getType(){
-		return this.cubetype;
+		return this.world.getCubeType(this.index);
 	}
 	
 	/**
 	 * Set this Cube's CubeType to the given CubeType.
 	 * @post	This Cube's CubeType is set to the given type.
+	 * @effect	This Cube's World registers the change.
 	 * @effect	This Cube's World's TerrainChangeListener checks this Cube for a change in CubeType.
+	 * @effect	If this Cube's World is being edited in a batch, the type is set through that batch instead, and
+	 * 			the change is registered once the batch is done.
 	 */
 	public void setCubeType(CubeType type){
-		this.cubetype = type;
+		if (this.world.getTerrainBatch() != null){
+			this.world.getTerrainBatch().setCubeType(this.getXPosition(), this.getYPosition(), this.getZPosition(), type);
+			return;
+		}
+		this.world.storeCubeType(this.index, type);
+		this.world.terrainChanged(this.getXPosition(), this.getYPosition(), this.getZPosition());
 		this.world.getTCL().notifyTerrainChanged(this.getXPosition(), this.getYPosition(), this.getZPosition());
 	}
 	/**
@@ -220,33 +216,35 @@ public class Cube {
 	}
 	
 	
-	public Set<Cube> getSurroundingCubes() throws IndexOutOfBoundsException{
-		Set<Cube> result = new HashSet<Cube>();
-		for (int i = 0 ; i <= 2 ; i++){
-			for (int j = 0; j <= 2; j++){
-				for (int k = 0 ; k <= 2 ; k++){
-					try {
-						result.add(this.world.getCubeAtPos(this.getXPosition()+(i-1), this.getYPosition()+(j-1), this.getZPosition()+(k-1)));
-					} catch (IndexOutOfBoundsException e) {
-						result.add(null);
-					}
-				}
-			}
-		}
-		result.remove(this);
-		return result;
+	/**
+	 * Check whether the given Cube is one of the surrounding Cubes of this Cube.
+	 * @param other	The Cube to check.
+	 * @return	True if and only if the given Cube lies in the same World as this Cube, is not this Cube, and
+	 * 			differs at most one in every coordinate from this Cube.
+	 * 			| result == (other != null) && (other.getWorld() == this.getWorld()) && ! other.equals(this) &&
+	 * 			|	(Math.abs(other.getXPosition() - this.getXPosition()) <= 1) &&
+	 * 			|	(Math.abs(other.getYPosition() - this.getYPosition()) <= 1) &&
+	 * 			|	(Math.abs(other.getZPosition() - this.getZPosition()) <= 1)
+	 */
+	public boolean isNeighbourOf(Cube other){
+		if ((other == null) || (other.world != this.world) || (other.index == this.index))
+			return false;
+		return (Math.abs(other.getXPosition() - this.getXPosition()) <= 1)
+				&& (Math.abs(other.getYPosition() - this.getYPosition()) <= 1)
+				&& (Math.abs(other.getZPosition() - this.getZPosition()) <= 1);
 	}
 	
+	/**
+	 * Check whether one of the neighbouring Cubes of this Cube is solid or lies outside its World.
+	 */
 	public boolean hasSolidNeighbor(){
-		try {
-			for (Cube cube : this.getSurroundingCubes()){
-				if (!cube.isPassableType())
-					return true;
-			}
-			return false;
-		} catch (NullPointerException e) {
-			return true;
+		int x = this.getXPosition(), y = this.getYPosition(), z = this.getZPosition();
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (! this.world.isInside(nx, ny, nz) || ! this.world.isPassableCube(nx, ny, nz))
+				return true;
 		}
+		return false;
 	}
 	
 	
@@ -265,18 +263,31 @@ public class Cube {
 			Boulder newBoulder = new Boulder(this.world, boulderpos);
 			this.world.addBoulder(newBoulder);
 		}
-		if (this.isValidCube())
-			this.world.viableSpawnCubes.add(this);
+	}
+			
+	/**
+	 * Check whether this Cube is equal to the given object.
+	 * @return	True if and only if the given object is a Cube of the same World with the same index.
+	 * 			|result == (other instanceof Cube) && (((Cube) other).getWorld() == getWorld())
+	 * 			|	&& (((Cube) other).getIndex() == getIndex())
+	 */
+	@Override
+	public boolean equals(Object other){
+		if (! (other instanceof Cube))
+			return false;
+		return (((Cube) other).world == this.world) && (((Cube) other).index == this.index);
+	}
+	
+	@Override
+	public int hashCode(){
+		return this.index;
 	}
 			
 	private final World world;
-	private final int xPosition;
-	private final int yPosition;
-	private final int zPosition;
-	private final int[] Position;
-	private final double[] cubeCenter;
-	private CubeType cubetype;
-	private Set<Log> Logs= new HashSet<Log>();
-	private Set<Boulder> Boulders = new HashSet<Boulder>();
+	
+	/**
+	 * Variable registering the index of this Cube in its World.
+	 */
+	private final int index;
 
 }
@@ -0,0 +1,236 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+
+/**
+ * A class of arrays holding an int per Cube of a World, by the index of the Cube, for the structures a World
+ * derives from its terrain. A dense array holds every value. A chunked array divides the World into blocks of
+ * BLOCK_SIZE Cubes along every axis, stores a block whose values are all the same as that single value, and only
+ * expands a block into an array of its own when one of its values is set to another value. Most derived values
+ * only differ near the surface of a generated World, so most blocks of a chunked array never expand.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+abstract class CubeArray {
+
+	/**
+	 * Return a new dense array of the given number of values, all set to the given value.
+	 */
+	static CubeArray dense(int nbCubes, int initial){
+		return new IntArray(nbCubes, initial);
+	}
+
+	/**
+	 * Return a new dense array of the given number of values, all set to the given value, for values between
+	 * Byte.MIN_VALUE and Byte.MAX_VALUE.
+	 */
+	static CubeArray denseBytes(int nbCubes, int initial){
+		return new ByteArray(nbCubes, initial);
+	}
+
+	/**
+	 * Return a new chunked array for a World with the given number of Cubes along every axis, all set to the
+	 * given value.
+	 */
+	static CubeArray chunked(int nbX, int nbY, int nbZ, int initial){
+		return new ChunkedArray(nbX, nbY, nbZ, initial);
+	}
+
+	/**
+	 * Return the value of the Cube with the given index.
+	 */
+	abstract int get(int index);
+
+	/**
+	 * Set the value of the Cube with the given index to the given value.
+	 * @post	|new.get(index) == value
+	 */
+	abstract void set(int index, int value);
+
+	/**
+	 * Set the value of every Cube to the given value.
+	 * @post	A chunked array holds no expanded blocks anymore.
+	 */
+	abstract void fill(int value);
+
+	/**
+	 * Store every block of a chunked array whose values are all the same as that single value again.
+	 * @post	The values of this array are unchanged.
+	 */
+	void compact(){
+	}
+
+	/**
+	 * Return the number of bytes this array uses for its values.
+	 */
+	abstract long getStorageSize();
+
+	/**
+	 * Constant registering the number of bits of a coordinate that give the position of a Cube in its block.
+	 */
+	static final int BLOCK_BITS = 3;
+
+	/**
+	 * Constant registering the number of Cubes of a block of a chunked array along every axis.
+	 */
+	static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int BLOCK_VOLUME = BLOCK_SIZE * BLOCK_SIZE * BLOCK_SIZE;
+
+	private static final class IntArray extends CubeArray {
+
+		IntArray(int nbCubes, int initial){
+			this.values = new int[nbCubes];
+			if (initial != 0)
+				Arrays.fill(this.values, initial);
+		}
+
+		@Override
+		int get(int index){
+			return this.values[index];
+		}
+
+		@Override
+		void set(int index, int value){
+			this.values[index] = value;
+		}
+
+		@Override
+		void fill(int value){
+			Arrays.fill(this.values, value);
+		}
+
+		@Override
+		long getStorageSize(){
+			return 4L * this.values.length;
+		}
+
+		private final int[] values;
+	}
+
+	private static final class ByteArray extends CubeArray {
+
+		ByteArray(int nbCubes, int initial){
+			this.values = new byte[nbCubes];
+			if (initial != 0)
+				Arrays.fill(this.values, (byte) initial);
+		}
+
+		@Override
+		int get(int index){
+			return this.values[index];
+		}
+
+		@Override
+		void set(int index, int value){
+			this.values[index] = (byte) value;
+		}
+
+		@Override
+		void fill(int value){
+			Arrays.fill(this.values, (byte) value);
+		}
+
+		@Override
+		long getStorageSize(){
+			return this.values.length;
+		}
+
+		private final byte[] values;
+	}
+
+	private static final class ChunkedArray extends CubeArray {
+
+		ChunkedArray(int nbX, int nbY, int nbZ, int initial){
+			this.nbX = nbX;
+			this.nbY = nbY;
+			this.blocksX = (nbX + BLOCK_SIZE - 1) >> BLOCK_BITS;
+			this.blocksY = (nbY + BLOCK_SIZE - 1) >> BLOCK_BITS;
+			int nbBlocks = this.blocksX * this.blocksY * ((nbZ + BLOCK_SIZE - 1) >> BLOCK_BITS);
+			this.uniform = new int[nbBlocks];
+			this.blocks = new int[nbBlocks][];
+			if (initial != 0)
+				Arrays.fill(this.uniform, initial);
+		}
+
+		@Override
+		int get(int index){
+			int row = index / this.nbX, x = index - row * this.nbX;
+			int z = row / this.nbY, y = row - z * this.nbY;
+			int block = (x >> BLOCK_BITS) + this.blocksX * ((y >> BLOCK_BITS) + this.blocksY * (z >> BLOCK_BITS));
+			int[] values = this.blocks[block];
+			if (values == null)
+				return this.uniform[block];
+			return values[(x & BLOCK_MASK) | ((y & BLOCK_MASK) << BLOCK_BITS) | ((z & BLOCK_MASK) << (2 * BLOCK_BITS))];
+		}
+
+		@Override
+		void set(int index, int value){
+			int row = index / this.nbX, x = index - row * this.nbX;
+			int z = row / this.nbY, y = row - z * this.nbY;
+			int block = (x >> BLOCK_BITS) + this.blocksX * ((y >> BLOCK_BITS) + this.blocksY * (z >> BLOCK_BITS));
+			int[] values = this.blocks[block];
+			if (values == null){
+				if (this.uniform[block] == value)
+					return;
+				values = new int[BLOCK_VOLUME];
+				if (this.uniform[block] != 0)
+					Arrays.fill(values, this.uniform[block]);
+				this.blocks[block] = values;
+				this.nbExpanded += 1;
+			}
+			values[(x & BLOCK_MASK) | ((y & BLOCK_MASK) << BLOCK_BITS) | ((z & BLOCK_MASK) << (2 * BLOCK_BITS))] = value;
+		}
+
+		@Override
+		void fill(int value){
+			Arrays.fill(this.blocks, null);
+			Arrays.fill(this.uniform, value);
+			this.nbExpanded = 0;
+		}
+
+		/**
+		 * Store every expanded block whose values are all the same as that single value again. The positions of
+		 * a block at the far sides of the World that lie outside it keep the value the block had when it expanded.
+		 */
+		@Override
+		void compact(){
+			for (int block = 0 ; block < this.blocks.length ; block++){
+				int[] values = this.blocks[block];
+				if (values == null)
+					continue;
+				boolean same = true;
+				for (int i = 1 ; (i < BLOCK_VOLUME) && same ; i++)
+					same = (values[i] == values[0]);
+				if (same){
+					this.uniform[block] = values[0];
+					this.blocks[block] = null;
+					this.nbExpanded -= 1;
+				}
+			}
+		}
+
+		@Override
+		long getStorageSize(){
+			return 4L * this.uniform.length + 4L * BLOCK_VOLUME * this.nbExpanded;
+		}
+
+		private final int nbX;
+		private final int nbY;
+		private final int blocksX;
+		private final int blocksY;
+
+		/**
+		 * Variable registering, per block, the value of its Cubes if it is not expanded.
+		 */
+		private final int[] uniform;
+
+		/**
+		 * Variable registering, per block, the values of its Cubes, or null if it is not expanded.
+		 */
+		private final int[][] blocks;
+		private int nbExpanded;
+	}
+}
@@ -24,9 +24,18 @@ public enum CubeType {
 	private boolean isPassable;
 	
 	public static CubeType getCubeTypeOfValue(int value){
+		if ((value < 0) || (value >= BY_VALUE.length))
+			return null;
+		return BY_VALUE[value];
+	}
+	
+	/**
+	 * Constant registering every CubeType at the position of its value.
+	 */
+	private static final CubeType[] BY_VALUE = new CubeType[4];
+	
+	static {
 		for (CubeType ct: CubeType.values())
-			if (ct.value == value)
-				return ct;
-		return null;
+			BY_VALUE[ct.value] = ct;
 	}
 }
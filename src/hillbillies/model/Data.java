@@ -54,7 +54,90 @@ public class Data {
 		return this.priority;
 	}
 	
+	/**
+	 * Return the cost of the cheapest known route from the start of the search to this Data's Cube.
+	 */
+	public double getCost(){
+		return this.cost;
+	}
+	
+	/**
+	 * Set the cost of the cheapest known route to this Data's Cube.
+	 * @param cost The new cost for this Data.
+	 * @post	The cost of this Data is set to the given cost.
+	 * 			|new.getCost() == cost
+	 */
+	public void setCost(double cost){
+		this.cost = cost;
+	}
+	
+	/**
+	 * Return the Data from which the cheapest known route reaches this Data.
+	 */
+	public Data getPrevious(){
+		return this.previous;
+	}
+	
+	/**
+	 * Set the Data from which the cheapest known route reaches this Data.
+	 * @param previous The Data preceding this Data on the route.
+	 * @post	The previous Data of this Data is set to the given Data.
+	 * 			|new.getPrevious() == previous
+	 */
+	public void setPrevious(Data previous){
+		this.previous = previous;
+	}
+	
+	/**
+	 * Check whether this Data has been expanded by the search, and will not be expanded again.
+	 */
+	public boolean isClosed(){
+		return this.closed;
+	}
+	
+	/**
+	 * Mark this Data as expanded.
+	 * @post	This Data is closed.
+	 * 			|new.isClosed() == true
+	 */
+	public void close(){
+		this.closed = true;
+	}
+	
+	/**
+	 * Check whether this Data must be taken from a DataHeap before the given Data.
+	 * @param other The Data to compare with.
+	 * @return	True if this Data has a lower priority than the other Data. On equal priorities, the Data
+	 * 			with the highest cost goes first, so the search keeps extending its deepest route.
+	 * 			|result == (getPriority() < other.getPriority()) ||
+	 * 			|	((getPriority() == other.getPriority()) && (getCost() > other.getCost()))
+	 */
+	public boolean precedes(Data other){
+		if (this.getPriority() != other.getPriority())
+			return this.getPriority() < other.getPriority();
+		return this.getCost() > other.getCost();
+	}
+	
+	/**
+	 * Return the position of this Data in the DataHeap that holds it, or -1 if it is in no heap.
+	 */
+	int getHeapIndex(){
+		return this.heapIndex;
+	}
+	
+	/**
+	 * Set the position of this Data in the DataHeap that holds it.
+	 * @param heapIndex The new position, or -1 if this Data has left its heap.
+	 */
+	void setHeapIndex(int heapIndex){
+		this.heapIndex = heapIndex;
+	}
+	
 	private int[] position;
 	private double priority;
 	private Cube cube;
+	private double cost;
+	private Data previous;
+	private boolean closed;
+	private int heapIndex = -1;
 }
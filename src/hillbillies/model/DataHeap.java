@@ -0,0 +1,208 @@
+package hillbillies.model;
+
+import java.util.NoSuchElementException;
+
+/**
+ * An indexed binary min-heap of Data, ordered by Data.precedes(Data). Every Data remembers its own
+ * position in the heap, so its priority can be lowered (or raised) in place in logarithmic time.
+ * @invar	Every Data in this heap knows its own position in the heap.
+ * 			|for i in 0..size()-1: elements[i].getHeapIndex() == i
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class DataHeap {
+
+	/**
+	 * Initialize a new, empty DataHeap.
+	 * @post	This DataHeap is empty.
+	 * 			|new.isEmpty()
+	 */
+	public DataHeap(){
+		this.elements = new Data[64];
+		this.size = 0;
+	}
+
+	/**
+	 * Return the number of Data in this heap.
+	 */
+	public int size(){
+		return this.size;
+	}
+
+	/**
+	 * Check whether this heap is empty.
+	 * @return	True if and only if this heap holds no Data.
+	 * 			|result == (size() == 0)
+	 */
+	public boolean isEmpty(){
+		return this.size == 0;
+	}
+
+	/**
+	 * Check whether the given Data is in this heap.
+	 * @param data The Data to check.
+	 * @return	True if and only if the given Data is stored in this heap.
+	 */
+	public boolean contains(Data data){
+		int index = data.getHeapIndex();
+		return (index >= 0) && (index < this.size) && (this.elements[index] == data);
+	}
+
+	/**
+	 * Add the given Data to this heap.
+	 * @param data The Data to be added.
+	 * @post	The given Data is in this heap.
+	 * 			|new.contains(data)
+	 * @throws IllegalArgumentException
+	 * 			The given Data is already in a heap.
+	 * 			|data.getHeapIndex() != -1
+	 */
+	public void add(Data data) throws IllegalArgumentException{
+		if (data.getHeapIndex() != -1)
+			throw new IllegalArgumentException("Data is already in a heap");
+		if (this.size == this.elements.length){
+			Data[] grown = new Data[this.size * 2];
+			System.arraycopy(this.elements, 0, grown, 0, this.size);
+			this.elements = grown;
+		}
+		this.elements[this.size] = data;
+		data.setHeapIndex(this.size);
+		this.size += 1;
+		this.siftUp(this.size - 1);
+	}
+
+	/**
+	 * Return the first Data of this heap without removing it.
+	 * @throws NoSuchElementException
+	 * 			This heap is empty.
+	 */
+	public Data peek() throws NoSuchElementException{
+		if (this.isEmpty())
+			throw new NoSuchElementException();
+		return this.elements[0];
+	}
+
+	/**
+	 * Remove and return the first Data of this heap.
+	 * @return	A Data that no other Data in this heap precedes.
+	 * @throws NoSuchElementException
+	 * 			This heap is empty.
+	 */
+	public Data poll() throws NoSuchElementException{
+		Data first = this.peek();
+		this.removeAt(0);
+		return first;
+	}
+
+	/**
+	 * Remove the given Data from this heap, if it is in it.
+	 * @param data The Data to be removed.
+	 * @post	The given Data is no longer in this heap.
+	 * 			|! new.contains(data)
+	 */
+	public void remove(Data data){
+		if (this.contains(data))
+			this.removeAt(data.getHeapIndex());
+	}
+
+	/**
+	 * Restore the heap order after the priority of the given Data was lowered.
+	 * @param data A Data in this heap whose priority has decreased.
+	 * @throws IllegalArgumentException
+	 * 			The given Data is not in this heap.
+	 * 			|! contains(data)
+	 */
+	public void decreaseKey(Data data) throws IllegalArgumentException{
+		if (! this.contains(data))
+			throw new IllegalArgumentException("Data is not in this heap");
+		this.siftUp(data.getHeapIndex());
+	}
+
+	/**
+	 * Restore the heap order after the priority of the given Data was changed in either direction.
+	 * @param data A Data in this heap whose priority has changed.
+	 * @throws IllegalArgumentException
+	 * 			The given Data is not in this heap.
+	 * 			|! contains(data)
+	 */
+	public void update(Data data) throws IllegalArgumentException{
+		if (! this.contains(data))
+			throw new IllegalArgumentException("Data is not in this heap");
+		int index = data.getHeapIndex();
+		this.siftUp(index);
+		if (data.getHeapIndex() == index)
+			this.siftDown(index);
+	}
+
+	/**
+	 * Remove every Data from this heap.
+	 * @post	This heap is empty.
+	 * 			|new.isEmpty()
+	 */
+	public void clear(){
+		for (int i = 0; i < this.size; i++){
+			this.elements[i].setHeapIndex(-1);
+			this.elements[i] = null;
+		}
+		this.size = 0;
+	}
+
+	private void removeAt(int index){
+		Data removed = this.elements[index];
+		this.size -= 1;
+		Data last = this.elements[this.size];
+		this.elements[this.size] = null;
+		removed.setHeapIndex(-1);
+		if (index < this.size){
+			this.elements[index] = last;
+			last.setHeapIndex(index);
+			this.siftUp(index);
+			if (last.getHeapIndex() == index)
+				this.siftDown(index);
+		}
+	}
+
+	private void siftUp(int index){
+		Data data = this.elements[index];
+		while (index > 0){
+			int parent = (index - 1) / 2;
+			if (! data.precedes(this.elements[parent]))
+				break;
+			this.place(this.elements[parent], index);
+			index = parent;
+		}
+		this.place(data, index);
+	}
+
+	private void siftDown(int index){
+		Data data = this.elements[index];
+		while (true){
+			int child = 2 * index + 1;
+			if (child >= this.size)
+				break;
+			if ((child + 1 < this.size) && this.elements[child + 1].precedes(this.elements[child]))
+				child += 1;
+			if (! this.elements[child].precedes(data))
+				break;
+			this.place(this.elements[child], index);
+			index = child;
+		}
+		this.place(data, index);
+	}
+
+	private void place(Data data, int index){
+		this.elements[index] = data;
+		data.setHeapIndex(index);
+	}
+
+	/**
+	 * Variable registering the Data in this heap, in heap order.
+	 */
+	private Data[] elements;
+
+	/**
+	 * Variable registering the number of Data in this heap.
+	 */
+	private int size;
+}
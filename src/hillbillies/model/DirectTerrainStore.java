@@ -0,0 +1,110 @@
+package hillbillies.model;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * A store for the CubeTypes of a World that keeps one byte per Cube in a direct buffer, outside the Java heap.
+ * The garbage collector never has to scan or copy the terrain, so its pauses do not grow with the size of the
+ * World. The buffer lives as long as its World: it is freed when the World is terminated, after which the
+ * store can no longer be read. The standard API offers no way to free a direct buffer, so the cleaner of the
+ * JDK is called by reflection; on a JDK that hides it, the memory is only freed once the garbage collector
+ * collects the buffer.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class DirectTerrainStore extends TerrainStore {
+
+	/**
+	 * Initialize a new store holding the given values of CubeTypes.
+	 * @param types	The value of the CubeType of every Cube, by its x, y and z coordinate.
+	 */
+	DirectTerrainStore(int[][][] types){
+		super(types.length, types[0].length, types[0][0].length);
+		this.types = ByteBuffer.allocateDirect(types.length * types[0].length * types[0][0].length);
+		int index = 0;
+		for (int z = 0 ; z < this.getNbCubesZ() ; z++)
+			for (int y = 0 ; y < this.getNbCubesY() ; y++)
+				for (int x = 0 ; x < this.getNbCubesX() ; x++)
+					this.types.put(index++, (byte) types[x][y][z]);
+	}
+
+	@Override
+	public int getType(int x, int y, int z){
+		return this.types.get(x + this.getNbCubesX() * (y + this.getNbCubesY() * z));
+	}
+
+	@Override
+	public int getType(int index){
+		return this.types.get(index);
+	}
+
+	@Override
+	void setType(int x, int y, int z, int value){
+		this.types.put(x + this.getNbCubesX() * (y + this.getNbCubesY() * z), (byte) value);
+	}
+
+	@Override
+	void setType(int index, int value){
+		this.types.put(index, (byte) value);
+	}
+
+	/**
+	 * Return the number of bytes this store uses for the values of the CubeTypes.
+	 * @return	Zero once the buffer of this store has been freed.
+	 */
+	@Override
+	public long getStorageSize(){
+		return this.freed ? 0 : this.types.capacity();
+	}
+
+	/**
+	 * Release the buffer of this store.
+	 * @post	The buffer is no longer referenced by this store. Every later read of this store fails with a
+	 * 			NullPointerException instead of reading freed memory.
+	 * @post	If the cleaner of the JDK can be reached, the memory of the buffer is freed at once. Otherwise it is
+	 * 			freed once the garbage collector collects the buffer.
+	 */
+	@Override
+	void release(){
+		ByteBuffer buffer = this.types;
+		this.types = null;
+		if ((buffer != null) && free(buffer))
+			this.freed = true;
+	}
+
+	/**
+	 * Free the memory of the given direct buffer at once, through sun.misc.Unsafe.invokeCleaner from Java 9 on
+	 * and through the cleaner of the buffer itself on Java 8.
+	 * @return	True if and only if the memory was freed. The buffer must not be used anymore if it was.
+	 */
+	private static boolean free(ByteBuffer buffer){
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException exc){
+			// Java 8 has no invokeCleaner
+		}
+		try {
+			Method getCleaner = buffer.getClass().getMethod("cleaner");
+			getCleaner.setAccessible(true);
+			Object cleaner = getCleaner.invoke(buffer);
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException exc){
+			return false;
+		}
+	}
+
+	/**
+	 * Variable registering the value of the CubeType of every Cube, at the index of the Cube.
+	 */
+	private ByteBuffer types;
+	private boolean freed;
+}
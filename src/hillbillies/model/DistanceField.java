@@ -0,0 +1,301 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A class of distance fields over the Cubes of a World. A DistanceField stores, for every walkable Cube, the
+ * cost of a cheapest route to the nearest Cube of its target category and the first step of that route, so
+ * any Unit can look up its next step toward the nearest target in constant time.
+ * The field is not rebuilt when the World changes. Terrain changes and moved targets only invalidate the
+ * Cubes whose route ran through a changed Cube, and only those Cubes are searched again.
+ * @invar	Every walkable Cube with a finite distance that is not a target has a next step to a neighbouring
+ * 			Cube whose distance is lower by the cost of that step.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class DistanceField {
+
+	/**
+	 * Initialize a new DistanceField for the given World and category and compute it.
+	 * @param world		The World of this new DistanceField.
+	 * @param target	The category of targets of this new DistanceField.
+	 */
+	DistanceField(World world, FieldTarget target){
+		this.world = world;
+		this.target = target;
+		int nbCubes = world.getNbCubes();
+		this.distance = new float[nbCubes];
+		this.next = new int[nbCubes];
+		this.walkable = new BitSet(nbCubes);
+		this.heap = new IndexHeap(nbCubes, this.distance);
+		Arrays.fill(this.distance, Float.POSITIVE_INFINITY);
+		Arrays.fill(this.next, -1);
+		for (int index = 0 ; index < nbCubes ; index++)
+			if (world.isWalkable(index))
+				this.walkable.set(index);
+		target.markSources(world, this.sources);
+		this.sources.and(this.walkable);
+		for (int index = this.sources.nextSetBit(0) ; index >= 0 ; index = this.sources.nextSetBit(index + 1)){
+			this.distance[index] = 0f;
+			this.heap.addOrDecrease(index);
+		}
+		this.propagate();
+	}
+
+	/**
+	 * Return the category of targets of this DistanceField.
+	 */
+	public FieldTarget getTarget(){
+		return this.target;
+	}
+
+	/**
+	 * Return the cost of a cheapest route from the Cube with the given index to the nearest target.
+	 * @return	Positive infinity if no target can be reached from that Cube.
+	 */
+	public double getDistance(int index){
+		this.update();
+		return this.distance[index];
+	}
+
+	/**
+	 * Return the index of the first Cube on a cheapest route from the Cube with the given index to the nearest target.
+	 * @return	-1 if the Cube is a target itself or no target can be reached from it.
+	 */
+	public int getNextStep(int index){
+		this.update();
+		return this.next[index];
+	}
+
+	/**
+	 * Return the first Cube on a cheapest route from the given Cube to the nearest target.
+	 * @return	Null if the Cube is a target itself or no target can be reached from it.
+	 */
+	public Cube getNextStep(Cube cube){
+		int next = this.getNextStep(this.world.getCubeIndex(cube.getXPosition(), cube.getYPosition(), cube.getZPosition()));
+		return (next < 0) ? null : this.world.getCubeAtIndex(next);
+	}
+
+	/**
+	 * Return the target Cube nearest to the given Cube.
+	 * @return	The Cube reached by following the next steps from the given Cube.
+	 * @return	Null if no target can be reached from the given Cube.
+	 */
+	public Cube getNearestTarget(Cube cube){
+		int index = this.world.getCubeIndex(cube.getXPosition(), cube.getYPosition(), cube.getZPosition());
+		if (this.getDistance(index) == Double.POSITIVE_INFINITY)
+			return null;
+		while (this.next[index] >= 0)
+			index = this.next[index];
+		return this.world.getCubeAtIndex(index);
+	}
+
+	/**
+	 * Register that the terrain of the Cube at the given coordinates has changed, so the walkability of it and
+	 * its neighbours has to be checked at the next update.
+	 */
+	void terrainChanged(int x, int y, int z){
+		this.changedTerrain.set(this.world.getCubeIndex(x, y, z));
+		this.dirty = true;
+	}
+
+	/**
+	 * Register that the terrain of the given Cubes has changed, so the walkability of them and their
+	 * neighbours has to be checked at the next update.
+	 */
+	void terrainChanged(BitSet changed){
+		this.changedTerrain.or(changed);
+		this.dirty = true;
+	}
+
+	/**
+	 * Register that targets of this DistanceField may have been added, removed or moved.
+	 */
+	void targetsChanged(){
+		this.targetsChanged = true;
+		this.dirty = true;
+	}
+
+	/**
+	 * Bring this DistanceField up to date with its World.
+	 * @post	Cubes that became unwalkable or stopped being a target lose their distance, together with every
+	 * 			Cube whose next steps led through them. Those Cubes, new walkable Cubes and new targets are then
+	 * 			given their cheapest distance again, starting from the unaffected Cubes around them.
+	 */
+	void update(){
+		if (! this.dirty)
+			return;
+		this.dirty = false;
+
+		BitSet removed = new BitSet();
+		BitSet added = new BitSet();
+		for (int changed = this.changedTerrain.nextSetBit(0) ; changed >= 0 ;
+				changed = this.changedTerrain.nextSetBit(changed + 1))
+			this.recheckWalkability(changed, removed, added);
+		this.changedTerrain.clear();
+
+		BitSet sources = new BitSet();
+		if (this.targetsChanged){
+			this.target.markSources(this.world, sources);
+			this.targetsChanged = false;
+		}
+		else
+			sources.or(this.sources);
+		sources.and(this.walkable);
+		BitSet lostSources = (BitSet) this.sources.clone();
+		lostSources.andNot(sources);
+		BitSet newSources = (BitSet) sources.clone();
+		newSources.andNot(this.sources);
+		this.sources = sources;
+		removed.or(lostSources);
+		added.or(newSources);
+
+		// invalidate every Cube whose route runs through a removed Cube
+		int[] stack = new int[64];
+		int size = 0;
+		BitSet invalid = new BitSet();
+		for (int index = removed.nextSetBit(0) ; index >= 0 ; index = removed.nextSetBit(index + 1)){
+			if (this.distance[index] == Float.POSITIVE_INFINITY)
+				continue;
+			invalid.set(index);
+			if (size == stack.length)
+				stack = Arrays.copyOf(stack, size * 2);
+			stack[size++] = index;
+		}
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		while (size > 0){
+			int current = stack[--size];
+			int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				int neighbour = this.world.getCubeIndex(nx, ny, nz);
+				if ((this.next[neighbour] == current) && (! invalid.get(neighbour))){
+					invalid.set(neighbour);
+					if (size == stack.length)
+						stack = Arrays.copyOf(stack, size * 2);
+					stack[size++] = neighbour;
+				}
+			}
+		}
+		for (int index = invalid.nextSetBit(0) ; index >= 0 ; index = invalid.nextSetBit(index + 1)){
+			this.distance[index] = Float.POSITIVE_INFINITY;
+			this.next[index] = -1;
+		}
+
+		// seed the invalidated and added Cubes from their valid neighbours, then propagate
+		invalid.or(added);
+		for (int index = invalid.nextSetBit(0) ; index >= 0 ; index = invalid.nextSetBit(index + 1)){
+			if (! this.walkable.get(index))
+				continue;
+			if (this.sources.get(index)){
+				this.distance[index] = 0f;
+				this.next[index] = -1;
+				this.heap.addOrDecrease(index);
+				continue;
+			}
+			int x = index % nbX, y = (index % layer) / nbX, z = index / layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				int neighbour = this.world.getCubeIndex(nx, ny, nz);
+				float cost = this.distance[neighbour] + Neighbourhood.COST[n];
+				if (this.walkable.get(neighbour) && (cost < this.distance[index])){
+					this.distance[index] = cost;
+					this.next[index] = neighbour;
+				}
+			}
+			if (this.distance[index] < Float.POSITIVE_INFINITY)
+				this.heap.addOrDecrease(index);
+		}
+		this.propagate();
+	}
+
+	/**
+	 * Compare the walkability of the Cube with the given index and its neighbours with the walkability this
+	 * DistanceField registered for them, and record the Cubes that were removed or added.
+	 */
+	private void recheckWalkability(int index, BitSet removed, BitSet added){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int x = index % nbX, y = (index % layer) / nbX, z = index / layer;
+		for (int dx = -1 ; dx <= 1 ; dx++)
+			for (int dy = -1 ; dy <= 1 ; dy++)
+				for (int dz = -1 ; dz <= 1 ; dz++){
+					if (! this.world.isInside(x + dx, y + dy, z + dz))
+						continue;
+					int cube = this.world.getCubeIndex(x + dx, y + dy, z + dz);
+					boolean walkable = this.world.isWalkable(x + dx, y + dy, z + dz);
+					if (walkable == this.walkable.get(cube))
+						continue;
+					this.walkable.set(cube, walkable);
+					if (walkable)
+						added.set(cube);
+					else
+						removed.set(cube);
+				}
+	}
+
+	/**
+	 * Lower the distances of the Cubes around the Cubes in the heap as long as a cheaper route is found.
+	 */
+	private void propagate(){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		while (! this.heap.isEmpty()){
+			int current = this.heap.poll();
+			int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+			float distance = this.distance[current];
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				int neighbour = this.world.getCubeIndex(nx, ny, nz);
+				// a Unit in the neighbour steps back to the current Cube
+				float cost = distance + Neighbourhood.COST[Neighbourhood.getOpposite(n)];
+				if (this.walkable.get(neighbour) && (cost < this.distance[neighbour])){
+					this.distance[neighbour] = cost;
+					this.next[neighbour] = current;
+					this.heap.addOrDecrease(neighbour);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Variable registering the World of this DistanceField.
+	 */
+	private final World world;
+
+	/**
+	 * Variable registering the category of targets of this DistanceField.
+	 */
+	private final FieldTarget target;
+
+	/**
+	 * Variables registering per Cube index the distance to the nearest target and the next step toward it.
+	 */
+	private final float[] distance;
+	private final int[] next;
+
+	/**
+	 * Variable registering the Cubes this DistanceField treats as walkable.
+	 */
+	private final BitSet walkable;
+
+	/**
+	 * Variable registering the walkable target Cubes of this DistanceField.
+	 */
+	private BitSet sources = new BitSet();
+
+	/**
+	 * Variables registering the changes that still have to be processed by the next update.
+	 */
+	private final BitSet changedTerrain = new BitSet();
+	private boolean targetsChanged;
+	private boolean dirty;
+
+	private final IndexHeap heap;
+}
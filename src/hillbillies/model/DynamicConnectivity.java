@@ -0,0 +1,569 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class of border connectivities that keep a spanning forest of the graph of directly adjacent solid Cubes,
+ * after Holm, de Lichtenberg and Thorup.
+ * Every edge between two solid Cubes has a level. The tree edges of level i or more form the forest F_i, in
+ * which no tree holds more than a 2^i-th of the Cubes. When a tree edge disappears, the smaller of the two trees
+ * it leaves behind is searched for a replacement edge, level by level from the level of the edge down. Every
+ * edge that is looked at and found not to be a replacement is raised a level, which bounds the work spent on
+ * an edge over all changes, and makes every change cost amortised polylogarithmic time.
+ * Every forest is kept as Euler tours in treaps, with the number of Cubes and a few flags gathered in every
+ * subtree, so trees are linked, cut and compared in logarithmic time, and the trees that hold a Cube on the
+ * border are known without searching them.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+class DynamicConnectivity extends BorderConnectivity {
+
+	/**
+	 * Initialize a new connectivity for the given terrain.
+	 * @param terrain	The types of the Cubes of a World.
+	 * @post	A Cube is solid for the new connectivity if and only if its type in the given terrain is not passable.
+	 * @post	Every pair of directly adjacent solid Cubes is joined by an edge of level zero.
+	 */
+	DynamicConnectivity(TerrainStore terrain){
+		super(terrain);
+		int nbCubes = this.nbX * this.nbY * this.nbZ;
+		this.axisOffsets = new int[]{1, this.nbX, this.nbX * this.nbY};
+		this.solid = new boolean[nbCubes];
+		this.edgeLevels = new byte[3 * nbCubes];
+		Arrays.fill(this.edgeLevels, NO_EDGE);
+		this.treeEdges = new boolean[3 * nbCubes];
+		this.edgeArcs = new int[3 * nbCubes][];
+		this.vertexNodes = new int[32 - Integer.numberOfLeadingZeros(nbCubes) + 1][];
+		for (int cube = 0 ; cube < nbCubes ; cube++)
+			if (! CubeType.getCubeTypeOfValue(terrain.getType(cube)).isPassable()){
+				this.solid[cube] = true;
+				this.getVertexNode(cube, 0);
+			}
+		for (int cube = 0 ; cube < nbCubes ; cube++)
+			if (this.solid[cube])
+				// only the edges to the Cubes with a higher index, so every edge is inserted once
+				for (int n = 1 ; n < ADJACENT_DX.length ; n += 2){
+					int edge = this.getEdge(cube, n);
+					if ((edge >= 0) && this.solid[this.getOtherEnd(edge, cube)])
+						this.insertEdge(edge);
+				}
+	}
+
+	@Override
+	public boolean isSolidConnectedToBorder(int x, int y, int z){
+		int cube = this.getIndex(x, y, z);
+		return this.solid[cube] && this.isConnected(cube);
+	}
+
+	@Override
+	public List<int[]> changePassableToSolid(int x, int y, int z){
+		int cube = this.getIndex(x, y, z);
+		if (this.solid[cube])
+			return Collections.emptyList();
+		this.solid[cube] = true;
+		this.getVertexNode(cube, 0);
+		// the trees around the Cube are known before they are joined to it
+		boolean connected = this.isBorder(cube);
+		int[] loose = new int[ADJACENT_DX.length];
+		int nbLoose = 0;
+		for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+			int edge = this.getEdge(cube, n);
+			if ((edge < 0) || ! this.solid[this.getOtherEnd(edge, cube)])
+				continue;
+			int root = this.getRoot(this.vertexNodes[0][this.getOtherEnd(edge, cube)]);
+			if ((this.flags[root] & BORDER) != 0)
+				connected = true;
+			else if (! contains(loose, nbLoose, root))
+				loose[nbLoose++] = root;
+		}
+		List<int[]> result = Collections.emptyList();
+		if (connected){
+			result = new ArrayList<int[]>();
+			result.add(new int[]{x, y, z});
+			for (int i = 0 ; i < nbLoose ; i++)
+				this.addCubes(loose[i], result);
+		}
+		for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+			int edge = this.getEdge(cube, n);
+			if ((edge >= 0) && this.solid[this.getOtherEnd(edge, cube)])
+				this.insertEdge(edge);
+		}
+		return result;
+	}
+
+	@Override
+	public List<int[]> changeSolidToPassable(int x, int y, int z){
+		int cube = this.getIndex(x, y, z);
+		if (! this.solid[cube])
+			return Collections.emptyList();
+		boolean wasConnected = this.isConnected(cube);
+		this.solid[cube] = false;
+		for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+			int edge = this.getEdge(cube, n);
+			if ((edge >= 0) && (this.edgeLevels[edge] != NO_EDGE))
+				this.deleteEdge(edge);
+		}
+		// without edges, the Cube is a tree of its own in every forest
+		for (int level = 0 ; level < this.vertexNodes.length ; level++)
+			if ((this.vertexNodes[level] != null) && (this.vertexNodes[level][cube] != 0)){
+				this.freeNode(this.vertexNodes[level][cube]);
+				this.vertexNodes[level][cube] = 0;
+			}
+		if (! wasConnected)
+			return Collections.emptyList();
+		List<int[]> changed = new ArrayList<int[]>();
+		int[] seen = new int[ADJACENT_DX.length];
+		int nbSeen = 0;
+		for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+			int edge = this.getEdge(cube, n);
+			if ((edge < 0) || ! this.solid[this.getOtherEnd(edge, cube)])
+				continue;
+			int root = this.getRoot(this.vertexNodes[0][this.getOtherEnd(edge, cube)]);
+			if (((this.flags[root] & BORDER) == 0) && ! contains(seen, nbSeen, root)){
+				seen[nbSeen++] = root;
+				this.addCubes(root, changed);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Check whether the tree of the solid Cube with the given index holds a Cube on the border.
+	 */
+	private boolean isConnected(int cube){
+		return (this.flags[this.getRoot(this.vertexNodes[0][cube])] & BORDER) != 0;
+	}
+
+	private static boolean contains(int[] values, int nbValues, int value){
+		for (int i = 0 ; i < nbValues ; i++)
+			if (values[i] == value)
+				return true;
+		return false;
+	}
+
+	/*
+	 * Edges are numbered by the Cube they start from and the axis along which they lead to the Cube with the
+	 * higher index.
+	 */
+
+	/**
+	 * Return the edge from the Cube with the given index to its n-th directly adjacent Cube, or -1 if that Cube
+	 * lies outside the World.
+	 */
+	private int getEdge(int cube, int n){
+		int x = cube % this.nbX, y = (cube / this.nbX) % this.nbY, z = cube / (this.nbX * this.nbY);
+		if (! this.isInside(x + ADJACENT_DX[n], y + ADJACENT_DY[n], z + ADJACENT_DZ[n]))
+			return -1;
+		int axis = n / 2;
+		// the even directions lead to the Cube with the lower index
+		return ((n % 2 == 0) ? cube - this.axisOffsets[axis] : cube) * 3 + axis;
+	}
+
+	private int getOtherEnd(int edge, int cube){
+		int low = edge / 3;
+		return (cube == low) ? low + this.axisOffsets[edge % 3] : low;
+	}
+
+	/**
+	 * Add the edge with the given number, between two solid Cubes, at level zero.
+	 * @post	The edge is a tree edge if its Cubes were not connected yet.
+	 */
+	private void insertEdge(int edge){
+		int low = edge / 3, high = this.getOtherEnd(edge, low);
+		this.edgeLevels[edge] = 0;
+		if (this.getRoot(this.vertexNodes[0][low]) != this.getRoot(this.vertexNodes[0][high])){
+			this.treeEdges[edge] = true;
+			this.link(edge, 0);
+		}
+		else {
+			this.treeEdges[edge] = false;
+			this.updateNonTreeFlag(low, 0);
+			this.updateNonTreeFlag(high, 0);
+		}
+	}
+
+	/**
+	 * Remove the edge with the given number.
+	 * @post	If the edge was a tree edge, it is replaced by a non-tree edge between its two trees, if there is one.
+	 */
+	private void deleteEdge(int edge){
+		int low = edge / 3, high = this.getOtherEnd(edge, low);
+		int level = this.edgeLevels[edge];
+		this.edgeLevels[edge] = NO_EDGE;
+		if (! this.treeEdges[edge]){
+			this.updateNonTreeFlag(low, level);
+			this.updateNonTreeFlag(high, level);
+			return;
+		}
+		this.treeEdges[edge] = false;
+		for (int i = 0 ; i <= level ; i++)
+			this.cut(edge, i);
+		this.edgeArcs[edge] = null;
+		for (int i = level ; i >= 0 ; i--)
+			if (this.replace(low, high, i))
+				return;
+	}
+
+	/**
+	 * Search the smaller of the trees of the given Cubes in the forest of the given level for a non-tree edge
+	 * of that level to the other tree.
+	 * @post	The tree edges of the given level in the smaller tree are raised a level, and so are the non-tree
+	 * 			edges of the given level that were looked at and lead back into the smaller tree.
+	 * @return	True if and only if a replacement was found. It then is a tree edge of the given level.
+	 */
+	private boolean replace(int u, int v, int level){
+		int rootU = this.getRoot(this.vertexNodes[level][u]), rootV = this.getRoot(this.vertexNodes[level][v]);
+		int small = (this.vertices[rootU] <= this.vertices[rootV]) ? rootU : rootV;
+		// the smaller tree holds at most half the Cubes of the tree the edge was cut from, so it fits a level higher
+		for (int arc = this.findFlag(small, LEVEL_EDGE) ; arc != 0 ; arc = this.findFlag(small, LEVEL_EDGE)){
+			int edge = (-this.payloads[arc] - 1) / 2;
+			this.ownFlags[arc] &= ~LEVEL_EDGE;
+			this.updateUp(arc);
+			this.edgeLevels[edge] = (byte) (level + 1);
+			this.link(edge, level + 1);
+		}
+		for (int node = this.findFlag(small, NON_TREE) ; node != 0 ; node = this.findFlag(small, NON_TREE)){
+			int cube = this.payloads[node];
+			for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+				int edge = this.getEdge(cube, n);
+				if ((edge < 0) || (this.edgeLevels[edge] != level) || this.treeEdges[edge])
+					continue;
+				int other = this.getOtherEnd(edge, cube);
+				if (this.getRoot(this.vertexNodes[level][other]) != small){
+					this.treeEdges[edge] = true;
+					this.updateNonTreeFlag(cube, level);
+					this.updateNonTreeFlag(other, level);
+					for (int i = 0 ; i <= level ; i++)
+						this.link(edge, i);
+					return true;
+				}
+				this.edgeLevels[edge] = (byte) (level + 1);
+				this.updateNonTreeFlag(other, level);
+				this.updateNonTreeFlag(cube, level + 1);
+				this.updateNonTreeFlag(other, level + 1);
+			}
+			this.updateNonTreeFlag(cube, level);
+		}
+		return false;
+	}
+
+	/**
+	 * Register whether the solid Cube with the given index has a non-tree edge of the given level, in its node
+	 * in the forest of that level.
+	 */
+	private void updateNonTreeFlag(int cube, int level){
+		boolean nonTree = false;
+		for (int n = 0 ; (n < ADJACENT_DX.length) && ! nonTree ; n++){
+			int edge = this.getEdge(cube, n);
+			nonTree = (edge >= 0) && (this.edgeLevels[edge] == level) && ! this.treeEdges[edge];
+		}
+		int node = (this.vertexNodes[level] == null) ? 0 : this.vertexNodes[level][cube];
+		if ((node == 0) && ! nonTree)
+			return;
+		if (node == 0)
+			node = this.getVertexNode(cube, level);
+		if (nonTree == ((this.ownFlags[node] & NON_TREE) != 0))
+			return;
+		this.ownFlags[node] ^= NON_TREE;
+		this.updateUp(node);
+	}
+
+	/**
+	 * Return the node of the Cube with the given index in the forest of the given level, creating it as a tree of
+	 * its own if the Cube has none yet.
+	 */
+	private int getVertexNode(int cube, int level){
+		if (this.vertexNodes[level] == null)
+			this.vertexNodes[level] = new int[this.solid.length];
+		if (this.vertexNodes[level][cube] == 0)
+			this.vertexNodes[level][cube] = this.createNode(cube, this.isBorder(cube) ? BORDER : 0);
+		return this.vertexNodes[level][cube];
+	}
+
+	/**
+	 * Add the Cubes in the tree with the given root to the given list, as coordinates.
+	 */
+	private void addCubes(int root, List<int[]> cubes){
+		int[] stack = new int[64];
+		int size = 0;
+		stack[size++] = root;
+		while (size > 0){
+			int node = stack[--size];
+			if (this.payloads[node] >= 0){
+				int cube = this.payloads[node];
+				cubes.add(new int[]{cube % this.nbX, (cube / this.nbX) % this.nbY, cube / (this.nbX * this.nbY)});
+			}
+			if (size + 2 > stack.length)
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			if (this.lefts[node] != 0)
+				stack[size++] = this.lefts[node];
+			if (this.rights[node] != 0)
+				stack[size++] = this.rights[node];
+		}
+	}
+
+	/*
+	 * Euler tours. The tour of a tree holds one node for every Cube in it, and one node for either direction of
+	 * every edge in it. A tour that starts at the node of a Cube is the tour of the tree rooted at that Cube.
+	 */
+
+	/**
+	 * Join the trees of the two Cubes of the given tree edge in the forest of the given level.
+	 */
+	private void link(int edge, int level){
+		int low = edge / 3, high = this.getOtherEnd(edge, low);
+		int tourLow = this.reroot(this.getVertexNode(low, level));
+		int tourHigh = this.reroot(this.getVertexNode(high, level));
+		int down = this.createNode(-2 * edge - 1, (this.edgeLevels[edge] == level) ? LEVEL_EDGE : 0);
+		int up = this.createNode(-2 * edge - 2, 0);
+		this.join(this.join(this.join(tourLow, down), tourHigh), up);
+		if ((this.edgeArcs[edge] == null) || (this.edgeArcs[edge].length < 2 * level + 2))
+			this.edgeArcs[edge] = (this.edgeArcs[edge] == null) ? new int[2 * level + 2] : Arrays.copyOf(this.edgeArcs[edge], 2 * level + 2);
+		this.edgeArcs[edge][2 * level] = down;
+		this.edgeArcs[edge][2 * level + 1] = up;
+	}
+
+	/**
+	 * Split the tree of the given tree edge in the forest of the given level in two.
+	 */
+	private void cut(int edge, int level){
+		int first = this.edgeArcs[edge][2 * level], second = this.edgeArcs[edge][2 * level + 1];
+		int firstRank = this.getRank(first), secondRank = this.getRank(second);
+		if (firstRank > secondRank){
+			int node = first;
+			first = second;
+			second = node;
+			int rank = firstRank;
+			firstRank = secondRank;
+			secondRank = rank;
+		}
+		// the tour between the two nodes of the edge is the tour of the subtree below it
+		this.split(this.getRoot(first), firstRank);
+		int before = this.splitLeft;
+		this.split(this.splitRight, secondRank - firstRank + 1);
+		int subtree = this.splitLeft, after = this.splitRight;
+		this.split(subtree, 1);
+		this.split(this.splitRight, this.counts[this.splitRight] - 1);
+		this.join(before, after);
+		this.freeNode(first);
+		this.freeNode(second);
+	}
+
+	/**
+	 * Rotate the tour holding the given node so it starts at that node.
+	 * @return	The root of the rotated tour.
+	 */
+	private int reroot(int node){
+		int rank = this.getRank(node);
+		this.split(this.getRoot(node), rank);
+		return this.join(this.splitRight, this.splitLeft);
+	}
+
+	/*
+	 * Treaps. Nodes are numbered from one, zero standing for no node; the arrays below hold their fields.
+	 */
+
+	private int createNode(int payload, int ownFlags){
+		int node;
+		if (this.nbFree > 0)
+			node = this.free[--this.nbFree];
+		else {
+			if (this.nbNodes == this.lefts.length)
+				this.growNodes();
+			node = this.nbNodes++;
+		}
+		this.lefts[node] = 0;
+		this.rights[node] = 0;
+		this.parents[node] = 0;
+		this.seed ^= this.seed << 13;
+		this.seed ^= this.seed >>> 17;
+		this.seed ^= this.seed << 5;
+		this.priorities[node] = this.seed;
+		this.payloads[node] = payload;
+		this.ownFlags[node] = ownFlags;
+		this.update(node);
+		return node;
+	}
+
+	private void freeNode(int node){
+		if (this.nbFree == this.free.length)
+			this.free = Arrays.copyOf(this.free, this.free.length * 2);
+		this.free[this.nbFree++] = node;
+	}
+
+	private void growNodes(){
+		int length = this.lefts.length * 2;
+		this.lefts = Arrays.copyOf(this.lefts, length);
+		this.rights = Arrays.copyOf(this.rights, length);
+		this.parents = Arrays.copyOf(this.parents, length);
+		this.priorities = Arrays.copyOf(this.priorities, length);
+		this.counts = Arrays.copyOf(this.counts, length);
+		this.vertices = Arrays.copyOf(this.vertices, length);
+		this.flags = Arrays.copyOf(this.flags, length);
+		this.ownFlags = Arrays.copyOf(this.ownFlags, length);
+		this.payloads = Arrays.copyOf(this.payloads, length);
+	}
+
+	/**
+	 * Gather the number of nodes, the number of Cubes and the flags of the subtree of the given node.
+	 */
+	private void update(int node){
+		int left = this.lefts[node], right = this.rights[node];
+		this.counts[node] = 1 + this.counts[left] + this.counts[right];
+		this.vertices[node] = ((this.payloads[node] >= 0) ? 1 : 0) + this.vertices[left] + this.vertices[right];
+		this.flags[node] = this.ownFlags[node] | this.flags[left] | this.flags[right];
+	}
+
+	private void updateUp(int node){
+		for ( ; node != 0 ; node = this.parents[node])
+			this.update(node);
+	}
+
+	private int getRoot(int node){
+		while (this.parents[node] != 0)
+			node = this.parents[node];
+		return node;
+	}
+
+	/**
+	 * Return the number of nodes before the given node in its treap.
+	 */
+	private int getRank(int node){
+		int rank = this.counts[this.lefts[node]];
+		for (int parent = this.parents[node] ; parent != 0 ; node = parent, parent = this.parents[node])
+			if (this.rights[parent] == node)
+				rank += this.counts[this.lefts[parent]] + 1;
+		return rank;
+	}
+
+	/**
+	 * Return a node with the given flag in the treap with the given root, or zero if there is none.
+	 */
+	private int findFlag(int root, int flag){
+		if ((this.flags[root] & flag) == 0)
+			return 0;
+		int node = root;
+		while ((this.ownFlags[node] & flag) == 0)
+			node = ((this.flags[this.lefts[node]] & flag) != 0) ? this.lefts[node] : this.rights[node];
+		return node;
+	}
+
+	/**
+	 * Join the treaps with the given roots, the nodes of the first before those of the second.
+	 * @return	The root of the joined treap.
+	 */
+	private int join(int first, int second){
+		int root = this.merge(first, second);
+		if (root != 0)
+			this.parents[root] = 0;
+		return root;
+	}
+
+	private int merge(int first, int second){
+		if (first == 0)
+			return second;
+		if (second == 0)
+			return first;
+		if (this.priorities[first] > this.priorities[second]){
+			int right = this.merge(this.rights[first], second);
+			this.rights[first] = right;
+			this.parents[right] = first;
+			this.update(first);
+			return first;
+		}
+		int left = this.merge(first, this.lefts[second]);
+		this.lefts[second] = left;
+		this.parents[left] = second;
+		this.update(second);
+		return second;
+	}
+
+	/**
+	 * Split the treap with the given root in the treap of its first nodes, up to the given number, and the treap
+	 * of the others.
+	 * @post	The roots of both treaps are registered in splitLeft and splitRight.
+	 */
+	private void split(int root, int count){
+		this.splitRecursively(root, count);
+		if (this.splitLeft != 0)
+			this.parents[this.splitLeft] = 0;
+		if (this.splitRight != 0)
+			this.parents[this.splitRight] = 0;
+	}
+
+	private void splitRecursively(int node, int count){
+		if (node == 0){
+			this.splitLeft = 0;
+			this.splitRight = 0;
+			return;
+		}
+		int left = this.lefts[node];
+		if (this.counts[left] >= count){
+			this.splitRecursively(left, count);
+			this.lefts[node] = this.splitRight;
+			if (this.splitRight != 0)
+				this.parents[this.splitRight] = node;
+			this.update(node);
+			this.splitRight = node;
+		}
+		else {
+			this.splitRecursively(this.rights[node], count - this.counts[left] - 1);
+			this.rights[node] = this.splitLeft;
+			if (this.splitLeft != 0)
+				this.parents[this.splitLeft] = node;
+			this.update(node);
+			this.splitLeft = node;
+		}
+	}
+
+	/**
+	 * Constants registering the flags of the nodes: a Cube on the border, one direction of a tree edge whose
+	 * level is the level of the forest, and a Cube with a non-tree edge of the level of the forest.
+	 */
+	private static final int BORDER = 1;
+	private static final int LEVEL_EDGE = 2;
+	private static final int NON_TREE = 4;
+
+	private static final byte NO_EDGE = -1;
+
+	private final int[] axisOffsets;
+	private final boolean[] solid;
+
+	/**
+	 * Variables registering, per edge, its level or NO_EDGE, whether it is a tree edge, and the nodes of its
+	 * two directions in the forests it is in.
+	 */
+	private final byte[] edgeLevels;
+	private final boolean[] treeEdges;
+	private final int[][] edgeArcs;
+
+	/**
+	 * Variable registering, per level and per Cube, the node of the Cube in the forest of that level.
+	 */
+	private final int[][] vertexNodes;
+
+	private int[] lefts = new int[64];
+	private int[] rights = new int[64];
+	private int[] parents = new int[64];
+	private int[] priorities = new int[64];
+	private int[] counts = new int[64];
+	private int[] vertices = new int[64];
+	private int[] flags = new int[64];
+	private int[] ownFlags = new int[64];
+
+	/**
+	 * Variable registering the Cube of every node of a Cube, and minus one minus twice the edge, minus one for
+	 * the second direction, for every node of an edge.
+	 */
+	private int[] payloads = new int[64];
+	private int nbNodes = 1;
+	private int[] free = new int[64];
+	private int nbFree;
+	private int seed = 0x2545F491;
+	private int splitLeft;
+	private int splitRight;
+}
@@ -65,6 +65,24 @@ public class Faction {
 		this.scheduler = scheduler;
 	}
 	
+	/**
+	 * Return whether the Units of this Faction plan their routes cooperatively.
+	 */
+	@Basic
+	public boolean isCooperativePathfinding(){
+		return this.cooperativePathfinding;
+	}
+	
+	/**
+	 * Set whether the Units of this Faction plan their routes cooperatively.
+	 * @param cooperativePathfinding	Whether the Units reserve the Cubes on their routes in time and step around
+	 * 			each other's reservations.
+	 * @post	|new.isCooperativePathfinding() == cooperativePathfinding
+	 */
+	public void setCooperativePathfinding(boolean cooperativePathfinding){
+		this.cooperativePathfinding = cooperativePathfinding;
+	}
+	
 	/**
 	 * Add the given Unit to this Faction.
 	 * @param unit The Unit that is to be added to this Faction.
@@ -102,6 +120,11 @@ public class Faction {
 	 */
 	private Scheduler scheduler;
 	
+	/**
+	 * Variable registering whether the Units of this Faction plan their routes cooperatively.
+	 */
+	private boolean cooperativePathfinding;
+	
 	/**
 	 * Constant registering the World this Faction is a part of.
 	 */
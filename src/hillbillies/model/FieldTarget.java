@@ -0,0 +1,48 @@
+package hillbillies.model;
+
+import java.util.BitSet;
+
+/**
+ * The categories of targets a World keeps a DistanceField for.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public enum FieldTarget {
+	/**
+	 * The workshop Cubes of a World.
+	 */
+	WORKSHOP(){
+		void markSources(World world, BitSet sources){
+			for (Cube cube : world.getWorkshops())
+				sources.set(world.getCubeIndex(cube.getXPosition(), cube.getYPosition(), cube.getZPosition()));
+		}
+	},
+	/**
+	 * The Cubes occupied by the Logs of a World.
+	 */
+	LOG(){
+		void markSources(World world, BitSet sources){
+			for (Log log : world.getLogs()){
+				int[] position = log.getCubeCoordinate();
+				sources.set(world.getCubeIndex(position[0], position[1], position[2]));
+			}
+		}
+	},
+	/**
+	 * The Cubes occupied by the Boulders of a World.
+	 */
+	BOULDER(){
+		void markSources(World world, BitSet sources){
+			for (Boulder boulder : world.getBoulders()){
+				int[] position = boulder.getCubeCoordinate();
+				sources.set(world.getCubeIndex(position[0], position[1], position[2]));
+			}
+		}
+	};
+
+	/**
+	 * Mark the indices of all Cubes of this category in the given World in the given set.
+	 */
+	abstract void markSources(World world, BitSet sources);
+}
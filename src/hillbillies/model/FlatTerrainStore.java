@@ -0,0 +1,54 @@
+package hillbillies.model;
+
+/**
+ * A store for the CubeTypes of a World that keeps one byte per Cube in a single array.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class FlatTerrainStore extends TerrainStore {
+
+	/**
+	 * Initialize a new store holding the given values of CubeTypes.
+	 * @param types	The value of the CubeType of every Cube, by its x, y and z coordinate.
+	 */
+	FlatTerrainStore(int[][][] types){
+		super(types.length, types[0].length, types[0][0].length);
+		this.types = new byte[types.length * types[0].length * types[0][0].length];
+		int index = 0;
+		for (int z = 0 ; z < this.getNbCubesZ() ; z++)
+			for (int y = 0 ; y < this.getNbCubesY() ; y++)
+				for (int x = 0 ; x < this.getNbCubesX() ; x++)
+					this.types[index++] = (byte) types[x][y][z];
+	}
+
+	@Override
+	public int getType(int x, int y, int z){
+		return this.types[x + this.getNbCubesX() * (y + this.getNbCubesY() * z)];
+	}
+
+	@Override
+	public int getType(int index){
+		return this.types[index];
+	}
+
+	@Override
+	void setType(int x, int y, int z, int value){
+		this.types[x + this.getNbCubesX() * (y + this.getNbCubesY() * z)] = (byte) value;
+	}
+
+	@Override
+	void setType(int index, int value){
+		this.types[index] = (byte) value;
+	}
+
+	@Override
+	public long getStorageSize(){
+		return this.types.length;
+	}
+
+	/**
+	 * Variable registering the value of the CubeType of every Cube, at the index of the Cube.
+	 */
+	private final byte[] types;
+}
@@ -0,0 +1,291 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class of border connectivities that flood-fill the solid blobs around every change. It is set up for a whole
+ * terrain at once, with a single flood fill from the border. A change costs time in proportion to the solid blobs
+ * it has to search, which stays small as long as the border is near.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+class FloodFillConnectivity extends BorderConnectivity {
+
+	/**
+	 * Initialize a new connectivity for the given terrain.
+	 * @param terrain	The types of the Cubes of a World.
+	 * @post	A Cube is passable for the new connectivity if and only if its type in the given terrain is passable.
+	 * @post	Every solid Cube that a chain of directly adjacent solid Cubes links to the border is connected,
+	 * 			every other Cube is not.
+	 */
+	FloodFillConnectivity(TerrainStore terrain){
+		super(terrain);
+		int nbCubes = this.nbX * this.nbY * this.nbZ;
+		int layer = this.nbX * this.nbY;
+		this.adjacentOffsets = new int[]{-1, 1, -this.nbX, this.nbX, -layer, layer};
+		this.stamp = terrain.createCubeArray(0);
+		this.flags = terrain.createSmallCubeArray(NOT_CONNECTED);
+		int[] queue = new int[nbCubes];
+		int tail = 0;
+		for (int index = 0 ; index < nbCubes ; index++){
+			if (CubeType.getCubeTypeOfValue(terrain.getType(index)).isPassable())
+				this.setFlag(index, PASSABLE, true);
+			else if (this.isBorder(index)){
+				this.setFlag(index, NOT_CONNECTED, false);
+				queue[tail++] = index;
+			}
+		}
+		// every Cube enters the queue at most once, when it is found to be connected
+		for (int head = 0 ; head < tail ; head++){
+			int index = queue[head];
+			int x = index % this.nbX, y = (index / this.nbX) % this.nbY, z = index / (this.nbX * this.nbY);
+			for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+				int nx = x + ADJACENT_DX[n], ny = y + ADJACENT_DY[n], nz = z + ADJACENT_DZ[n];
+				if (! this.isInside(nx, ny, nz))
+					continue;
+				int next = this.getIndex(nx, ny, nz);
+				if (! this.hasFlag(next, PASSABLE) && this.hasFlag(next, NOT_CONNECTED)){
+					this.setFlag(next, NOT_CONNECTED, false);
+					queue[tail++] = next;
+				}
+			}
+		}
+		// the solid mass was connected Cube by Cube, leaving blocks that hold a single value again
+		this.flags.compact();
+	}
+
+	@Override
+	public boolean isSolidConnectedToBorder(int x, int y, int z){
+		int index = this.getIndex(x, y, z);
+		return this.flags.get(index) == 0;
+	}
+
+	@Override
+	public List<int[]> changePassableToSolid(int x, int y, int z){
+		int index = this.getIndex(x, y, z);
+		if (! this.hasFlag(index, PASSABLE))
+			return Collections.emptyList();
+		this.setFlag(index, PASSABLE, false);
+		boolean connected = this.isBorder(index);
+		for (int n = 0 ; (n < ADJACENT_DX.length) && ! connected ; n++){
+			int nx = x + ADJACENT_DX[n], ny = y + ADJACENT_DY[n], nz = z + ADJACENT_DZ[n];
+			connected = this.isInside(nx, ny, nz) && this.isSolidConnectedToBorder(nx, ny, nz);
+		}
+		if (! connected)
+			return Collections.emptyList();
+		// the new solid Cube joins the solid Cubes around it that were not connected yet to the border
+		List<int[]> result = new ArrayList<int[]>();
+		this.clearQueue();
+		this.setFlag(index, NOT_CONNECTED, false);
+		this.addLast(index);
+		while (this.queueSize > 0){
+			int current = this.pollFirst();
+			int cx = current % this.nbX, cy = (current / this.nbX) % this.nbY, cz = current / (this.nbX * this.nbY);
+			result.add(new int[]{cx, cy, cz});
+			for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+				int nx = cx + ADJACENT_DX[n], ny = cy + ADJACENT_DY[n], nz = cz + ADJACENT_DZ[n];
+				if (! this.isInside(nx, ny, nz))
+					continue;
+				int next = current + this.adjacentOffsets[n];
+				if (! this.hasFlag(next, PASSABLE) && this.hasFlag(next, NOT_CONNECTED)){
+					this.setFlag(next, NOT_CONNECTED, false);
+					this.addLast(next);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public List<int[]> changeSolidToPassable(int x, int y, int z){
+		return this.changeSolidToPassable(new int[]{this.getIndex(x, y, z)}, 1);
+	}
+
+	/**
+	 * Make the Cubes with the given indices passable instead of solid, in a single pass.
+	 * @post	All given Cubes are made passable before any solid Cube is searched from, so a solid blob next to
+	 * 			several of them is searched only once.
+	 */
+	@Override
+	public List<int[]> changeSolidToPassable(int[] cubes, int nbCubes){
+		int[] removed = new int[nbCubes];
+		int nbRemoved = 0;
+		for (int i = 0 ; i < nbCubes ; i++)
+			if (! this.hasFlag(cubes[i], PASSABLE)){
+				this.setFlag(cubes[i], PASSABLE, true);
+				this.setFlag(cubes[i], NOT_CONNECTED, true);
+				removed[nbRemoved++] = cubes[i];
+			}
+		if (nbRemoved == 0)
+			return Collections.emptyList();
+		// every solid neighbour gets a search of its own, unless an earlier search of this change visited it
+		int maxSearches = nbRemoved * ADJACENT_DX.length;
+		if (this.nextStamp > Integer.MAX_VALUE - maxSearches){
+			this.stamp.fill(0);
+			this.nextStamp = 1;
+		}
+		if (this.connectedSearches.length < maxSearches)
+			this.connectedSearches = new boolean[maxSearches];
+		int firstStamp = this.nextStamp;
+		List<int[]> changed = new ArrayList<int[]>();
+		for (int r = 0 ; r < nbRemoved ; r++){
+			int index = removed[r];
+			int x = index % this.nbX, y = (index / this.nbX) % this.nbY, z = index / (this.nbX * this.nbY);
+			for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+				int nx = x + ADJACENT_DX[n], ny = y + ADJACENT_DY[n], nz = z + ADJACENT_DZ[n];
+				if (! this.isInside(nx, ny, nz))
+					continue;
+				int neighbour = index + this.adjacentOffsets[n];
+				if (this.hasFlag(neighbour, PASSABLE) || (this.stamp.get(neighbour) >= firstStamp))
+					continue;
+				int search = this.nextStamp++;
+				this.nbVisited = 0;
+				this.connectedSearches[search - firstStamp] = this.existsPathToBorder(neighbour, search, firstStamp);
+				if (! this.connectedSearches[search - firstStamp])
+					// the search visited the whole solid blob of the neighbour
+					for (int i = 0 ; i < this.nbVisited ; i++){
+						int cube = this.visited[i];
+						if (! this.hasFlag(cube, NOT_CONNECTED)){
+							this.setFlag(cube, NOT_CONNECTED, true);
+							changed.add(new int[]{cube % this.nbX, (cube / this.nbX) % this.nbY, cube / (this.nbX * this.nbY)});
+						}
+					}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Check whether the given flag is set for the Cube with the given index.
+	 */
+	private boolean hasFlag(int index, int flag){
+		return (this.flags.get(index) & flag) != 0;
+	}
+
+	/**
+	 * Set or clear the given flag for the Cube with the given index.
+	 */
+	private void setFlag(int index, int flag, boolean value){
+		int flags = this.flags.get(index);
+		this.flags.set(index, value ? (flags | flag) : (flags & ~flag));
+	}
+
+	/**
+	 * Check whether a chain of directly adjacent solid Cubes leads from the solid Cube with the given index
+	 * to the border, stamping the Cubes that are visited on the way with the given stamp.
+	 * @param firstStamp	The stamp of the first search of the current change. A Cube stamped by an earlier
+	 * 						search of the current change shares the outcome of that search.
+	 * @post	The visited Cubes are registered in the visited list of this connectivity.
+	 */
+	private boolean existsPathToBorder(int origin, int search, int firstStamp){
+		this.clearQueue();
+		this.addFirst(origin);
+		this.stamp.set(origin, search);
+		this.addVisited(origin);
+		while (this.queueSize > 0){
+			int current = this.pollFirst();
+			if (this.isBorder(current))
+				return true;
+			int x = current % this.nbX, y = (current / this.nbX) % this.nbY, z = current / (this.nbX * this.nbY);
+			for (int n = 0 ; n < ADJACENT_DX.length ; n++){
+				int nx = x + ADJACENT_DX[n], ny = y + ADJACENT_DY[n], nz = z + ADJACENT_DZ[n];
+				if (! this.isInside(nx, ny, nz))
+					continue;
+				int next = current + this.adjacentOffsets[n];
+				if (this.hasFlag(next, PASSABLE) || (this.stamp.get(next) == search))
+					continue;
+				if (this.stamp.get(next) >= firstStamp)
+					// an earlier search of this change already settled the blob of this Cube
+					return this.connectedSearches[this.stamp.get(next) - firstStamp];
+				this.stamp.set(next, search);
+				this.addVisited(next);
+				// the Cubes found last are visited first, which heads for the border quickly in large solid masses
+				this.addFirst(next);
+			}
+		}
+		return false;
+	}
+
+	private void addVisited(int index){
+		if (this.nbVisited == this.visited.length)
+			this.visited = Arrays.copyOf(this.visited, this.nbVisited * 2);
+		this.visited[this.nbVisited++] = index;
+	}
+
+	/*
+	 * The queue of this connectivity is a ring buffer of Cube indices, which can be used at both ends.
+	 */
+
+	private void clearQueue(){
+		this.queueHead = 0;
+		this.queueSize = 0;
+	}
+
+	private void addFirst(int index){
+		this.growQueue();
+		this.queueHead = (this.queueHead - 1) & (this.queue.length - 1);
+		this.queue[this.queueHead] = index;
+		this.queueSize += 1;
+	}
+
+	private void addLast(int index){
+		this.growQueue();
+		this.queue[(this.queueHead + this.queueSize) & (this.queue.length - 1)] = index;
+		this.queueSize += 1;
+	}
+
+	private int pollFirst(){
+		int index = this.queue[this.queueHead];
+		this.queueHead = (this.queueHead + 1) & (this.queue.length - 1);
+		this.queueSize -= 1;
+		return index;
+	}
+
+	private void growQueue(){
+		if (this.queueSize < this.queue.length)
+			return;
+		int[] grown = new int[this.queue.length * 2];
+		for (int i = 0 ; i < this.queueSize ; i++)
+			grown[i] = this.queue[(this.queueHead + i) & (this.queue.length - 1)];
+		this.queue = grown;
+		this.queueHead = 0;
+	}
+
+	/**
+	 * Variable registering, per Cube, whether it is passable and whether it is not connected to the border, as
+	 * flags, chunked if the terrain store is. A solid Cube connected to the border has no flags.
+	 */
+	private final CubeArray flags;
+	private static final int PASSABLE = 1;
+	private static final int NOT_CONNECTED = 2;
+
+	/**
+	 * Variable registering the differences between the index of a Cube and those of its directly adjacent Cubes.
+	 */
+	private final int[] adjacentOffsets;
+
+	/**
+	 * Variables registering, per Cube, the last search that visited it, and the stamp of the next search.
+	 * The searches of a single change get consecutive stamps, and their outcomes are registered in order.
+	 */
+	private final CubeArray stamp;
+	private int nextStamp = 1;
+	private boolean[] connectedSearches = new boolean[ADJACENT_DX.length];
+
+	/**
+	 * Variables registering the Cubes visited by the current search.
+	 */
+	private int[] visited = new int[64];
+	private int nbVisited;
+
+	/**
+	 * Variables registering the ring buffer of Cube indices still to visit, whose length is a power of two.
+	 */
+	private int[] queue = new int[64];
+	private int queueHead;
+	private int queueSize;
+}
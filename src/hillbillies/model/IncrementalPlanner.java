@@ -0,0 +1,303 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hillbillies.part2.listener.TerrainChangeListener;
+
+/**
+ * A class of incremental route planners (D* Lite) toward a fixed goal Cube of a World.
+ * A planner searches backwards from its goal and keeps its search state between requests, while the Unit
+ * it plans for walks toward the goal. When the terrain changes, only the Cubes around the change are
+ * updated, and the next request repairs the part of the search that depends on them instead of
+ * planning again from scratch.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class IncrementalPlanner implements TerrainChangeListener {
+
+	/**
+	 * Initialize a new planner toward the given goal in the given World.
+	 * @param world	The World to plan in.
+	 * @param goal	The index of the goal Cube.
+	 * @post	The planner is not registered with its World yet.
+	 */
+	public IncrementalPlanner(World world, int goal){
+		this.world = world;
+		this.goal = goal;
+		this.nbX = world.getNbCubesX();
+		this.layer = this.nbX * world.getNbCubesY();
+		this.getNode(goal).rhs = 0;
+	}
+
+	/**
+	 * Return the index of the goal Cube of this planner.
+	 */
+	public int getGoal(){
+		return this.goal;
+	}
+
+	/**
+	 * Return the index of the Cube a Unit in the Cube with the given index has to step to next.
+	 * @param start	The index of the Cube the Unit occupies.
+	 * @return	The index of the first Cube of a cheapest route from start to the goal.
+	 * @return	-1 if start is the goal or the goal can not be reached from start.
+	 */
+	public int getNextStep(int start){
+		if (start == this.goal)
+			return -1;
+		this.moveStart(start);
+		this.processChanges();
+		this.computeShortestPath();
+		if (this.getNode(start).g == Double.POSITIVE_INFINITY)
+			return -1;
+		return this.getBestSuccessor(start);
+	}
+
+	/**
+	 * Return a cheapest route from the Cube with the given index to the goal.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start is the goal.
+	 * @return	Null if the goal can not be reached.
+	 */
+	public int[] findRoute(int start){
+		if (start == this.goal)
+			return new int[0];
+		int first = this.getNextStep(start);
+		if (first < 0)
+			return null;
+		int[] route = new int[16];
+		int length = 0;
+		for (int current = first ; current != this.goal ; current = this.getBestSuccessor(current)){
+			if ((current < 0) || (length == this.world.getNbCubes()))
+				return null;
+			if (length == route.length)
+				route = Arrays.copyOf(route, length * 2);
+			route[length++] = current;
+		}
+		route = Arrays.copyOf(route, length + 1);
+		route[length] = this.goal;
+		return route;
+	}
+
+	/**
+	 * Register that the type of the Cube at the given coordinates has changed.
+	 * @post	The Cubes around the changed Cube that this planner has already visited are updated at the next request.
+	 */
+	@Override
+	public void notifyTerrainChanged(int x, int y, int z){
+		boolean touched = false;
+		for (int dz = -2 ; dz <= 2 ; dz++)
+			for (int dy = -2 ; dy <= 2 ; dy++)
+				for (int dx = -2 ; dx <= 2 ; dx++)
+					if (this.world.isInside(x + dx, y + dy, z + dz)){
+						Node node = this.nodes.get(this.world.getCubeIndex(x + dx, y + dy, z + dz));
+						if ((node != null) && ! node.changed){
+							node.changed = true;
+							this.changed.add(node);
+							touched = true;
+						}
+					}
+		if (touched)
+			this.nbRepairs += 1;
+	}
+
+	/**
+	 * Return the number of Cubes this planner has expanded since it was created.
+	 */
+	public long getNbExpansions(){
+		return this.nbExpansions;
+	}
+
+	/**
+	 * Return the number of terrain changes that touched the search state of this planner.
+	 */
+	public long getNbRepairs(){
+		return this.nbRepairs;
+	}
+
+	/**
+	 * Move the start of the search to the given Cube, correcting the keys of the open Cubes for the distance
+	 * the start moved.
+	 */
+	private void moveStart(int start){
+		if (this.start < 0){
+			// the goal enters the open list once the start, and so the keys, are known
+			this.start = start;
+			Node goal = this.getNode(this.goal);
+			this.setKey(goal);
+			this.open.add(goal);
+			return;
+		}
+		this.km += this.estimate(this.start, start);
+		this.start = start;
+	}
+
+	/**
+	 * Update every visited Cube around a terrain change, because the cost of its steps may have changed.
+	 */
+	private void processChanges(){
+		for (Node node : this.changed){
+			node.changed = false;
+			this.updateVertex(node);
+		}
+		this.changed.clear();
+	}
+
+	private void computeShortestPath(){
+		Node start = this.getNode(this.start);
+		while (! this.open.isEmpty()){
+			Node top = (Node) this.open.peek();
+			double startKey2 = Math.min(start.g, start.rhs), startKey1 = startKey2 + this.km;
+			boolean topFirst = (top.getPriority() < startKey1) || ((top.getPriority() == startKey1) && (top.getCost() < startKey2));
+			if (! topFirst && (start.rhs == start.g))
+				break;
+			double oldKey1 = top.getPriority(), oldKey2 = top.getCost();
+			this.setKey(top);
+			if ((oldKey1 < top.getPriority()) || ((oldKey1 == top.getPriority()) && (oldKey2 < top.getCost()))){
+				this.open.update(top);
+				continue;
+			}
+			this.open.poll();
+			this.nbExpansions += 1;
+			if (top.g > top.rhs){
+				top.g = top.rhs;
+				this.updateNeighbours(top.index);
+			}
+			else {
+				top.g = Double.POSITIVE_INFINITY;
+				this.updateVertex(top);
+				this.updateNeighbours(top.index);
+			}
+		}
+	}
+
+	private void updateNeighbours(int index){
+		int x = index % this.nbX, y = (index % this.layer) / this.nbX, z = index / this.layer;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (this.world.isInside(nx, ny, nz))
+				this.updateVertex(this.getNode(this.world.getCubeIndex(nx, ny, nz)));
+		}
+	}
+
+	private void updateVertex(Node node){
+		if (node.index != this.goal){
+			node.rhs = Double.POSITIVE_INFINITY;
+			int x = node.index % this.nbX, y = (node.index % this.layer) / this.nbX, z = node.index / this.layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				Node next = this.nodes.get(this.world.getCubeIndex(nx, ny, nz));
+				if ((next == null) || (next.g == Double.POSITIVE_INFINITY))
+					continue;
+				double cost = this.getStepCost(node.index, next.index, n);
+				if (cost + next.g < node.rhs)
+					node.rhs = cost + next.g;
+			}
+		}
+		if (this.open.contains(node))
+			this.open.remove(node);
+		if (node.g != node.rhs){
+			this.setKey(node);
+			this.open.add(node);
+		}
+	}
+
+	/**
+	 * Return the index of the neighbour of the Cube with the given index that lies on a cheapest route to the goal.
+	 */
+	private int getBestSuccessor(int index){
+		int x = index % this.nbX, y = (index % this.layer) / this.nbX, z = index / this.layer;
+		int best = -1;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (! this.world.isInside(nx, ny, nz))
+				continue;
+			Node next = this.nodes.get(this.world.getCubeIndex(nx, ny, nz));
+			if (next == null)
+				continue;
+			double cost = this.getStepCost(index, next.index, n) + next.g;
+			if (cost < bestCost){
+				bestCost = cost;
+				best = next.index;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Return the cost of the step from the Cube with the given index to its neighbour in the given direction.
+	 * @return	Positive infinity if the neighbour is not walkable, or the Cube itself is not walkable and is not
+	 * 			the start of the search.
+	 */
+	private double getStepCost(int from, int to, int direction){
+		if (! this.world.isWalkable(to))
+			return Double.POSITIVE_INFINITY;
+		if ((from != this.start) && ! this.world.isWalkable(from))
+			return Double.POSITIVE_INFINITY;
+		return Neighbourhood.COST[direction];
+	}
+
+	private void setKey(Node node){
+		double min = Math.min(node.g, node.rhs);
+		node.setPriority(min + this.estimate(this.start, node.index) + this.km);
+		node.setCost(min);
+	}
+
+	private double estimate(int from, int to){
+		return Neighbourhood.estimate(to % this.nbX - from % this.nbX, (to % this.layer) / this.nbX - (from % this.layer) / this.nbX,
+				to / this.layer - from / this.layer);
+	}
+
+	private Node getNode(int index){
+		Node node = this.nodes.get(index);
+		if (node == null){
+			node = new Node(this.world.getCubeAtIndex(index), index);
+			this.nodes.put(index, node);
+		}
+		return node;
+	}
+
+	/**
+	 * The search state of one Cube: its cost to the goal (g), the cost its neighbours promise (rhs), and its key.
+	 * The key is ordered by its first part, kept as priority, and then by its second part, kept as cost.
+	 */
+	private static final class Node extends Data {
+
+		Node(Cube cube, int index){
+			super(cube, Double.POSITIVE_INFINITY);
+			this.index = index;
+		}
+
+		@Override
+		public boolean precedes(Data other){
+			if (this.getPriority() != other.getPriority())
+				return this.getPriority() < other.getPriority();
+			return this.getCost() < other.getCost();
+		}
+
+		final int index;
+		double g = Double.POSITIVE_INFINITY;
+		double rhs = Double.POSITIVE_INFINITY;
+		boolean changed;
+	}
+
+	private final World world;
+	private final int goal;
+	private final int nbX;
+	private final int layer;
+	private int start = -1;
+	private double km;
+	private final List<Node> changed = new ArrayList<Node>();
+	private final Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+	private final DataHeap open = new DataHeap();
+	private long nbExpansions;
+	private long nbRepairs;
+}
@@ -0,0 +1,135 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of Cube indices, ordered by the keys an owner stores per index in a float array, and among
+ * equal keys by the highest value in a second array of ties, if the owner gives one.
+ * The position of every index in the heap is kept, so keys can be lowered in logarithmic time.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class IndexHeap {
+
+	/**
+	 * Initialize a new empty heap for indices below the given number, ordered by the given keys.
+	 */
+	IndexHeap(int nbIndices, float[] keys){
+		this(nbIndices, keys, null);
+	}
+
+	/**
+	 * Initialize a new empty heap for indices below the given number, ordered by the given keys, and among equal
+	 * keys by the highest of the given ties.
+	 */
+	IndexHeap(int nbIndices, float[] keys, float[] ties){
+		this.keys = keys;
+		this.ties = ties;
+		this.position = new int[nbIndices];
+		Arrays.fill(this.position, -1);
+		this.heap = new int[Math.max(64, nbIndices / 8)];
+	}
+
+	/**
+	 * Allow indices below the given number from now on, ordered by the given keys and ties, which replace the
+	 * arrays of this heap and must hold the same values for the indices already in it.
+	 */
+	void grow(int nbIndices, float[] keys, float[] ties){
+		int length = this.position.length;
+		if (nbIndices > length){
+			this.position = Arrays.copyOf(this.position, nbIndices);
+			Arrays.fill(this.position, length, nbIndices, -1);
+		}
+		this.keys = keys;
+		this.ties = ties;
+	}
+
+	int size(){
+		return this.size;
+	}
+
+	boolean isEmpty(){
+		return this.size == 0;
+	}
+
+	boolean contains(int index){
+		return this.position[index] >= 0;
+	}
+
+	/**
+	 * Add the given index, or restore the heap order after its key was lowered if it is already in this heap.
+	 */
+	void addOrDecrease(int index){
+		if (this.position[index] < 0){
+			if (this.size == this.heap.length)
+				this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+			this.heap[this.size] = index;
+			this.position[index] = this.size;
+			this.size += 1;
+		}
+		this.siftUp(this.position[index]);
+	}
+
+	/**
+	 * Remove and return the index with the lowest key.
+	 */
+	int poll(){
+		int first = this.heap[0];
+		this.position[first] = -1;
+		this.size -= 1;
+		if (this.size > 0){
+			this.heap[0] = this.heap[this.size];
+			this.position[this.heap[0]] = 0;
+			this.siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Check whether the first given index comes before the second one.
+	 */
+	private boolean precedes(int a, int b){
+		if (this.keys[a] != this.keys[b])
+			return this.keys[a] < this.keys[b];
+		return (this.ties != null) && (this.ties[a] > this.ties[b]);
+	}
+
+	private void siftUp(int at){
+		int index = this.heap[at];
+		while (at > 0){
+			int parent = (at - 1) / 2;
+			if (! this.precedes(index, this.heap[parent]))
+				break;
+			this.heap[at] = this.heap[parent];
+			this.position[this.heap[at]] = at;
+			at = parent;
+		}
+		this.heap[at] = index;
+		this.position[index] = at;
+	}
+
+	private void siftDown(int at){
+		int index = this.heap[at];
+		while (true){
+			int child = 2 * at + 1;
+			if (child >= this.size)
+				break;
+			if ((child + 1 < this.size) && this.precedes(this.heap[child + 1], this.heap[child]))
+				child += 1;
+			if (! this.precedes(this.heap[child], index))
+				break;
+			this.heap[at] = this.heap[child];
+			this.position[this.heap[at]] = at;
+			at = child;
+		}
+		this.heap[at] = index;
+		this.position[index] = at;
+	}
+
+	private float[] keys;
+	private float[] ties;
+	private int[] position;
+	private int[] heap;
+	private int size;
+}
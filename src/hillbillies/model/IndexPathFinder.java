@@ -0,0 +1,280 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * An A* path finder that works on Cube indices (see World.getCubeIndex) instead of Cube objects. All search
+ * state lives in primitive arrays that every thread reuses from one search to the next. Each search gets a
+ * new generation number, and an entry of the arrays only counts if it carries the current generation, so
+ * the arrays never have to be cleared. Apart from the returned route, a search allocates nothing.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public final class IndexPathFinder {
+
+	private IndexPathFinder(){
+	}
+
+	/**
+	 * Find a cheapest route between the Cubes with the given indices in the given World.
+	 * @param world	The World to search in.
+	 * @param start	The index of the Cube the route starts in.
+	 * @param goal	The index of the Cube the route has to reach.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start and goal are the same Cube. Every Cube on the route is walkable, and every
+	 * 			next Cube neighbours the previous one.
+	 * @return	Null if the goal can not be reached.
+	 * @note	In a World with a chunked terrain store, the route is found by an IndexSearch, whose state is sized
+	 * 			by the Cubes it reaches instead of by the World, so searching a large World takes little memory.
+	 */
+	public static int[] findRoute(World world, int start, int goal){
+		if (world.getTerrainStore() instanceof ChunkedTerrainStore){
+			IndexSearch search = new IndexSearch(world, start, goal);
+			search.run(Integer.MAX_VALUE);
+			return search.getRoute();
+		}
+		return findRoute(world, start, goal, null);
+	}
+
+	/**
+	 * Find a cheapest route between the Cubes with the given indices in the given World that only passes Cubes
+	 * accepted by the given filter.
+	 * @param allowed	The filter on the indices of the Cubes the route may pass, or null to allow all Cubes.
+	 * @return	The cheapest route that only passes walkable Cubes accepted by the filter, as for findRoute(World, int, int).
+	 */
+	static int[] findRoute(World world, int start, int goal, IntPredicate allowed){
+		return findRoute((WalkableTerrain) world, start, goal, allowed);
+	}
+
+	/**
+	 * Find a cheapest route between the Cubes with the given indices in the given snapshot of a World.
+	 * The snapshot never changes, so the search can run on any thread while the World goes on.
+	 * @return	The cheapest route over the Cubes that were walkable when the snapshot was taken, as for
+	 * 			findRoute(World, int, int).
+	 */
+	static int[] findRoute(TerrainSnapshot terrain, int start, int goal){
+		return findRoute(terrain, start, goal, null);
+	}
+
+	private static int[] findRoute(WalkableTerrain terrain, int start, int goal, IntPredicate allowed){
+		if (start == goal)
+			return new int[0];
+		int nbX = terrain.getNbCubesX(), nbY = terrain.getNbCubesY(), nbZ = terrain.getNbCubesZ();
+		int layer = nbX * nbY;
+		Scratch s = SCRATCH.get();
+		s.prepare(layer * nbZ);
+		int goalX = goal % nbX, goalY = (goal % layer) / nbX, goalZ = goal / layer;
+		int[] offsets = Neighbourhood.getIndexOffsets(nbX, nbY);
+
+		s.open(start, 0f, estimate(start, goalX, goalY, goalZ, nbX, layer), -1);
+		while (s.heapSize > 0){
+			int current = s.poll();
+			if (current == goal)
+				return s.route(goal);
+			s.closed[current] = s.generation;
+			float cost = s.cost[current];
+			// only the neighbours inside the terrain that are walkable are in the mask
+			for (int mask = terrain.getNeighbourMask(current) ; mask != 0 ; mask &= mask - 1){
+				int n = Integer.numberOfTrailingZeros(mask);
+				int next = current + offsets[n];
+				if (s.closed[next] == s.generation)
+					continue;
+				float newCost = cost + Neighbourhood.COST[n];
+				if (s.seen[next] == s.generation){
+					if (newCost < s.cost[next])
+						s.decrease(next, newCost, newCost - s.cost[next] + s.priority[next], current);
+				}
+				else if ((allowed == null) || allowed.test(next))
+					s.open(next, newCost, newCost + estimate(next, goalX, goalY, goalZ, nbX, layer), current);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find a cheapest route from the Cube with the given index to the nearest of the given target Cubes, with
+	 * a single search that stops as soon as the first target is reached.
+	 * @param world		The World to search in.
+	 * @param start		The index of the Cube the route starts in.
+	 * @param targets	The indices of the target Cubes.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the nearest target,
+	 * 			or an empty array if start itself is a target. No other target can be reached at a lower cost.
+	 * @return	Null if no target can be reached.
+	 */
+	public static int[] findRouteToNearest(World world, int start, BitSet targets){
+		if (targets.isEmpty())
+			return null;
+		if (targets.get(start))
+			return new int[0];
+		Scratch s = SCRATCH.get();
+		s.prepare(world.getNbCubes());
+		int[] offsets = world.getNeighbourOffsets();
+
+		s.open(start, 0f, 0f, -1);
+		while (s.heapSize > 0){
+			int current = s.poll();
+			if (targets.get(current))
+				return s.route(current);
+			s.closed[current] = s.generation;
+			float cost = s.cost[current];
+			for (int mask = world.getNeighbourMask(current) ; mask != 0 ; mask &= mask - 1){
+				int n = Integer.numberOfTrailingZeros(mask);
+				int next = current + offsets[n];
+				if (s.closed[next] == s.generation)
+					continue;
+				float newCost = cost + Neighbourhood.COST[n];
+				if (s.seen[next] == s.generation){
+					if (newCost < s.cost[next])
+						s.decrease(next, newCost, newCost, current);
+				}
+				else
+					s.open(next, newCost, newCost, current);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return the search arrays of the current thread, prepared for a new search over the given number of Cubes.
+	 */
+	static Scratch prepareScratch(int nbCubes){
+		Scratch s = SCRATCH.get();
+		s.prepare(nbCubes);
+		return s;
+	}
+
+	static float estimate(int index, int goalX, int goalY, int goalZ, int nbX, int layer){
+		return (float) Neighbourhood.estimate(goalX - index % nbX, goalY - (index % layer) / nbX, goalZ - index / layer);
+	}
+
+	/**
+	 * Constant holding the search arrays of every thread.
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>(){
+		@Override
+		protected Scratch initialValue(){
+			return new Scratch();
+		}
+	};
+
+	/**
+	 * The reusable search state of one thread: per Cube index the generation in which it was seen and closed,
+	 * its cost, its priority, its predecessor and its position in the open heap, plus the open heap itself.
+	 */
+	static final class Scratch {
+
+		void prepare(int nbCubes){
+			if (this.seen.length < nbCubes){
+				this.seen = new int[nbCubes];
+				this.closed = new int[nbCubes];
+				this.cost = new float[nbCubes];
+				this.priority = new float[nbCubes];
+				this.previous = new int[nbCubes];
+				this.heapIndex = new int[nbCubes];
+				this.heap = new int[Math.max(64, nbCubes / 8)];
+				this.generation = 0;
+			}
+			this.generation += 1;
+			if (this.generation == Integer.MAX_VALUE){
+				Arrays.fill(this.seen, 0);
+				Arrays.fill(this.closed, 0);
+				this.generation = 1;
+			}
+			this.heapSize = 0;
+		}
+
+		void open(int index, float cost, float priority, int previous){
+			this.seen[index] = this.generation;
+			this.cost[index] = cost;
+			this.priority[index] = priority;
+			this.previous[index] = previous;
+			if (this.heapSize == this.heap.length)
+				this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+			this.heap[this.heapSize] = index;
+			this.heapIndex[index] = this.heapSize;
+			this.heapSize += 1;
+			this.siftUp(this.heapSize - 1);
+		}
+
+		void decrease(int index, float cost, float priority, int previous){
+			this.cost[index] = cost;
+			this.priority[index] = priority;
+			this.previous[index] = previous;
+			this.siftUp(this.heapIndex[index]);
+		}
+
+		int poll(){
+			int first = this.heap[0];
+			this.heapSize -= 1;
+			if (this.heapSize > 0){
+				this.heap[0] = this.heap[this.heapSize];
+				this.heapIndex[this.heap[0]] = 0;
+				this.siftDown(0);
+			}
+			return first;
+		}
+
+		int[] route(int goal){
+			int length = 0;
+			for (int i = goal ; this.previous[i] != -1 ; i = this.previous[i])
+				length += 1;
+			int[] route = new int[length];
+			for (int i = goal ; this.previous[i] != -1 ; i = this.previous[i]){
+				length -= 1;
+				route[length] = i;
+			}
+			return route;
+		}
+
+		private boolean precedes(int a, int b){
+			if (this.priority[a] != this.priority[b])
+				return this.priority[a] < this.priority[b];
+			return this.cost[a] > this.cost[b];
+		}
+
+		private void siftUp(int position){
+			int index = this.heap[position];
+			while (position > 0){
+				int parent = (position - 1) / 2;
+				if (! this.precedes(index, this.heap[parent]))
+					break;
+				this.heap[position] = this.heap[parent];
+				this.heapIndex[this.heap[position]] = position;
+				position = parent;
+			}
+			this.heap[position] = index;
+			this.heapIndex[index] = position;
+		}
+
+		private void siftDown(int position){
+			int index = this.heap[position];
+			while (true){
+				int child = 2 * position + 1;
+				if (child >= this.heapSize)
+					break;
+				if ((child + 1 < this.heapSize) && this.precedes(this.heap[child + 1], this.heap[child]))
+					child += 1;
+				if (! this.precedes(this.heap[child], index))
+					break;
+				this.heap[position] = this.heap[child];
+				this.heapIndex[this.heap[position]] = position;
+				position = child;
+			}
+			this.heap[position] = index;
+			this.heapIndex[index] = position;
+		}
+
+		int generation;
+		int[] seen = new int[0];
+		int[] closed = new int[0];
+		float[] cost;
+		float[] priority;
+		int[] previous;
+		private int[] heapIndex;
+		private int[] heap;
+		int heapSize;
+	}
+}
@@ -0,0 +1,260 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+
+/**
+ * A class of A* searches over the Cube indices of a World that can be run in slices: a search runs for a given
+ * number of expansions and is resumed later where it stopped. Unlike IndexPathFinder, whose arrays span the
+ * whole World and are shared by the searches of a thread, every IndexSearch keeps its own state, sized by the
+ * Cubes it reached, because many searches of a World can be under way at the same time. Cubes are numbered in
+ * the order the search reaches them, and a hash table maps the index of a Cube to its number.
+ * Every Cube is expanded against the terrain of the World as it is at that moment.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class IndexSearch {
+
+	/**
+	 * Initialize a new search between the Cubes with the given indices in the given World.
+	 * @param start	The index of the Cube the route starts in.
+	 * @param goal	The index of the Cube the route has to reach.
+	 * @post	The search is finished if and only if start and goal are the same Cube.
+	 * 			|new.isFinished() == (start == goal)
+	 */
+	IndexSearch(World world, int start, int goal){
+		this.world = world;
+		this.start = start;
+		this.goal = goal;
+		this.terrainVersion = world.getTerrainVersion();
+		this.nbX = world.getNbCubesX();
+		this.layer = this.nbX * world.getNbCubesY();
+		this.goalX = goal % this.nbX;
+		this.goalY = (goal % this.layer) / this.nbX;
+		this.goalZ = goal / this.layer;
+		this.offsets = world.getNeighbourOffsets();
+		if (start == goal){
+			this.route = new int[0];
+			this.finished = true;
+			return;
+		}
+		this.open(start, 0f, IndexPathFinder.estimate(start, this.goalX, this.goalY, this.goalZ, this.nbX, this.layer), -1);
+	}
+
+	/**
+	 * Run this search for at most the given number of expansions, so it can be resumed later.
+	 * @param budget	The maximum number of Cubes to expand.
+	 * @return	The number of Cubes expanded, which is smaller than the budget only if this search finished.
+	 * @post	If this search was not finished and the budget is positive, the number of slices of this search
+	 * 			is incremented.
+	 * 			|new.getNbSlices() == getNbSlices() + 1
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 * 			|budget < 0
+	 */
+	int run(int budget) throws IllegalArgumentException{
+		if (budget < 0)
+			throw new IllegalArgumentException("Negative budget");
+		if (this.isFinished() || (budget == 0))
+			return 0;
+		this.nbSlices += 1;
+		int expanded = 0;
+		while ((expanded < budget) && ! this.isFinished()){
+			this.expand();
+			expanded += 1;
+		}
+		return expanded;
+	}
+
+	/**
+	 * Check whether this search is finished, either because the goal was reached or because no Cube is left to expand.
+	 */
+	boolean isFinished(){
+		return this.finished;
+	}
+
+	/**
+	 * Return the route found by this search.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start and goal are the same Cube.
+	 * @return	Null if the goal can not be reached.
+	 * @throws IllegalStateException
+	 * 			This search is not finished yet.
+	 * 			|! isFinished()
+	 */
+	int[] getRoute() throws IllegalStateException{
+		if (! this.isFinished())
+			throw new IllegalStateException("Search not finished");
+		return this.route;
+	}
+
+	/**
+	 * Expand the first Cube of the open heap.
+	 */
+	private void expand(){
+		this.nbExpansions += 1;
+		int slot = this.heap.poll();
+		int current = this.cubes[slot];
+		if (current == this.goal){
+			this.route = this.buildRoute(slot);
+			this.finished = true;
+			return;
+		}
+		float cost = this.cost[slot];
+		for (int mask = this.world.getNeighbourMask(current) ; mask != 0 ; mask &= mask - 1){
+			int n = Integer.numberOfTrailingZeros(mask);
+			int next = current + this.offsets[n];
+			int nextSlot = this.find(next);
+			float newCost = cost + Neighbourhood.COST[n];
+			if (nextSlot < 0)
+				this.open(next, newCost, newCost + IndexPathFinder.estimate(next, this.goalX, this.goalY, this.goalZ, this.nbX, this.layer), slot);
+			// a reached Cube that left the heap has been expanded
+			else if (this.heap.contains(nextSlot) && (newCost < this.cost[nextSlot])){
+				this.priority[nextSlot] += newCost - this.cost[nextSlot];
+				this.cost[nextSlot] = newCost;
+				this.previous[nextSlot] = slot;
+				this.heap.addOrDecrease(nextSlot);
+			}
+		}
+		if (this.heap.isEmpty())
+			this.finished = true;
+	}
+
+	private int[] buildRoute(int slot){
+		int length = 0;
+		for (int i = slot ; this.previous[i] != -1 ; i = this.previous[i])
+			length += 1;
+		int[] result = new int[length];
+		for (int i = slot ; this.previous[i] != -1 ; i = this.previous[i]){
+			length -= 1;
+			result[length] = this.cubes[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Return the number of the Cube with the given index, or -1 if this search did not reach it yet.
+	 */
+	private int find(int cube){
+		int mask = this.table.length - 1;
+		for (int h = hash(cube) & mask ; this.table[h] != 0 ; h = (h + 1) & mask)
+			if (this.cubes[this.table[h] - 1] == cube)
+				return this.table[h] - 1;
+		return -1;
+	}
+
+	/**
+	 * Number the Cube with the given index and add it to the open heap.
+	 */
+	private void open(int cube, float cost, float priority, int previous){
+		if (this.nbSlots == this.cubes.length){
+			int length = this.cubes.length * 2;
+			this.cubes = Arrays.copyOf(this.cubes, length);
+			this.cost = Arrays.copyOf(this.cost, length);
+			this.priority = Arrays.copyOf(this.priority, length);
+			this.previous = Arrays.copyOf(this.previous, length);
+			this.heap.grow(length, this.priority, this.cost);
+		}
+		if (2 * (this.nbSlots + 1) > this.table.length)
+			this.rehash(this.table.length * 2);
+		int slot = this.nbSlots++;
+		this.cubes[slot] = cube;
+		this.cost[slot] = cost;
+		this.priority[slot] = priority;
+		this.previous[slot] = previous;
+		int mask = this.table.length - 1, h = hash(cube) & mask;
+		while (this.table[h] != 0)
+			h = (h + 1) & mask;
+		this.table[h] = slot + 1;
+		this.heap.addOrDecrease(slot);
+	}
+
+	private void rehash(int length){
+		this.table = new int[length];
+		int mask = length - 1;
+		for (int slot = 0 ; slot < this.nbSlots ; slot++){
+			int h = hash(this.cubes[slot]) & mask;
+			while (this.table[h] != 0)
+				h = (h + 1) & mask;
+			this.table[h] = slot + 1;
+		}
+	}
+
+	private static int hash(int cube){
+		int h = cube * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Return the number of Cubes this search has expanded.
+	 */
+	int getNbExpansions(){
+		return this.nbExpansions;
+	}
+
+	/**
+	 * Return the number of times this search was run with a budget without being finished before.
+	 */
+	int getNbSlices(){
+		return this.nbSlices;
+	}
+
+	/**
+	 * Return the index of the Cube the route starts in.
+	 */
+	int getStart(){
+		return this.start;
+	}
+
+	/**
+	 * Return the index of the Cube the route has to reach.
+	 */
+	int getGoal(){
+		return this.goal;
+	}
+
+	/**
+	 * Return the terrain version of the World when this search was started.
+	 */
+	long getTerrainVersion(){
+		return this.terrainVersion;
+	}
+
+	private final World world;
+	private final int start;
+	private final int goal;
+	private final long terrainVersion;
+	private final int nbX;
+	private final int layer;
+	private final int goalX;
+	private final int goalY;
+	private final int goalZ;
+	private final int[] offsets;
+
+	/**
+	 * Variables registering, per number of a reached Cube, its index, cost, priority and the number of the Cube
+	 * before it.
+	 */
+	private int[] cubes = new int[64];
+	private float[] cost = new float[64];
+	private float[] priority = new float[64];
+	private int[] previous = new int[64];
+	private int nbSlots;
+
+	/**
+	 * Variable registering the hash table from the index of a reached Cube to its number plus one, with zero
+	 * marking an empty entry.
+	 */
+	private int[] table = new int[128];
+
+	/**
+	 * Variable registering the numbers of the reached Cubes that have not been expanded, by priority, and among
+	 * equal priorities by the highest cost, like the heap of IndexPathFinder.
+	 */
+	private final IndexHeap heap = new IndexHeap(64, this.priority, this.cost);
+
+	private int[] route;
+	private boolean finished;
+	private int nbExpansions;
+	private int nbSlices;
+}
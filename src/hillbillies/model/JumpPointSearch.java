@@ -0,0 +1,242 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Jump Point Search over Cube indices, for the 26 neighbours of a Cube and steps as long as their offsets.
+ * On uniform stretches of walkable Cubes, many cheapest routes are symmetric: they take the same steps in a
+ * different order. Jump Point Search only follows one of them. From a Cube reached in some direction, it
+ * only looks at the neighbours that no other route through the Cube before it reaches at least as cheaply
+ * (the natural neighbours), and at neighbours that became reachable only through the Cube because the Cubes
+ * on those other routes are not walkable (the forced neighbours). Instead of opening every Cube, it jumps
+ * along straight lines until it reaches the goal or a Cube with a forced neighbour, and only opens that Cube.
+ * The pruning rule is derived from the neighbourhood itself: a neighbour is pruned if a route of two steps
+ * around the Cube reaches it at a lower cost, or at an equal cost with a more diagonal first step.
+ * Jump Point Search relies on every step costing the same wherever it is taken and in whichever direction
+ * along its line, so it weighs steps by their length only, not by the time moving up or down takes. The
+ * routes found are shortest routes, which need not be the fastest routes A* finds.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class JumpPointSearch {
+
+	private JumpPointSearch(){
+	}
+
+	/**
+	 * Find a shortest route between the Cubes with the given indices in the given terrain.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start and goal are the same Cube. Every Cube on the route is walkable, and every
+	 * 			next Cube neighbours the previous one.
+	 * @return	Null if the goal can not be reached.
+	 */
+	static int[] findRoute(WalkableTerrain terrain, int start, int goal){
+		if (start == goal)
+			return new int[0];
+		int nbX = terrain.getNbCubesX(), nbY = terrain.getNbCubesY(), nbZ = terrain.getNbCubesZ();
+		int layer = nbX * nbY;
+		IndexPathFinder.Scratch s = IndexPathFinder.prepareScratch(layer * nbZ);
+		int goalX = goal % nbX, goalY = (goal % layer) / nbX, goalZ = goal / layer;
+
+		s.open(start, 0f, estimate(start, goalX, goalY, goalZ, nbX, layer), -1);
+		while (s.heapSize > 0){
+			int current = s.poll();
+			if (current == goal)
+				return route(s, goal, nbX, layer);
+			s.closed[current] = s.generation;
+			int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+			int[] directions = ALL;
+			int direction = -1;
+			int parent = s.previous[current];
+			if (parent != -1){
+				direction = Neighbourhood.getIndex(Integer.signum(x - parent % nbX),
+						Integer.signum(y - (parent % layer) / nbX), Integer.signum(z - parent / layer));
+				directions = NATURAL[direction];
+			}
+			for (int pass = 0 ; pass < 2 ; pass++){
+				if (pass == 1){
+					if (direction == -1)
+						break;
+					directions = FORCED[direction];
+				}
+				for (int k = 0 ; k < directions.length ; k++){
+					int n = directions[k];
+					if ((pass == 1) && ! isForced(terrain, x, y, z, direction, k))
+						continue;
+					int next = jump(terrain, x, y, z, n, goal);
+					if ((next == -1) || (s.closed[next] == s.generation))
+						continue;
+					int steps = Math.max(Math.abs(next % nbX - x), Math.max(Math.abs((next % layer) / nbX - y), Math.abs(next / layer - z)));
+					float newCost = s.cost[current] + steps * Neighbourhood.LENGTH[n];
+					if (s.seen[next] == s.generation){
+						if (newCost < s.cost[next])
+							s.decrease(next, newCost, newCost - s.cost[next] + s.priority[next], current);
+					}
+					else
+						s.open(next, newCost, newCost + estimate(next, goalX, goalY, goalZ, nbX, layer), current);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Jump from the Cube at the given coordinates in the given direction.
+	 * @return	The index of the first Cube on the line that is the goal, has a forced neighbour, or, for a
+	 * 			diagonal direction, from which a jump in one of the other natural directions succeeds.
+	 * @return	-1 if a Cube that is not walkable is reached first.
+	 */
+	private static int jump(WalkableTerrain terrain, int x, int y, int z, int direction, int goal){
+		int nbX = terrain.getNbCubesX(), layer = nbX * terrain.getNbCubesY();
+		int dx = Neighbourhood.DX[direction], dy = Neighbourhood.DY[direction], dz = Neighbourhood.DZ[direction];
+		while (true){
+			x += dx;
+			y += dy;
+			z += dz;
+			if (! isWalkable(terrain, x, y, z))
+				return -1;
+			int index = x + y * nbX + z * layer;
+			if (index == goal)
+				return index;
+			for (int k = 0 ; k < FORCED[direction].length ; k++)
+				if (isForced(terrain, x, y, z, direction, k))
+					return index;
+			for (int n : NATURAL[direction])
+				if ((n != direction) && (jump(terrain, x, y, z, n, goal) != -1))
+					return index;
+		}
+	}
+
+	/**
+	 * Check whether the k'th candidate neighbour of the Cube at the given coordinates, reached in the given
+	 * direction, is forced: it is walkable, but none of the Cubes on the cheaper routes around the Cube is.
+	 */
+	private static boolean isForced(WalkableTerrain terrain, int x, int y, int z, int direction, int k){
+		int n = FORCED[direction][k];
+		if (! isWalkable(terrain, x + Neighbourhood.DX[n], y + Neighbourhood.DY[n], z + Neighbourhood.DZ[n]))
+			return false;
+		for (int w : WITNESSES[direction][k])
+			if (isWalkable(terrain, x + Neighbourhood.DX[w], y + Neighbourhood.DY[w], z + Neighbourhood.DZ[w]))
+				return false;
+		return true;
+	}
+
+	private static boolean isWalkable(WalkableTerrain terrain, int x, int y, int z){
+		return (x >= 0) && (x < terrain.getNbCubesX()) && (y >= 0) && (y < terrain.getNbCubesY()) && (z >= 0)
+				&& (z < terrain.getNbCubesZ()) && terrain.isWalkable(x, y, z);
+	}
+
+	private static float estimate(int index, int goalX, int goalY, int goalZ, int nbX, int layer){
+		return (float) Neighbourhood.estimateLength(goalX - index % nbX, goalY - (index % layer) / nbX, goalZ - index / layer);
+	}
+
+	/**
+	 * Return the route to the given goal, with the lines between jump points filled in step by step.
+	 */
+	private static int[] route(IndexPathFinder.Scratch s, int goal, int nbX, int layer){
+		List<Integer> reversed = new ArrayList<Integer>();
+		for (int to = goal ; s.previous[to] != -1 ; to = s.previous[to]){
+			int from = s.previous[to];
+			int dx = Integer.signum(to % nbX - from % nbX), dy = Integer.signum((to % layer) / nbX - (from % layer) / nbX),
+					dz = Integer.signum(to / layer - from / layer);
+			int step = dx + dy * nbX + dz * layer;
+			for (int i = to ; i != from ; i -= step)
+				reversed.add(i);
+		}
+		int[] route = new int[reversed.size()];
+		for (int i = 0 ; i < route.length ; i++)
+			route[i] = reversed.get(route.length - 1 - i);
+		return route;
+	}
+
+	/**
+	 * Check whether the route of two steps with the given offsets is preferred over the route of two steps
+	 * with the given other offsets: it is cheaper, or as cheap with a more diagonal first step, or as cheap
+	 * and as diagonal with a first step of a lower number.
+	 */
+	private static boolean isPreferred(int first, int second, int otherFirst, int otherSecond){
+		double cost = Neighbourhood.LENGTH[first] + Neighbourhood.LENGTH[second];
+		double otherCost = Neighbourhood.LENGTH[otherFirst] + Neighbourhood.LENGTH[otherSecond];
+		if (Math.abs(cost - otherCost) > 1e-6)
+			return cost < otherCost;
+		int diagonal = getNbAxes(first), otherDiagonal = getNbAxes(otherFirst);
+		if (diagonal != otherDiagonal)
+			return diagonal > otherDiagonal;
+		return first < otherFirst;
+	}
+
+	private static int getNbAxes(int n){
+		return Math.abs(Neighbourhood.DX[n]) + Math.abs(Neighbourhood.DY[n]) + Math.abs(Neighbourhood.DZ[n]);
+	}
+
+	/**
+	 * Return the number of the neighbour with the given offsets, or -1 if they are not the offsets of a neighbour.
+	 */
+	private static int getIndexOrNone(int dx, int dy, int dz){
+		if ((Math.abs(dx) > 1) || (Math.abs(dy) > 1) || (Math.abs(dz) > 1) || ((dx == 0) && (dy == 0) && (dz == 0)))
+			return -1;
+		return Neighbourhood.getIndex(dx, dy, dz);
+	}
+
+	/**
+	 * Constant registering every direction, followed from the start.
+	 */
+	private static final int[] ALL = new int[Neighbourhood.SIZE];
+
+	/**
+	 * Constant registering, per direction a Cube is reached in, the neighbours that are never pruned.
+	 */
+	private static final int[][] NATURAL = new int[Neighbourhood.SIZE][];
+
+	/**
+	 * Constant registering, per direction a Cube is reached in, the neighbours that are pruned only while a
+	 * Cube on a preferred route around the Cube is walkable.
+	 */
+	private static final int[][] FORCED = new int[Neighbourhood.SIZE][];
+
+	/**
+	 * Constant registering, per direction and candidate forced neighbour, the Cubes on the preferred routes
+	 * around the Cube, as neighbours of the Cube.
+	 */
+	private static final int[][][] WITNESSES = new int[Neighbourhood.SIZE][][];
+
+	static {
+		for (int d = 0 ; d < Neighbourhood.SIZE ; d++){
+			ALL[d] = d;
+			List<Integer> natural = new ArrayList<Integer>(), forced = new ArrayList<Integer>();
+			List<int[]> witnesses = new ArrayList<int[]>();
+			int dx = Neighbourhood.DX[d], dy = Neighbourhood.DY[d], dz = Neighbourhood.DZ[d];
+			for (int o = 0 ; o < Neighbourhood.SIZE ; o++){
+				int ox = Neighbourhood.DX[o], oy = Neighbourhood.DY[o], oz = Neighbourhood.DZ[o];
+				// the neighbour is the previous Cube, or a neighbour of it reached directly at a lower cost
+				if ((Math.abs(ox + dx) <= 1) && (Math.abs(oy + dy) <= 1) && (Math.abs(oz + dz) <= 1))
+					continue;
+				List<Integer> around = new ArrayList<Integer>();
+				for (int w = 0 ; w < Neighbourhood.SIZE ; w++){
+					int wx = Neighbourhood.DX[w], wy = Neighbourhood.DY[w], wz = Neighbourhood.DZ[w];
+					int first = getIndexOrNone(wx + dx, wy + dy, wz + dz), second = getIndexOrNone(ox - wx, oy - wy, oz - wz);
+					if ((first != -1) && (second != -1) && isPreferred(first, second, d, o))
+						around.add(w);
+				}
+				if (around.isEmpty())
+					natural.add(o);
+				else {
+					forced.add(o);
+					int[] cubes = new int[around.size()];
+					for (int i = 0 ; i < cubes.length ; i++)
+						cubes[i] = around.get(i);
+					witnesses.add(cubes);
+				}
+			}
+			NATURAL[d] = new int[natural.size()];
+			for (int i = 0 ; i < natural.size() ; i++)
+				NATURAL[d][i] = natural.get(i);
+			FORCED[d] = new int[forced.size()];
+			for (int i = 0 ; i < forced.size() ; i++)
+				FORCED[d][i] = forced.get(i);
+			WITNESSES[d] = witnesses.toArray(new int[witnesses.size()][]);
+		}
+	}
+}
@@ -157,6 +157,7 @@ public class Log {
 				this.position[2] = this.fallingTo;
 			else 
 				this.position[2] += dt*this.fallSpeed;
+			this.world.targetsChanged(FieldTarget.LOG);
 		}
 	}
 	
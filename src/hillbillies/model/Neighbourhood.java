@@ -0,0 +1,231 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The 26 steps a Unit can take from a Cube to one of its neighbouring Cubes, together with the cost of
+ * every step and a matching estimate for the cost of a whole route.
+ * The cost of a step is the time a Unit with a base speed of 1 needs for it: its length divided by the
+ * speed factor a Unit gets for it, CLIMB_FACTOR when it moves up, DESCENT_FACTOR when it moves down, and 1
+ * otherwise (see Unit.setCurrentspeed). A Unit with base speed vb, doubled while sprinting, needs the cost
+ * divided by its speed. That factor is the same for every step, so the cheapest route is the fastest route
+ * for every Unit.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class Neighbourhood {
+
+	private Neighbourhood(){
+	}
+
+	/**
+	 * Return the cost of the step with the given offsets between neighbouring Cubes.
+	 * @return	The length of the step, divided by the speed factor for moving up or down.
+	 * 			|result == Math.sqrt(dx*dx + dy*dy + dz*dz) / (dz == 1 ? CLIMB_FACTOR : dz == -1 ? DESCENT_FACTOR : 1)
+	 */
+	static double getStepCost(int dx, int dy, int dz){
+		double length = STEP_LENGTH[dx*dx + dy*dy + dz*dz];
+		if (dz > 0)
+			return length / CLIMB_FACTOR;
+		if (dz < 0)
+			return length / DESCENT_FACTOR;
+		return length;
+	}
+
+	/**
+	 * Return the number of the step back of the step with the given number.
+	 * @return	|DX[result] == -DX[n] && DY[result] == -DY[n] && DZ[result] == -DZ[n]
+	 */
+	static int getOpposite(int n){
+		return SIZE - 1 - n;
+	}
+
+	/**
+	 * Return the number of the neighbour with the given offsets.
+	 * @return	The number n with DX[n] == dx, DY[n] == dy and DZ[n] == dz.
+	 */
+	static int getIndex(int dx, int dy, int dz){
+		int n = (dx + 1) + 3*(dy + 1) + 9*(dz + 1);
+		return (n > 13) ? n - 1 : n;
+	}
+
+	/**
+	 * Return the differences between the index of a Cube and the indices of its neighbours, in a World with
+	 * the given number of Cubes along the x and y axis.
+	 * @return	A new array with, for every step n, DX[n] + DY[n]*nbX + DZ[n]*nbX*nbY.
+	 */
+	static int[] getIndexOffsets(int nbX, int nbY){
+		int[] offsets = new int[SIZE];
+		for (int n = 0 ; n < SIZE ; n++)
+			offsets[n] = DX[n] + DY[n] * nbX + DZ[n] * nbX * nbY;
+		return offsets;
+	}
+
+	/**
+	 * Return the mask of the neighbours of the Cube at the given coordinates that lie inside the given terrain
+	 * and are walkable in it.
+	 * @return	An int of which bit n is set if and only if the neighbour of step n lies inside the terrain and is
+	 * 			walkable.
+	 */
+	static int getNeighbourMask(WalkableTerrain terrain, int x, int y, int z){
+		int mask = 0;
+		for (int n = 0 ; n < SIZE ; n++){
+			int nx = x + DX[n], ny = y + DY[n], nz = z + DZ[n];
+			if ((nx >= 0) && (nx < terrain.getNbCubesX()) && (ny >= 0) && (ny < terrain.getNbCubesY()) && (nz >= 0)
+					&& (nz < terrain.getNbCubesZ()) && terrain.isWalkable(nx, ny, nz))
+				mask |= 1 << n;
+		}
+		return mask;
+	}
+
+	/**
+	 * Return the length of a shortest line made of straight and diagonal steps with the given coordinate
+	 * differences.
+	 * @return	With d1 >= d2 >= d3 the sorted absolute coordinate differences:
+	 * 			|result == (Math.sqrt(3)-Math.sqrt(2))*d3 + (Math.sqrt(2)-1)*d2 + d1
+	 */
+	static double estimateLength(int dx, int dy, int dz){
+		int d1 = Math.abs(dx);
+		int d2 = Math.abs(dy);
+		int d3 = Math.abs(dz);
+		if (d1 < d2){ int t = d1; d1 = d2; d2 = t; }
+		if (d2 < d3){ int t = d2; d2 = d3; d3 = t; }
+		if (d1 < d2){ int t = d1; d1 = d2; d2 = t; }
+		return (STEP_LENGTH[3] - STEP_LENGTH[2])*d3 + (STEP_LENGTH[2] - 1)*d2 + d1;
+	}
+
+	/**
+	 * Return an estimate for the cost of a route from a Cube to a Cube at the given coordinate differences.
+	 * @param dx	The x coordinate of the destination minus the x coordinate of the origin.
+	 * @param dy	The y coordinate of the destination minus the y coordinate of the origin.
+	 * @param dz	The z coordinate of the destination minus the z coordinate of the origin.
+	 * @return	The cost of a cheapest route in a World without obstacles, when steps may be taken fractionally.
+	 * 			This is the largest value of u.(dx, dy, dz) over the vectors u with u.o <= cost(o) for every step o,
+	 * 			taken over the corners of that set, which are computed once. The estimate never overestimates
+	 * 			the cost of a route, and never decreases by more than the cost of a step taken toward it, so A*
+	 * 			closes every Cube at its final cost.
+	 */
+	static double estimate(int dx, int dy, int dz){
+		// the costs do not change when x and y are swapped or mirrored, so only the corners for dx >= dy >= 0 count
+		int d1 = Math.abs(dx);
+		int d2 = Math.abs(dy);
+		if (d1 < d2){ int t = d1; d1 = d2; d2 = t; }
+		double best = 0;
+		for (int i = 0 ; i < CORNERS.length ; i += 3){
+			double value = CORNERS[i]*d1 + CORNERS[i+1]*d2 + CORNERS[i+2]*dz;
+			if (value > best)
+				best = value;
+		}
+		return best;
+	}
+
+	/**
+	 * Constant registering the number of neighbours of a Cube.
+	 */
+	static final int SIZE = 26;
+
+	/**
+	 * Constants registering the x, y and z offsets of every neighbour.
+	 */
+	static final int[] DX = new int[SIZE];
+	static final int[] DY = new int[SIZE];
+	static final int[] DZ = new int[SIZE];
+
+	/**
+	 * Constant registering the cost of the step to every neighbour.
+	 */
+	static final float[] COST = new float[SIZE];
+
+	/**
+	 * Constant registering the length of the step to every neighbour.
+	 */
+	static final float[] LENGTH = new float[SIZE];
+
+	/**
+	 * Constant registering the factor by which the speed of a Unit changes while it moves up.
+	 */
+	static final double CLIMB_FACTOR = 1.2;
+
+	/**
+	 * Constant registering the factor by which the speed of a Unit changes while it moves down.
+	 */
+	static final double DESCENT_FACTOR = 0.5;
+
+	private static final double[] STEP_LENGTH = new double[]{0, 1, Math.sqrt(2), Math.sqrt(3)};
+
+	/**
+	 * Constant registering the corners (ux, uy, uz) of the set of vectors u with u.o <= cost(o) for every step o
+	 * that have ux >= uy >= 0, as consecutive triples.
+	 */
+	private static final double[] CORNERS;
+
+	static {
+		int n = 0;
+		for (int dz = -1 ; dz <= 1 ; dz++)
+			for (int dy = -1 ; dy <= 1 ; dy++)
+				for (int dx = -1 ; dx <= 1 ; dx++){
+					if ((dx == 0) && (dy == 0) && (dz == 0))
+						continue;
+					DX[n] = dx;
+					DY[n] = dy;
+					DZ[n] = dz;
+					COST[n] = (float) getStepCost(dx, dy, dz);
+					LENGTH[n] = (float) STEP_LENGTH[dx*dx + dy*dy + dz*dz];
+					n += 1;
+				}
+		// every corner is the solution of three of the constraints u.o == cost(o) that satisfies all others
+		List<double[]> corners = new ArrayList<double[]>();
+		for (int i = 0 ; i < SIZE ; i++)
+			for (int j = i + 1 ; j < SIZE ; j++)
+				for (int k = j + 1 ; k < SIZE ; k++){
+					double[] u = solve(i, j, k);
+					if ((u == null) || (u[0] < u[1] - 1e-9) || (u[1] < -1e-9))
+						continue;
+					boolean feasible = true;
+					for (int o = 0 ; (o < SIZE) && feasible ; o++)
+						feasible = u[0]*DX[o] + u[1]*DY[o] + u[2]*DZ[o] <= getStepCost(DX[o], DY[o], DZ[o]) + 1e-9;
+					if (feasible)
+						addCorner(corners, u);
+				}
+		CORNERS = flatten(corners);
+	}
+
+	/**
+	 * Return the vector u with u.o == cost(o) for the steps with the given numbers, or null if there is none.
+	 */
+	private static double[] solve(int i, int j, int k){
+		double[][] a = { {DX[i], DY[i], DZ[i]}, {DX[j], DY[j], DZ[j]}, {DX[k], DY[k], DZ[k]} };
+		double[] b = { getStepCost(DX[i], DY[i], DZ[i]), getStepCost(DX[j], DY[j], DZ[j]), getStepCost(DX[k], DY[k], DZ[k]) };
+		double det = determinant(a[0], a[1], a[2]);
+		if (Math.abs(det) < 1e-9)
+			return null;
+		double[] u = new double[3];
+		for (int c = 0 ; c < 3 ; c++){
+			double[][] m = { a[0].clone(), a[1].clone(), a[2].clone() };
+			for (int r = 0 ; r < 3 ; r++)
+				m[r][c] = b[r];
+			u[c] = determinant(m[0], m[1], m[2]) / det;
+		}
+		return u;
+	}
+
+	private static double determinant(double[] r0, double[] r1, double[] r2){
+		return r0[0]*(r1[1]*r2[2] - r1[2]*r2[1]) - r0[1]*(r1[0]*r2[2] - r1[2]*r2[0]) + r0[2]*(r1[0]*r2[1] - r1[1]*r2[0]);
+	}
+
+	private static void addCorner(List<double[]> corners, double[] u){
+		for (double[] corner : corners)
+			if ((Math.abs(corner[0] - u[0]) < 1e-9) && (Math.abs(corner[1] - u[1]) < 1e-9) && (Math.abs(corner[2] - u[2]) < 1e-9))
+				return;
+		corners.add(u);
+	}
+
+	private static double[] flatten(List<double[]> corners){
+		double[] result = new double[3 * corners.size()];
+		for (int i = 0 ; i < corners.size() ; i++)
+			System.arraycopy(corners.get(i), 0, result, 3 * i, 3);
+		return result;
+	}
+}
@@ -17,51 +17,22 @@ public class Path {
 	 * @param end	The Cube to set this new Path's end on.
 	 * @effect	The start of this new Path is set to the given Cube.
 	 * @effect	The end of this new Path is set to the given Cube.
+	 * @post	The route of this new Path is a cheapest route from start to end over valid Cubes, taken from
+	 * 			the PathCache of the World of start. The route is empty if end can not be reached, which is
+	 * 			decided without searching if end lies in another component of walkable Cubes.
 	 */
 	public Path(Cube start, Cube end){
-		LinkedList<Data> frontier = new LinkedList<Data>();
-		Data startData = new Data(start, 0);
-		frontier.add(startData);
-		HashMap<Cube, Cube>  came_from= new HashMap<Cube, Cube>();
-		HashMap<Cube, Double> Cost_so_far = new HashMap<Cube, Double>();
+		World world = start.getWorld();
 		Stack<Cube> Path = new Stack<Cube>();
-		came_from.put(start, null);
-		Cost_so_far.put(start, 0.0);
-		
-		
-		
-		while (!frontier.isEmpty()){
-			Cube current = frontier.remove().getCube();
-			
-			if (current == end) {
-				this.came_from = came_from;
-				this.Cost_so_far = Cost_so_far;
-				break;
-			}
-			
-			for (Cube next: current.getSurroundingCubes()){
-				try {
-					double new_cost = Cost_so_far.get(current)+ Math.abs(next.getXPosition()-current.getXPosition()) 
-					+Math.abs(next.getZPosition()-current.getZPosition()) + Math.abs(next.getYPosition()-current.getYPosition());
-					if (((!Cost_so_far.containsKey(next))|| (new_cost < Cost_so_far.get(next))) && (next.isValidCube())){
-						Cost_so_far.put(next, new_cost);
-						double priority = new_cost + CalcCost(end, next);
-						Data nextData = new Data(next, priority);
-						frontier.add(nextData);
-						came_from.put(next, current);
-						
-					}
-				} catch (NullPointerException e) {
-					continue;
-				}
-			}
-		}
+		int[] route = null;
+		if (world.isReachable(start, end))
+			route = world.getPathCache().findRoute(
+				world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition()),
+				world.getCubeIndex(end.getXPosition(), end.getYPosition(), end.getZPosition()));
 		// HET OPBOUWEN VAN HET PAD IN DE JUISTE RICHTING
-		Cube latestCube = end;
-		while(came_from.get(latestCube) != null){
-			Path.push(latestCube);
-			latestCube = came_from.get(latestCube);
-		}
+		if (route != null)
+			for (int i = route.length-1 ; i >= 0 ; i--)
+				Path.push(world.getCubeAtIndex(route[i]));
 		this.path = Path;
 		
 		
@@ -69,17 +40,34 @@ public class Path {
 		this.setEnd(end);
 	}
 	/**
-	 * Calculate the cost for going from Cube a to Cube b.
-	 * @param a The starting Cube, from which the cost will be calculated to the end Cube.
-	 * @param b The end Cube to which the cost will be calculated from the starting Cube.
-	 * @return	The cost of going from a to b, via the formula for the length of a vector from a to b.
-	 * 			|result == Math.sqrt(Math.pow((aPos[0]-bPos[0]),2) + Math.pow((aPos[1]-bPos[1]),2) + Math.pow((aPos[2]-bPos[2]),2))
+	 * Initialize a new Path from the given start to the nearest of the given ends.
+	 * @param start	The Cube to set this new Path's start on.
+	 * @param ends	The Cubes this new Path may end on.
+	 * @effect	The start of this new Path is set to the given Cube.
+	 * @post	If one of the given ends can be reached, the end of this new Path is the end that can be reached
+	 * 			at the lowest cost, found with a single search from start, and the route of this new Path is a
+	 * 			cheapest route to it. Otherwise the end of this new Path is null and its route is empty.
 	 */
-	private double CalcCost(Cube a, Cube b){
-		int[] aPos = a.getPosition();
-		int[] bPos = b.getPosition();
-		return Math.sqrt(Math.pow((aPos[0]-bPos[0]),2) + Math.pow((aPos[1]-bPos[1]),2) + Math.pow((aPos[2]-bPos[2]),2));
+	public Path(Cube start, Collection<Cube> ends){
+		World world = start.getWorld();
+		Stack<Cube> Path = new Stack<Cube>();
+		BitSet targets = new BitSet(world.getNbCubes());
+		for (Cube end : ends)
+			if (world.isReachable(start, end))
+				targets.set(world.getCubeIndex(end.getXPosition(), end.getYPosition(), end.getZPosition()));
+		int startIndex = world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition());
+		int[] route = IndexPathFinder.findRouteToNearest(world, startIndex, targets);
+		Cube end = null;
+		if (route != null){
+			for (int i = route.length-1 ; i >= 0 ; i--)
+				Path.push(world.getCubeAtIndex(route[i]));
+			end = world.getCubeAtIndex(route.length == 0 ? startIndex : route[route.length-1]);
+		}
+		this.path = Path;
+		this.setStart(start);
+		this.setEnd(end);
 	}
+
 	/**
 	 * Returns the route of this Path.
 	 */
@@ -125,6 +113,23 @@ public class Path {
 		this.end = end;
 	}
 	
+	/**
+	 * Return the cost of the route of this Path: the time a Unit with a base speed of 1 needs to walk it.
+	 * @return	The sum of the costs of the steps of the route, where a step takes its length divided by 1.2 when
+	 * 			it moves up, divided by 0.5 when it moves down, and its length otherwise, as a Unit moves.
+	 */
+	public double getCost(){
+		double cost = 0;
+		Cube previous = this.getStart();
+		for (int i = this.path.size()-1 ; i >= 0 ; i--){
+			Cube next = this.path.get(i);
+			cost += Neighbourhood.getStepCost(next.getXPosition() - previous.getXPosition(),
+					next.getYPosition() - previous.getYPosition(), next.getZPosition() - previous.getZPosition());
+			previous = next;
+		}
+		return cost;
+	}
+	
 	/**
 	 * Returns the amount of steps taken in this Path's route. A step is counted for every Cube that is part of this route.
 	 * @return	The size (the amount of Cubes) in the Route of this Path.
@@ -142,14 +147,6 @@ public class Path {
 	 * Variable registering the end of this Path.
 	 */
 	private Cube end;
-	/**
-	 * A map where every key is a Cube, with a value also being a Cube. Every value is the Cube from where the Path went to the key Cube.
-	 */
-	private HashMap<Cube, Cube>  came_from;
-	/**
-	 * A map with its keys being Cubes, where the corresponding values represent the cost of that cube in the Path.
-	 */
-	private HashMap<Cube, Double> Cost_so_far;
 	/**
 	 * A
 	 */
@@ -0,0 +1,104 @@
+package hillbillies.model;
+
+/**
+ * The algorithms a World can use to plan routes between Cubes.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public enum PathAlgorithm {
+	/**
+	 * A* over Cube objects, with one Data per visited Cube.
+	 */
+	ASTAR(){
+		public int[] findRoute(World world, int start, int goal){
+			PathSearch search = new PathSearch(world.getCubeAtIndex(start), world.getCubeAtIndex(goal));
+			search.run();
+			Cube[] cubes = search.getRoute();
+			if (cubes == null)
+				return null;
+			int[] route = new int[cubes.length];
+			for (int i = 0 ; i < cubes.length ; i++)
+				route[i] = world.getCubeIndex(cubes[i].getXPosition(), cubes[i].getYPosition(), cubes[i].getZPosition());
+			return route;
+		}
+	},
+	/**
+	 * A* over Cube indices, reusing primitive search arrays.
+	 */
+	INDEXED(){
+		public int[] findRoute(World world, int start, int goal){
+			return IndexPathFinder.findRoute(world, start, goal);
+		}
+	},
+	/**
+	 * A* over the entrances between chunks of Cubes first, refined over the Cubes of the chunks on the route.
+	 */
+	HIERARCHICAL(){
+		public int[] findRoute(World world, int start, int goal){
+			return world.getHierarchicalPathFinder().findRoute(start, goal);
+		}
+	},
+	/**
+	 * Jump Point Search over Cube indices, which jumps over the symmetric routes on uniform stretches of Cubes.
+	 * @note	This is a length-only mode. Jump Point Search relies on every step of a kind costing the same, so
+	 * 			it weighs steps by their length and ignores that Units climb slower and descend faster. Its routes
+	 * 			are shortest, not fastest: a Unit moving along them may take longer than along the routes of the
+	 * 			other algorithms, which weigh steps by their travel time (see Neighbourhood.getStepCost).
+	 */
+	JUMP_POINT(){
+		public int[] findRoute(World world, int start, int goal){
+			return JumpPointSearch.findRoute(world.getTerrainSnapshot(), start, goal);
+		}
+		
+		@Override
+		int[] findRoute(TerrainSnapshot snapshot, int start, int goal){
+			return JumpPointSearch.findRoute(snapshot, start, goal);
+		}
+	},
+	/**
+	 * D* Lite, keeping the search state of every moving Unit and repairing it after terrain changes.
+	 * Single routes are planned with a fresh IncrementalPlanner.
+	 */
+	INCREMENTAL(){
+		public int[] findRoute(World world, int start, int goal){
+			return new IncrementalPlanner(world, goal).findRoute(start);
+		}
+		
+		@Override
+		public boolean isIncremental(){
+			return true;
+		}
+	};
+	
+	/**
+	 * Check whether moving Units keep an IncrementalPlanner toward their goal when this algorithm is used,
+	 * instead of walking a planned route.
+	 */
+	public boolean isIncremental(){
+		return false;
+	}
+
+	/**
+	 * Find a cheapest route between the Cubes with the given indices in the given World.
+	 * @param world	The World to search in.
+	 * @param start	The index of the Cube the route starts in.
+	 * @param goal	The index of the Cube the route has to reach.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start and goal are the same Cube.
+	 * @return	Null if the goal can not be reached.
+	 */
+	public abstract int[] findRoute(World world, int start, int goal);
+
+	/**
+	 * Find a cheapest route between the Cubes with the given indices in the given snapshot of a World. The
+	 * snapshot never changes, so the search can run on any thread while the World goes on.
+	 * @return	The route over the Cubes that were walkable when the snapshot was taken, as for
+	 * 			findRoute(World, int, int).
+	 * @note	The algorithms that keep search state in the World itself (ASTAR, HIERARCHICAL and INCREMENTAL)
+	 * 			can not search a snapshot, and use the indexed A* search instead.
+	 */
+	int[] findRoute(TerrainSnapshot snapshot, int start, int goal){
+		return IndexPathFinder.findRoute(snapshot, start, goal);
+	}
+}
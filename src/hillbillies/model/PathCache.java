@@ -0,0 +1,306 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A class of least recently used caches of routes between pairs of Cubes in a World.
+ * The World is divided into regions of REGION_SIZE Cubes along every axis, and every region has a version
+ * that increases whenever the type of a Cube in or next to it changes. A cached route remembers the versions
+ * of the regions it passes and is only handed out while none of them changed. Cached unreachable results
+ * remember the version of the whole World instead, because a change anywhere may connect start and goal.
+ * Routes are stored as arrays of Cube indices that are never modified, so they can be shared by all Units.
+ * @invar	The number of cached routes never exceeds the capacity.
+ * 			|getSize() <= getCapacity()
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class PathCache {
+
+	/**
+	 * Initialize a new empty PathCache for the given World with the given capacity.
+	 * @param world		The World of this new PathCache.
+	 * @param capacity	The maximum number of routes this new PathCache keeps.
+	 * @throws IllegalArgumentException
+	 * 			The given capacity is negative.
+	 */
+	PathCache(World world, int capacity) throws IllegalArgumentException{
+		this.world = world;
+		this.setCapacity(capacity);
+		this.regionsX = (world.getNbCubesX() + REGION_SIZE - 1) / REGION_SIZE;
+		this.regionsY = (world.getNbCubesY() + REGION_SIZE - 1) / REGION_SIZE;
+		this.regionVersions = new int[this.regionsX * this.regionsY * ((world.getNbCubesZ() + REGION_SIZE - 1) / REGION_SIZE)];
+	}
+
+	/**
+	 * Return a cheapest route between the Cubes with the given indices, from this cache if it holds a route
+	 * for them that is still up to date, and found with the path algorithm of the World otherwise.
+	 * @return	The indices of the Cubes on the route, from the first step up to and including the goal, or an
+	 * 			empty array if start and goal are the same Cube. The array is shared and must not be modified.
+	 * @return	Null if the goal can not be reached.
+	 */
+	public synchronized int[] findRoute(int start, int goal){
+		CachedRoute entry = this.lookup(start, goal);
+		if (entry != null)
+			return entry.route;
+		int[] route = this.world.getPathAlgorithm().findRoute(this.world, start, goal);
+		this.putRoute(start, goal, route);
+		return route;
+	}
+
+	/**
+	 * Return the route between the Cubes with the given indices held by this cache, without searching one if
+	 * it holds none.
+	 * @return	The cached route, as for findRoute(int, int), if this cache holds one that is still up to date.
+	 * @return	Null if this cache holds no up-to-date route between the Cubes, or only holds that the goal can
+	 * 			not be reached.
+	 */
+	synchronized int[] getCachedRoute(int start, int goal){
+		CachedRoute entry = this.lookup(start, goal);
+		return (entry == null) ? null : entry.route;
+	}
+
+	/**
+	 * Keep the given route between the Cubes with the given indices, found outside this cache against the
+	 * current terrain of the World.
+	 * @param route	The indices of the Cubes on the route, as for findRoute(int, int), or null if the goal can
+	 * 				not be reached. The array must not be modified anymore.
+	 */
+	synchronized void putRoute(int start, int goal, int[] route){
+		if (this.getCapacity() > 0)
+			this.entries.put(this.getKey(start, goal), this.createEntry(start, route));
+	}
+
+	/**
+	 * Return the entry for the Cubes with the given indices, if this cache holds one that is still up to date.
+	 * @post	A hit is counted if an entry is returned, and a miss otherwise. An entry that is out of date is
+	 * 			dropped.
+	 */
+	private CachedRoute lookup(int start, int goal){
+		long key = this.getKey(start, goal);
+		CachedRoute entry = this.entries.get(key);
+		if (entry != null){
+			if (this.isUpToDate(entry)){
+				this.hits += 1;
+				return entry;
+			}
+			this.entries.remove(key);
+			this.invalidations += 1;
+		}
+		this.misses += 1;
+		return null;
+	}
+
+	private long getKey(int start, int goal){
+		return (long) start * this.world.getNbCubes() + goal;
+	}
+
+	/**
+	 * Register that the type of the Cube at the given coordinates has changed.
+	 * @post	The versions of the regions holding the Cube or one of its neighbours are increased, and so is
+	 * 			the version of the whole World.
+	 */
+	synchronized void terrainChanged(int x, int y, int z){
+		this.worldVersion += 1;
+		int maxX = this.world.getNbCubesX() - 1, maxY = this.world.getNbCubesY() - 1, maxZ = this.world.getNbCubesZ() - 1;
+		for (int rz = Math.max(z - 1, 0) / REGION_SIZE ; rz <= Math.min(z + 1, maxZ) / REGION_SIZE ; rz++)
+			for (int ry = Math.max(y - 1, 0) / REGION_SIZE ; ry <= Math.min(y + 1, maxY) / REGION_SIZE ; ry++)
+				for (int rx = Math.max(x - 1, 0) / REGION_SIZE ; rx <= Math.min(x + 1, maxX) / REGION_SIZE ; rx++)
+					this.regionVersions[rx + this.regionsX * (ry + this.regionsY * rz)] += 1;
+	}
+
+	/**
+	 * Register that the types of the Cubes of a batch have changed.
+	 * @param around	The changed Cubes and their neighbours.
+	 * @post	The version of every region holding one of the given Cubes is increased once, and so is the
+	 * 			version of the whole World.
+	 */
+	synchronized void terrainChanged(BitSet around){
+		this.worldVersion += 1;
+		BitSet regions = new BitSet(this.regionVersions.length);
+		for (int index = around.nextSetBit(0) ; index >= 0 ; index = around.nextSetBit(index + 1))
+			regions.set(this.getRegion(index));
+		for (int region = regions.nextSetBit(0) ; region >= 0 ; region = regions.nextSetBit(region + 1))
+			this.regionVersions[region] += 1;
+	}
+
+	/**
+	 * Remove all routes from this PathCache.
+	 * @post	This PathCache holds no routes.
+	 * 			|new.getSize() == 0
+	 */
+	synchronized void clear(){
+		this.entries.clear();
+	}
+
+	/**
+	 * Return the region of the Cube with the given index.
+	 */
+	private int getRegion(int index){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int rx = (index % nbX) / REGION_SIZE, ry = ((index % layer) / nbX) / REGION_SIZE, rz = (index / layer) / REGION_SIZE;
+		return rx + this.regionsX * (ry + this.regionsY * rz);
+	}
+
+	/**
+	 * Create an entry for the given route from the Cube with the given index, holding the current versions of
+	 * the regions the route passes.
+	 */
+	private CachedRoute createEntry(int start, int[] route){
+		if (route == null)
+			return new CachedRoute(null, null, null, this.worldVersion);
+		int[] regions = new int[4];
+		int nbRegions = 0;
+		for (int i = -1 ; i < route.length ; i++){
+			int region = this.getRegion((i < 0) ? start : route[i]);
+			boolean known = false;
+			for (int j = nbRegions - 1 ; (j >= 0) && ! known ; j--)
+				known = (regions[j] == region);
+			if (known)
+				continue;
+			if (nbRegions == regions.length)
+				regions = Arrays.copyOf(regions, nbRegions * 2);
+			regions[nbRegions++] = region;
+		}
+		regions = Arrays.copyOf(regions, nbRegions);
+		int[] versions = new int[nbRegions];
+		for (int j = 0 ; j < nbRegions ; j++)
+			versions[j] = this.regionVersions[regions[j]];
+		return new CachedRoute(route, regions, versions, this.worldVersion);
+	}
+
+	/**
+	 * Check whether the given entry still describes the terrain of the World.
+	 */
+	private boolean isUpToDate(CachedRoute entry){
+		if (entry.route == null)
+			return entry.worldVersion == this.worldVersion;
+		for (int j = 0 ; j < entry.regions.length ; j++)
+			if (this.regionVersions[entry.regions[j]] != entry.versions[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Return the maximum number of routes this PathCache keeps.
+	 */
+	public int getCapacity(){
+		return this.capacity;
+	}
+
+	/**
+	 * Set the maximum number of routes this PathCache keeps to the given number.
+	 * @param capacity	The new capacity. A capacity of zero disables caching.
+	 * @post	The capacity of this PathCache is the given capacity.
+	 * 			|new.getCapacity() == capacity
+	 * @post	The least recently used routes are dropped until no more than the new capacity remain.
+	 * @throws IllegalArgumentException
+	 * 			The given capacity is negative.
+	 * 			|capacity < 0
+	 */
+	public synchronized void setCapacity(int capacity) throws IllegalArgumentException{
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative capacity");
+		this.capacity = capacity;
+		Iterator<Long> keys = this.entries.keySet().iterator();
+		while (this.entries.size() > capacity){
+			keys.next();
+			keys.remove();
+			this.evictions += 1;
+		}
+	}
+
+	/**
+	 * Return the number of routes this PathCache holds.
+	 */
+	public synchronized int getSize(){
+		return this.entries.size();
+	}
+
+	/**
+	 * Return the number of requests answered from this PathCache.
+	 */
+	public synchronized long getNbHits(){
+		return this.hits;
+	}
+
+	/**
+	 * Return the number of requests for which a route had to be searched.
+	 */
+	public synchronized long getNbMisses(){
+		return this.misses;
+	}
+
+	/**
+	 * Return the number of routes dropped to make room for newer ones.
+	 */
+	public synchronized long getNbEvictions(){
+		return this.evictions;
+	}
+
+	/**
+	 * Return the number of routes dropped because the terrain they pass changed.
+	 */
+	public synchronized long getNbInvalidations(){
+		return this.invalidations;
+	}
+
+	/**
+	 * Constant registering the number of Cubes along every axis of a region.
+	 */
+	public static final int REGION_SIZE = 8;
+
+	/**
+	 * Constant registering the capacity of the PathCache of a new World.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * A cached route with the region versions it was found under.
+	 */
+	private static final class CachedRoute {
+
+		CachedRoute(int[] route, int[] regions, int[] versions, long worldVersion){
+			this.route = route;
+			this.regions = regions;
+			this.versions = versions;
+			this.worldVersion = worldVersion;
+		}
+
+		final int[] route;
+		final int[] regions;
+		final int[] versions;
+		final long worldVersion;
+	}
+
+	private final World world;
+	private final int regionsX;
+	private final int regionsY;
+	private final int[] regionVersions;
+	private long worldVersion;
+	private int capacity;
+
+	/**
+	 * Variable registering the cached routes, least recently used first.
+	 */
+	private final LinkedHashMap<Long, CachedRoute> entries = new LinkedHashMap<Long, CachedRoute>(16, 0.75f, true){
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, CachedRoute> eldest){
+			if (this.size() <= PathCache.this.capacity)
+				return false;
+			PathCache.this.evictions += 1;
+			return true;
+		}
+	};
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+}
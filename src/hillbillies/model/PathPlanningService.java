@@ -0,0 +1,189 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A class of services that plan the routes of the Units of a World on a pool of worker threads, so a slow
+ * search does not hold up the thread that advances the game.
+ * A request is first looked up in the PathCache of the World. Otherwise it is searched on an immutable
+ * TerrainSnapshot of the World with the path algorithm of the World, if that algorithm can search a snapshot,
+ * and with the indexed A* search if not (see PathAlgorithm.findRoute(TerrainSnapshot, int, int)). Routes found
+ * on a snapshot of the current terrain are kept in the PathCache. A result is only handed to the Unit at the
+ * start of a call of World.advanceTime after its search finished; the game thread never waits for a search
+ * that is still running, which is left for a later tick. Units therefore receive their routes one tick after
+ * asking at the earliest, and later if the workers are slow.
+ * A result found on an outdated snapshot is discarded and planned again if the terrain changed in a way
+ * that conflicts with it: a route that passes a Cube that is no longer walkable, or no route at all.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class PathPlanningService {
+
+	/**
+	 * Initialize a new service for the given World that plans on the given pool.
+	 * @param world	The World of this new service.
+	 * @param pool	The pool that runs the searches.
+	 */
+	PathPlanningService(World world, ForkJoinPool pool){
+		this.world = world;
+		this.pool = pool;
+	}
+
+	/**
+	 * Submit a request for a route between the given Cubes on behalf of the given Unit.
+	 * @param unit	The Unit that asks for the route.
+	 * @param start	The Cube the route starts in.
+	 * @param goal	The Cube the route has to reach.
+	 * @return	The new request, which is answered from the PathCache of the World if it holds a route for it, and
+	 * 			searched on a snapshot of the current terrain of the World otherwise.
+	 */
+	PathRequest submit(Unit unit, Cube start, Cube goal){
+		TerrainSnapshot snapshot = this.world.getTerrainSnapshot();
+		int startIndex = this.world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition());
+		int goalIndex = this.world.getCubeIndex(goal.getXPosition(), goal.getYPosition(), goal.getZPosition());
+		int[] cached = this.world.getPathCache().getCachedRoute(startIndex, goalIndex);
+		PathRequest request;
+		if (cached != null)
+			request = new PathRequest(unit, startIndex, goalIndex, snapshot, cached, null);
+		else {
+			PathAlgorithm algorithm = this.world.getPathAlgorithm();
+			request = new PathRequest(unit, startIndex, goalIndex, snapshot, null,
+					this.pool.submit(() -> algorithm.findRoute(snapshot, startIndex, goalIndex)));
+		}
+		this.pending.add(request);
+		this.nbSubmitted += 1;
+		return request;
+	}
+
+	/**
+	 * Hand the results of the requests whose search is finished to the Units that asked for them, in the order
+	 * in which they were submitted.
+	 * @post	Every request whose search is finished is completed, unless it was given up by its Unit in the
+	 * 			meantime. The other requests stay pending.
+	 * @post	Results that conflict with the current terrain are discarded, and planned again with a new
+	 * 			request on a new snapshot.
+	 * @post	Routes searched on a snapshot of the current terrain are kept in the PathCache of the World.
+	 */
+	void applyResults(){
+		if (this.pending.isEmpty())
+			return;
+		List<PathRequest> requests = new ArrayList<PathRequest>();
+		for (Iterator<PathRequest> iterator = this.pending.iterator() ; iterator.hasNext() ; ){
+			PathRequest request = iterator.next();
+			if ((request.task == null) || request.task.isDone()){
+				requests.add(request);
+				iterator.remove();
+			}
+		}
+		for (PathRequest request : requests){
+			int[] route = (request.task == null) ? request.cached : request.task.join();
+			if ((request.task != null) && (request.snapshot.getVersion() == this.world.getTerrainVersion()))
+				this.world.getPathCache().putRoute(request.start, request.goal, route);
+			if (! request.unit.isWaitingFor(request))
+				continue;
+			if (this.conflicts(request, route)){
+				this.nbDiscarded += 1;
+				request.unit.routeDiscarded(request);
+				continue;
+			}
+			this.nbApplied += 1;
+			request.unit.routePlanned(request, route);
+		}
+	}
+
+	/**
+	 * Wait until the searches of all pending requests are finished, so the next call of World.advanceTime
+	 * hands out all of their results.
+	 * @note	This blocks the calling thread, and is meant for tests and for saving a game, not for every tick.
+	 */
+	public void awaitResults(){
+		for (PathRequest request : this.pending)
+			if (request.task != null)
+				request.task.join();
+	}
+
+	/**
+	 * Check whether the given route, found for the given request, no longer fits the terrain of the World.
+	 * @return	False if the terrain did not change since the snapshot of the request was taken.
+	 * @return	True if the terrain changed and no route was found, or the route passes a Cube that is not
+	 * 			walkable any more.
+	 */
+	private boolean conflicts(PathRequest request, int[] route){
+		if (request.snapshot.getVersion() == this.world.getTerrainVersion())
+			return false;
+		if (route == null)
+			return true;
+		for (int index : route)
+			if (! this.world.isWalkable(index))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Return the number of requests submitted to this service.
+	 */
+	public long getNbSubmitted(){
+		return this.nbSubmitted;
+	}
+
+	/**
+	 * Return the number of results handed to the Units that asked for them.
+	 */
+	public long getNbApplied(){
+		return this.nbApplied;
+	}
+
+	/**
+	 * Return the number of results discarded because the terrain changed in a conflicting way.
+	 */
+	public long getNbDiscarded(){
+		return this.nbDiscarded;
+	}
+
+	/**
+	 * Return the number of requests whose results have not been handed out yet.
+	 */
+	public int getNbPending(){
+		return this.pending.size();
+	}
+
+	/**
+	 * A route asked for by a Unit, with the snapshot it is searched on and either the route from the
+	 * PathCache or the task searching it.
+	 */
+	static final class PathRequest {
+
+		PathRequest(Unit unit, int start, int goal, TerrainSnapshot snapshot, int[] cached, ForkJoinTask<int[]> task){
+			this.unit = unit;
+			this.start = start;
+			this.goal = goal;
+			this.snapshot = snapshot;
+			this.cached = cached;
+			this.task = task;
+		}
+
+		final Unit unit;
+		final int start;
+		final int goal;
+		final TerrainSnapshot snapshot;
+		final int[] cached;
+		final ForkJoinTask<int[]> task;
+	}
+
+	private final World world;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Variable registering the requests whose results have not been handed out, in the order of submission.
+	 */
+	private final List<PathRequest> pending = new ArrayList<PathRequest>();
+
+	private long nbSubmitted;
+	private long nbApplied;
+	private long nbDiscarded;
+}
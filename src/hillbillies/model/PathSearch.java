@@ -0,0 +1,152 @@
+package hillbillies.model;
+
+import java.util.HashMap;
+
+/**
+ * A class of A* searches over Cube objects. Each PathSearch looks for a cheapest route between a start and an
+ * end Cube, keeping one Data per visited Cube and its frontier in a DataHeap.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class PathSearch {
+
+	/**
+	 * Initialize a new search between the given Cubes.
+	 * @param start	The Cube the route starts in.
+	 * @param end	The Cube the route has to reach.
+	 * @post	The search is not finished yet.
+	 * 			|! new.isFinished()
+	 */
+	public PathSearch(Cube start, Cube end){
+		this.start = start;
+		this.end = end;
+		Data startData = new Data(start, Neighbourhood.estimate(end.getXPosition() - start.getXPosition(),
+				end.getYPosition() - start.getYPosition(), end.getZPosition() - start.getZPosition()));
+		startData.setCost(0);
+		this.frontier.add(startData);
+		this.visited.put(start, startData);
+	}
+
+	/**
+	 * Run this search until it is finished.
+	 * @post	This search is finished.
+	 * 			|new.isFinished()
+	 */
+	public void run(){
+		while (! this.isFinished())
+			this.expand();
+	}
+
+	/**
+	 * Check whether this search is finished, either because the end was reached or because no Cube is left to expand.
+	 */
+	public boolean isFinished(){
+		return (this.endData != null) || this.frontier.isEmpty();
+	}
+
+	/**
+	 * Return the route found by this search.
+	 * @return	The Cubes of the route from the first step up to and including the end Cube, or an empty array if
+	 * 			start and end are the same Cube.
+	 * @return	Null if the end can not be reached.
+	 * @throws IllegalStateException
+	 * 			This search is not finished yet.
+	 * 			|! isFinished()
+	 */
+	public Cube[] getRoute() throws IllegalStateException{
+		if (! this.isFinished())
+			throw new IllegalStateException("Search not finished");
+		if (this.endData == null)
+			return null;
+		int length = 0;
+		for (Data latest = this.endData ; latest.getPrevious() != null ; latest = latest.getPrevious())
+			length += 1;
+		Cube[] route = new Cube[length];
+		for (Data latest = this.endData ; latest.getPrevious() != null ; latest = latest.getPrevious()){
+			length -= 1;
+			route[length] = latest.getCube();
+		}
+		return route;
+	}
+
+	/**
+	 * Expand the first Cube of the frontier.
+	 */
+	private void expand(){
+		Data current = this.frontier.poll();
+		current.close();
+
+		if (current.getCube().equals(this.end)) {
+			this.endData = current;
+			return;
+		}
+
+		Cube cube = current.getCube();
+		World world = cube.getWorld();
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int x = cube.getXPosition() + Neighbourhood.DX[n], y = cube.getYPosition() + Neighbourhood.DY[n],
+					z = cube.getZPosition() + Neighbourhood.DZ[n];
+			if (! world.isInside(x, y, z) || ! world.isWalkable(world.getCubeIndex(x, y, z)))
+				continue;
+			Cube next = world.getCubeAtIndex(world.getCubeIndex(x, y, z));
+			Data nextData = this.visited.get(next);
+			if ((nextData != null) && nextData.isClosed())
+				continue;
+			double new_cost = current.getCost() + Neighbourhood.getStepCost(Neighbourhood.DX[n], Neighbourhood.DY[n], Neighbourhood.DZ[n]);
+			if (nextData == null){
+				nextData = new Data(next, new_cost + Neighbourhood.estimate(this.end.getXPosition() - x,
+						this.end.getYPosition() - y, this.end.getZPosition() - z));
+				nextData.setCost(new_cost);
+				nextData.setPrevious(current);
+				this.visited.put(next, nextData);
+				this.frontier.add(nextData);
+			}
+			else if (new_cost < nextData.getCost()){
+				nextData.setPriority(nextData.getPriority() - nextData.getCost() + new_cost);
+				nextData.setCost(new_cost);
+				nextData.setPrevious(current);
+				this.frontier.decreaseKey(nextData);
+			}
+		}
+	}
+
+	/**
+	 * Return the Cube the route starts in.
+	 */
+	public Cube getStart(){
+		return this.start;
+	}
+
+	/**
+	 * Return the Cube the route has to reach.
+	 */
+	public Cube getEnd(){
+		return this.end;
+	}
+
+	/**
+	 * Variable registering the Cube the route starts in.
+	 */
+	private final Cube start;
+
+	/**
+	 * Variable registering the Cube the route has to reach.
+	 */
+	private final Cube end;
+
+	/**
+	 * Variable registering the Data of the Cubes that still have to be expanded.
+	 */
+	private final DataHeap frontier = new DataHeap();
+
+	/**
+	 * Variable registering the Data of every Cube this search has reached.
+	 */
+	private final HashMap<Cube, Data> visited = new HashMap<Cube, Data>();
+
+	/**
+	 * Variable registering the Data of the end Cube, once it has been expanded.
+	 */
+	private Data endData;
+}
@@ -0,0 +1,158 @@
+package hillbillies.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class of schedulers that run the route searches of the Units of a World in slices, so no search can
+ * stall a whole call of World.advanceTime.
+ * Every tick, the scheduler may expand at most its budget of Cubes over all searches together. The budget
+ * is shared fairly: every unfinished search gets an equal part, budget left over by searches that finish
+ * early is shared again among the others, and the order in which searches are served rotates from one tick
+ * to the next. A search that runs out of budget is resumed at the next tick.
+ * The searches are A* over Cube indices (see IndexSearch). Units only submit a search if the PathCache of
+ * their World holds no route for it, and the routes found are kept in that cache.
+ * @invar	The budget of a scheduler is never negative.
+ * 			|getBudget() >= 0
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class SearchScheduler {
+
+	/**
+	 * Initialize a new scheduler with the given budget.
+	 * @param budget	The number of Cubes the new scheduler may expand every tick, or zero for no limit.
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 */
+	SearchScheduler(int budget) throws IllegalArgumentException{
+		this.setBudget(budget);
+	}
+
+	/**
+	 * Return the number of Cubes this scheduler may expand every tick, over all searches together.
+	 * @return	Zero if searches are not sliced, but run to completion when they are started.
+	 */
+	public int getBudget(){
+		return this.budget;
+	}
+
+	/**
+	 * Set the number of Cubes this scheduler may expand every tick to the given number.
+	 * @param budget	The new budget, or zero to stop slicing searches.
+	 * @post	The budget of this scheduler is the given budget.
+	 * 			|new.getBudget() == budget
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 * 			|budget < 0
+	 */
+	public void setBudget(int budget) throws IllegalArgumentException{
+		if (budget < 0)
+			throw new IllegalArgumentException("Negative budget");
+		this.budget = budget;
+	}
+
+	/**
+	 * Check whether this scheduler slices the searches of its World.
+	 * @return	|result == (getBudget() > 0)
+	 */
+	public boolean isSlicing(){
+		return this.budget > 0;
+	}
+
+	/**
+	 * Start running the given search for the given Unit from the next tick on.
+	 * @post	The search is resumed every tick until it is finished, and then handed to the Unit.
+	 */
+	void submit(Unit unit, IndexSearch search){
+		this.searches.put(unit, search);
+		this.nbSearches += 1;
+	}
+
+	/**
+	 * Stop running the search of the given Unit, if it has one.
+	 */
+	void cancel(Unit unit){
+		this.searches.remove(unit);
+	}
+
+	/**
+	 * Run every search for its share of the budget of one tick.
+	 * @post	Every search that finished is removed from this scheduler and handed to its Unit.
+	 * @post	No more Cubes are expanded than the budget, unless it is zero, in which case every search
+	 * 			is run to completion.
+	 */
+	void runSlices(){
+		if (this.searches.isEmpty())
+			return;
+		List<Map.Entry<Unit, IndexSearch>> open = new ArrayList<Map.Entry<Unit, IndexSearch>>(this.searches.entrySet());
+		this.rotation = (this.rotation + 1) % open.size();
+		List<Map.Entry<Unit, IndexSearch>> order = new ArrayList<Map.Entry<Unit, IndexSearch>>(open.subList(this.rotation, open.size()));
+		order.addAll(open.subList(0, this.rotation));
+		int remaining = (this.budget == 0) ? Integer.MAX_VALUE : this.budget;
+		while ((remaining > 0) && ! order.isEmpty()){
+			int share = Math.max(1, remaining / order.size());
+			List<Map.Entry<Unit, IndexSearch>> unfinished = new ArrayList<Map.Entry<Unit, IndexSearch>>();
+			for (Map.Entry<Unit, IndexSearch> entry : order){
+				IndexSearch search = entry.getValue();
+				remaining -= search.run(Math.min(share, remaining));
+				if (search.isFinished())
+					this.finish(entry.getKey(), search);
+				else
+					unfinished.add(entry);
+				if (remaining == 0)
+					break;
+			}
+			order = unfinished;
+		}
+	}
+
+	/**
+	 * Hand the given finished search to the given Unit.
+	 */
+	private void finish(Unit unit, IndexSearch search){
+		this.searches.remove(unit);
+		if (search.getNbSlices() > 1)
+			this.nbMultiTickSearches += 1;
+		unit.searchFinished(search);
+	}
+
+	/**
+	 * Return the number of searches that have not finished yet.
+	 */
+	public int getNbActive(){
+		return this.searches.size();
+	}
+
+	/**
+	 * Return the number of searches submitted to this scheduler.
+	 */
+	public long getNbSearches(){
+		return this.nbSearches;
+	}
+
+	/**
+	 * Return the number of finished searches that needed more than one tick.
+	 */
+	public long getNbMultiTickSearches(){
+		return this.nbMultiTickSearches;
+	}
+
+	private int budget;
+
+	/**
+	 * Variable registering the unfinished search of every Unit that waits for a route.
+	 */
+	private final Map<Unit, IndexSearch> searches = new LinkedHashMap<Unit, IndexSearch>();
+
+	/**
+	 * Variable registering the position in the searches from which the last tick was served.
+	 */
+	private int rotation;
+
+	private long nbSearches;
+	private long nbMultiTickSearches;
+}
@@ -0,0 +1,49 @@
+package hillbillies.model;
+
+/**
+ * An enumeration of the ways a World can store the CubeTypes of its Cubes.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public enum TerrainBackend {
+
+	/**
+	 * One byte per Cube in a single array: the fastest access, for Worlds that are small or varied throughout.
+	 */
+	FLAT {
+		@Override
+		TerrainStore createStore(int[][][] types){
+			return new FlatTerrainStore(types);
+		}
+	},
+
+	/**
+	 * Chunks of 16 Cubes along every axis, each stored as a single type as long as all its Cubes share it:
+	 * for large generated Worlds, which are mostly solid rock or air.
+	 */
+	CHUNKED {
+		@Override
+		TerrainStore createStore(int[][][] types){
+			return new ChunkedTerrainStore(types);
+		}
+	},
+
+	/**
+	 * One byte per Cube in a direct buffer outside the Java heap, released when the World is terminated:
+	 * for the largest Worlds, so garbage collection pauses do not grow with the size of the World.
+	 * Release is manual: the Facade only creates FLAT Worlds, and whoever creates an OFF_HEAP World has to
+	 * terminate it, or the buffer lives until the garbage collector reclaims the World.
+	 */
+	OFF_HEAP {
+		@Override
+		TerrainStore createStore(int[][][] types){
+			return new DirectTerrainStore(types);
+		}
+	};
+
+	/**
+	 * Return a new store holding the given values of CubeTypes, by the x, y and z coordinate of their Cube.
+	 */
+	abstract TerrainStore createStore(int[][][] types);
+}
@@ -0,0 +1,183 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of batches of changes to the types of the Cubes of a World, handed to the edits given to
+ * World.editTerrain. The types set through a batch are stored in the World right away, but the World only
+ * brings the walkability of its Cubes, their connection to the border and everything derived from them up to
+ * date, and only notifies its listeners, once all edits of the batch are done.
+ * @invar	Every changed Cube of a batch lies between the low and high corner of its dirty region.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public final class TerrainBatch {
+
+	/**
+	 * Initialize a new, empty batch of changes to the terrain of the given World.
+	 * @param world	The World whose terrain is changed.
+	 */
+	TerrainBatch(World world){
+		this.world = world;
+	}
+
+	/**
+	 * Return the World whose terrain this batch changes.
+	 */
+	@Basic
+	public World getWorld(){
+		return this.world;
+	}
+
+	/**
+	 * Check whether the edits of this batch are done and its changes have been registered by its World.
+	 */
+	@Basic
+	public boolean isDone(){
+		return this.done;
+	}
+
+	/**
+	 * Set the CubeType of the Cube at the given coordinates to the given type.
+	 * @param type	The new type of the Cube.
+	 * @post	The Cube at the given coordinates is of the given type.
+	 * 			|getWorld().getCubeAtPos(x, y, z).getType() == type
+	 * @throws IndexOutOfBoundsException
+	 * 			The given coordinates do not lie inside the World of this batch.
+	 * @throws IllegalArgumentException
+	 * 			No type is given.
+	 * @throws IllegalStateException
+	 * 			This batch is done.
+	 * 			|isDone()
+	 */
+	public void setCubeType(int x, int y, int z, CubeType type)
+			throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException{
+		if (type == null)
+			throw new IllegalArgumentException("No cube type given");
+		if (this.done)
+			throw new IllegalStateException("Batch already done");
+		if (! this.world.isInside(x, y, z))
+			throw new IndexOutOfBoundsException("No cube at " + x + ", " + y + ", " + z);
+		int index = this.world.getCubeIndex(x, y, z);
+		CubeType original = this.world.getCubeType(index);
+		if (original == type)
+			return;
+		// only the type before the first change of a Cube is remembered
+		if (! this.recorded.get(index)){
+			this.recorded.set(index);
+			if (this.nbChanged == this.changed.length){
+				this.changed = Arrays.copyOf(this.changed, this.nbChanged * 2);
+				this.originalTypes = Arrays.copyOf(this.originalTypes, this.nbChanged * 2);
+			}
+			this.changed[this.nbChanged] = index;
+			this.originalTypes[this.nbChanged++] = original;
+		}
+		this.world.storeCubeType(index, type);
+	}
+
+	/**
+	 * Set the CubeType of the Cube at the given coordinates to the type with the given value.
+	 * @effect	|setCubeType(x, y, z, CubeType.getCubeTypeOfValue(value))
+	 */
+	public void setCubeTypeOf(int x, int y, int z, int value)
+			throws IndexOutOfBoundsException, IllegalArgumentException, IllegalStateException{
+		this.setCubeType(x, y, z, CubeType.getCubeTypeOfValue(value));
+	}
+
+	/**
+	 * Return the number of Cubes whose type this batch changed.
+	 * @return	The number of Cubes whose type differs from their type before this batch.
+	 */
+	public int getNbChanged(){
+		if (! this.done)
+			this.compact();
+		return this.nbChanged;
+	}
+
+	/**
+	 * Return the index of the changed Cube at the given position in this batch.
+	 * @param i	A position between zero and the number of changed Cubes.
+	 */
+	public int getChangedCube(int i) throws IndexOutOfBoundsException{
+		if ((i < 0) || (i >= this.getNbChanged()))
+			throw new IndexOutOfBoundsException("No changed cube at " + i);
+		return this.changed[i];
+	}
+
+	/**
+	 * Return the type of the changed Cube at the given position in this batch before this batch.
+	 * @param i	A position between zero and the number of changed Cubes.
+	 */
+	public CubeType getOriginalType(int i) throws IndexOutOfBoundsException{
+		if ((i < 0) || (i >= this.getNbChanged()))
+			throw new IndexOutOfBoundsException("No changed cube at " + i);
+		return this.originalTypes[i];
+	}
+
+	/**
+	 * Return the lowest x, y and z coordinates of the changed Cubes of this batch.
+	 * @return	Null if this batch changed no Cubes.
+	 */
+	public int[] getDirtyLow(){
+		return this.getDirtyCorner(false);
+	}
+
+	/**
+	 * Return the highest x, y and z coordinates of the changed Cubes of this batch.
+	 * @return	Null if this batch changed no Cubes.
+	 */
+	public int[] getDirtyHigh(){
+		return this.getDirtyCorner(true);
+	}
+
+	private int[] getDirtyCorner(boolean high){
+		if (this.getNbChanged() == 0)
+			return null;
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int[] result = null;
+		for (int i = 0 ; i < this.nbChanged ; i++){
+			int[] position = {this.changed[i] % nbX, (this.changed[i] % layer) / nbX, this.changed[i] / layer};
+			if (result == null)
+				result = position;
+			else
+				for (int axis = 0 ; axis < 3 ; axis++)
+					result[axis] = high ? Math.max(result[axis], position[axis]) : Math.min(result[axis], position[axis]);
+		}
+		return result;
+	}
+
+	/**
+	 * End this batch.
+	 * @post	This batch is done and only holds the Cubes whose type differs from their type before this batch.
+	 */
+	void finish(){
+		this.compact();
+		this.done = true;
+	}
+
+	/**
+	 * Drop the Cubes that were set back to their type before this batch.
+	 */
+	private void compact(){
+		int kept = 0;
+		for (int i = 0 ; i < this.nbChanged ; i++)
+			if (this.world.getCubeType(this.changed[i]) != this.originalTypes[i]){
+				this.changed[kept] = this.changed[i];
+				this.originalTypes[kept++] = this.originalTypes[i];
+			}
+			else
+				this.recorded.clear(this.changed[i]);
+		this.nbChanged = kept;
+	}
+
+	private final World world;
+	private int[] changed = new int[16];
+	private CubeType[] originalTypes = new CubeType[16];
+	private int nbChanged;
+	private final BitSet recorded = new BitSet();
+	private boolean done = false;
+}
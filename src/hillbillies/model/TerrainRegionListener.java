@@ -0,0 +1,19 @@
+package hillbillies.model;
+
+import hillbillies.part2.listener.TerrainChangeListener;
+
+/**
+ * An interface for listeners that want to hear of a batch of terrain changes at once, instead of once for
+ * every changed Cube. Single changes are still notified through notifyTerrainChanged.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public interface TerrainRegionListener extends TerrainChangeListener {
+
+	/**
+	 * Notify this listener that the types of the changed Cubes of the given batch have been changed.
+	 * @param batch	The done batch, holding the changed Cubes and the region around them.
+	 */
+	public void notifyTerrainRegionChanged(TerrainBatch batch);
+}
@@ -0,0 +1,93 @@
+package hillbillies.model;
+
+import java.util.BitSet;
+
+/**
+ * A class of immutable copies of the walkable Cubes of a World, taken at one terrain version of that World.
+ * A snapshot is never changed after it is created, so path searches on other threads can read it while
+ * the World itself goes on changing.
+ * @invar	The version of a snapshot is the terrain version of its World when it was taken.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+final class TerrainSnapshot implements WalkableTerrain {
+
+	/**
+	 * Initialize a new snapshot of the walkable Cubes of the given World.
+	 * @param world	The World to copy.
+	 * @post	A Cube is walkable in this snapshot if and only if it is walkable in the given World.
+	 * @post	The version of this snapshot is the current terrain version of the given World.
+	 */
+	TerrainSnapshot(World world){
+		this.nbX = world.getNbCubesX();
+		this.nbY = world.getNbCubesY();
+		this.nbZ = world.getNbCubesZ();
+		this.version = world.getTerrainVersion();
+		this.walkable = BitSet.valueOf(world.getWalkableWords());
+	}
+
+	/**
+	 * Initialize a new snapshot of the given World from an older snapshot of it.
+	 * @param previous	An older snapshot of the given World.
+	 * @param changed	The indices of the Cubes whose type changed since the older snapshot was taken.
+	 * @param nbChanged	The number of indices in changed that are used.
+	 * @post	A Cube is walkable in this snapshot if and only if it is walkable in the given World. Only the
+	 * 			changed Cubes and their neighbours are looked up again.
+	 * @post	The version of this snapshot is the current terrain version of the given World.
+	 */
+	TerrainSnapshot(TerrainSnapshot previous, World world, int[] changed, int nbChanged){
+		this.nbX = previous.nbX;
+		this.nbY = previous.nbY;
+		this.nbZ = previous.nbZ;
+		this.version = world.getTerrainVersion();
+		this.walkable = (BitSet) previous.walkable.clone();
+		int layer = this.nbX * this.nbY;
+		for (int i = 0 ; i < nbChanged ; i++){
+			int x = changed[i] % this.nbX, y = (changed[i] % layer) / this.nbX, z = changed[i] / layer;
+			for (int k = Math.max(z - 1, 0) ; k <= Math.min(z + 1, this.nbZ - 1) ; k++)
+				for (int j = Math.max(y - 1, 0) ; j <= Math.min(y + 1, this.nbY - 1) ; j++)
+					for (int h = Math.max(x - 1, 0) ; h <= Math.min(x + 1, this.nbX - 1) ; h++)
+						this.walkable.set(h + j * this.nbX + k * layer, world.isWalkable(h, j, k));
+		}
+	}
+
+	/**
+	 * Return the terrain version of the World when this snapshot was taken.
+	 */
+	long getVersion(){
+		return this.version;
+	}
+
+	@Override
+	public int getNbCubesX(){
+		return this.nbX;
+	}
+
+	@Override
+	public int getNbCubesY(){
+		return this.nbY;
+	}
+
+	@Override
+	public int getNbCubesZ(){
+		return this.nbZ;
+	}
+
+	@Override
+	public boolean isWalkable(int x, int y, int z){
+		return this.walkable.get(x + y * this.nbX + z * this.nbX * this.nbY);
+	}
+
+	@Override
+	public int getNeighbourMask(int index){
+		int layer = this.nbX * this.nbY;
+		return Neighbourhood.getNeighbourMask(this, index % this.nbX, (index % layer) / this.nbX, index / layer);
+	}
+
+	private final int nbX;
+	private final int nbY;
+	private final int nbZ;
+	private final long version;
+	private final BitSet walkable;
+}
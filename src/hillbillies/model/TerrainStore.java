@@ -0,0 +1,110 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+
+/**
+ * A class of stores for the CubeTypes of the Cubes of a World, kept as the values of the CubeTypes.
+ * Cubes are numbered like the Cubes of a World: along the x-axis first, then along the y-axis and then along the
+ * z-axis. Only the World owning a store changes the types in it, so it can register every change.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public abstract class TerrainStore {
+
+	/**
+	 * Initialize a new store for a World with the given number of Cubes along every axis.
+	 */
+	TerrainStore(int nbX, int nbY, int nbZ){
+		this.nbX = nbX;
+		this.nbY = nbY;
+		this.nbZ = nbZ;
+	}
+
+	/**
+	 * Return the number of Cubes along the x-axis.
+	 */
+	@Basic
+	public int getNbCubesX(){
+		return this.nbX;
+	}
+
+	/**
+	 * Return the number of Cubes along the y-axis.
+	 */
+	@Basic
+	public int getNbCubesY(){
+		return this.nbY;
+	}
+
+	/**
+	 * Return the number of Cubes along the z-axis.
+	 */
+	@Basic
+	public int getNbCubesZ(){
+		return this.nbZ;
+	}
+
+	/**
+	 * Return the value of the CubeType of the Cube at the given coordinates, which lie inside the World.
+	 */
+	public abstract int getType(int x, int y, int z);
+
+	/**
+	 * Return the value of the CubeType of the Cube with the given index.
+	 * @see #getType(int, int, int)
+	 */
+	public int getType(int index){
+		int layer = this.nbX * this.nbY;
+		return this.getType(index % this.nbX, (index % layer) / this.nbX, index / layer);
+	}
+
+	/**
+	 * Set the value of the CubeType of the Cube at the given coordinates to the given value.
+	 * @post	|new.getType(x, y, z) == value
+	 */
+	abstract void setType(int x, int y, int z, int value);
+
+	/**
+	 * Set the value of the CubeType of the Cube with the given index to the given value.
+	 * @see #setType(int, int, int, int)
+	 */
+	void setType(int index, int value){
+		int layer = this.nbX * this.nbY;
+		this.setType(index % this.nbX, (index % layer) / this.nbX, index / layer, value);
+	}
+
+	/**
+	 * Return the number of bytes this store uses for the values of the CubeTypes.
+	 */
+	public abstract long getStorageSize();
+
+	/**
+	 * Return a new array holding the given value for every Cube of this store, for a structure the World of
+	 * this store derives from its terrain.
+	 * @return	A dense array of ints.
+	 */
+	CubeArray createCubeArray(int initial){
+		return CubeArray.dense(this.nbX * this.nbY * this.nbZ, initial);
+	}
+
+	/**
+	 * Return a new array holding the given value for every Cube of this store, for a structure the World of
+	 * this store derives from its terrain whose values lie between Byte.MIN_VALUE and Byte.MAX_VALUE.
+	 * @return	A dense array of bytes.
+	 */
+	CubeArray createSmallCubeArray(int initial){
+		return CubeArray.denseBytes(this.nbX * this.nbY * this.nbZ, initial);
+	}
+
+	/**
+	 * Release the memory this store holds outside the Java heap, if any.
+	 * @post	This store is no longer used by its World.
+	 */
+	void release(){
+	}
+
+	private final int nbX;
+	private final int nbY;
+	private final int nbZ;
+}
@@ -8,6 +8,7 @@ import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
 import be.kuleuven.cs.som.annotate.Raw;
 import ogp.framework.util.ModelException;
+import hillbillies.model.PathPlanningService.PathRequest;
 
 
 
@@ -127,6 +128,7 @@ public class Unit {
 		if (this.faction == null){// of isTerminated()
 			this.faction = faction;
 			this.world = faction.getWorld();
+			this.updateOccupiedCube();
 		}
 	}
 	
@@ -247,6 +249,25 @@ public class Unit {
 			throw new ModelException();
 		this.position = newposition;
 		this.fallingTo = this.getZPosition();
+		this.updateOccupiedCube();
+	}
+	
+	/**
+	 * Register the Cube this Unit stands in with its World, if this Unit crossed the boundary of a Cube.
+	 * @effect	If this Unit stands in a Cube of its World, it is registered in that Cube instead of the one it
+	 * 			stood in before.
+	 */
+	private void updateOccupiedCube(){
+		int index = -1;
+		if ((this.world != null) && (this.position != null)){
+			int[] cube = this.getCubeCoordinate();
+			if (this.world.isInside(cube[0], cube[1], cube[2]))
+				index = this.world.getCubeIndex(cube[0], cube[1], cube[2]);
+		}
+		if (index != this.occupiedCube){
+			this.world.moveUnit(this, this.occupiedCube, index);
+			this.occupiedCube = index;
+		}
 	}
 	
 	/**
@@ -574,6 +595,7 @@ public class Unit {
 				
 			else 
 				this.position[2] += dt*this.fallingSpeed;
+			this.updateOccupiedCube();
 		}
 		
 		// execute task for same duration as advanceTime
@@ -633,8 +655,12 @@ public class Unit {
 					// Completed movement step => +1 exp
 					this.gainExperience(1);
 					
-					if (this.occupiesCube() == this.goal){
+					if (this.occupiesCube().equals(this.goal)){
 						this.goal = null;
+						this.route = null;
+						this.dropPlanner();
+						this.getWorld().getCooperativePlanner().release(this);
+						this.getWorld().registerArrival();
 					}
 					if (this.goal == null && this.adjacant == null)
 						this.currentActivity = null;
@@ -653,11 +679,8 @@ public class Unit {
 								this.stamina -= dt/0.1;
 				}
 			}
-			else if ((this.goal != null) && (this.goal.getCubeCenter() != this.position)){
-				int[] target = new int[3];
-				for (int i = 0; i<target.length; i++)
-					target[i] = (int) goal.getPosition()[i];
-				this.moveTo(target);
+			else if ((this.goal != null) && ! this.isPlanning() && (this.goal.getCubeCenter() != this.position)){
+				this.moveAlongRoute();
 			}
 			break;
 		
@@ -725,9 +748,9 @@ public class Unit {
 			this.currentspeed = 0;
 		else
 			if (dz ==-1)
-				this.currentspeed = 0.5*vb;
+				this.currentspeed = Neighbourhood.DESCENT_FACTOR*vb;
 			else if (dz==1)
-				this.currentspeed = 1.2*vb;
+				this.currentspeed = Neighbourhood.CLIMB_FACTOR*vb;
 			else
 				this.currentspeed = vb;	
 	}
@@ -813,6 +836,23 @@ public class Unit {
 		this.zspeed = this.currentspeed * zdistance / totaldistance;
 		setOrientation(Math.atan2(this.yspeed, this.xspeed));
 	}
+	/**
+	 * Return the time this Unit needs to walk the route of the given Path at its current speed.
+	 * @return	The cost of the Path divided by the base speed of this Unit, doubled while it is sprinting.
+	 * 			|result == path.getCost() / (getvb() * (isSprinting() ? 2 : 1))
+	 */
+	public double getTravelTime(Path path){
+		return path.getCost() / this.getWalkingSpeed();
+	}
+	
+	/**
+	 * Return the speed at which this Unit walks on level ground, doubled while it is sprinting.
+	 * 			|result == getvb() * (isSprinting() ? 2 : 1)
+	 */
+	double getWalkingSpeed(){
+		return this.getvb() * (this.isSprinting() ? 2 : 1);
+	}
+	
 	/**
 	 * Calculates the base speed value for the Unit's current weight, 
 	 * strength and agility. 
@@ -870,31 +910,336 @@ public class Unit {
 	 * 			|new.worktime ==0
 	 * @post	The Unit's goal is set to the targetcube's location. 
 	 * 			|new.goal = this.world.getCubeAtPost(targetcube[0], targetcube[1], targetcube[2])
+	 * @post	If the goal differs from the Unit's previous goal, the route toward the previous goal is dropped.
 	 * @effect 	The Unit starts moving towards the adjacant cube in the
 	 * 			target's direction.
-	 * 			|moveToAdjacant(dx, dy, dz)
+	 * 			|moveAlongRoute()
 	 */
 	public void moveTo(int[] targetcube) throws ModelException{
 		this.worktime = 0;
 		
+		Cube newGoal;
 		try{
-			this.goal = this.world.getCubeAtPos(targetcube[0], targetcube[1], targetcube[2]);
+			newGoal = this.world.getCubeAtPos(targetcube[0], targetcube[1], targetcube[2]);
 		} catch (IndexOutOfBoundsException ex){
 			throw new ModelException("Given position out of bounds");
 		}
+		if (! newGoal.equals(this.goal)){
+			this.route = null;
+			this.cancelPlanning();
+			this.dropPlanner();
+			this.world.getCooperativePlanner().release(this);
+		}
+		else if (this.isPlanning())
+			return;
+		this.goal = newGoal;
+		this.moveAlongRoute();
+	}
+	
+	/**
+	 * Start moving to the next Cube on the route toward this Unit's goal.
+	 * @post	If this Unit has no route yet, a route from the Cube it occupies to its goal is planned.
+	 * @post	If the next Cube of the route is no longer valid or no longer next to the Cube this Unit
+	 * 			occupies, a new route is planned and the number of replans of this Unit is incremented.
+	 * 			|new.getNbReplans() == getNbReplans() + 1
+	 * @effect	If the Faction of this Unit plans cooperatively, the next step is taken from the reserved plan
+	 * 			of this Unit instead, and this Unit stays where it is while its plan tells it to wait.
+	 * 			|moveCooperatively(occupiesCube())
+	 * @effect	If the World of this Unit plans asynchronously, the route is requested instead, and this Unit
+	 * 			waits for it without moving.
+	 * 			|requestRoute(occupiesCube())
+	 * @effect	Otherwise, if the World of this Unit slices its searches, the route is taken from the PathCache
+	 * 			of the World if it holds one, and a search for the route is started otherwise, for which this
+	 * 			Unit waits without moving.
+	 * 			|if (getCachedRoute(occupiesCube()) == null)
+	 * 			|	then startSearch(occupiesCube())
+	 * @effect	This Unit moves to the next Cube of its route, which is removed from the route.
+	 * 			|moveToAdjacant(dx, dy, dz)
+	 * @note	Routes that are not searched in slices are planned with the path algorithm of this Unit's World,
+	 * 			so with JUMP_POINT this Unit walks a shortest rather than a fastest route.
+	 * @throws ModelException
+	 * 			The goal can not be reached from the Cube this Unit occupies.
+	 */
+	private void moveAlongRoute() throws ModelException{
 		Cube start = this.occupiesCube();
-		Path path = new Path(start, goal);
-		try{
-			Cube next = path.getRoute().pop();
-			int dx = next.getXPosition() - start.getXPosition();
-			int dy = next.getYPosition() - start.getYPosition();
-			int dz = next.getZPosition() - start.getZPosition();
-			this.moveToAdjacant(dx, dy, dz);
-		} catch (EmptyStackException ex){
+		if ((this.getFaction() != null) && this.getFaction().isCooperativePathfinding()){
+			this.moveCooperatively(start);
+			return;
+		}
+		if (this.getWorld().getPathAlgorithm().isIncremental()){
+			this.moveWithPlanner(start);
+			return;
+		}
+		if ((this.route == null) || this.route.isEmpty() || ! this.isNextStep(start, this.route.peek())){
+			if (this.route != null)
+				this.nbReplans += 1;
+			if (this.getWorld().isAsyncPlanning()){
+				this.requestRoute(start);
+				return;
+			}
+			if (this.getWorld().getSearchScheduler().isSlicing()){
+				this.route = this.getCachedRoute(start);
+				if (this.route == null){
+					this.startSearch(start);
+					return;
+				}
+			}
+			else
+				this.route = new Path(start, this.goal).getRoute();
+		}
+		if (this.route.isEmpty()){
+			this.route = null;
+			throw new ModelException("No path available");
+		}
+		Cube next = this.route.pop();
+		int dx = next.getXPosition() - start.getXPosition();
+		int dy = next.getYPosition() - start.getYPosition();
+		int dz = next.getZPosition() - start.getZPosition();
+		this.moveToAdjacant(dx, dy, dz);
+	}
+	
+	/**
+	 * Ask the PathPlanningService of this Unit's World for a route from the given Cube to this Unit's goal.
+	 * @post	This Unit is planning, and keeps moving once its World hands it the route.
+	 * 			|new.isPlanning() && new.isMoving()
+	 * @note	The route is planned with the path algorithm of this Unit's World. If that is JUMP_POINT, the route
+	 * 			is a shortest one, not a fastest one, because Jump Point Search ignores the speed changes of
+	 * 			climbing and descending.
+	 * @throws ModelException
+	 * 			The goal can not be reached from the given Cube.
+	 * 			| ! getWorld().isReachable(start, goal)
+	 */
+	private void requestRoute(Cube start) throws ModelException{
+		this.route = null;
+		if (! this.getWorld().isReachable(start, this.goal))
+			throw new ModelException("No path available");
+		this.routeRequest = this.getWorld().getPathPlanningService().submit(this, start, this.goal);
+		this.currentActivity = Activity.MOVE;
+	}
+	
+	/**
+	 * Start a search for a route from the given Cube to this Unit's goal, run in slices by the SearchScheduler
+	 * of this Unit's World.
+	 * @post	This Unit is planning, and keeps moving once the search is finished.
+	 * 			|new.isPlanning() && new.isMoving()
+	 * @throws ModelException
+	 * 			The goal can not be reached from the given Cube.
+	 * 			| ! getWorld().isReachable(start, goal)
+	 */
+	private void startSearch(Cube start) throws ModelException{
+		this.route = null;
+		World world = this.getWorld();
+		if (! world.isReachable(start, this.goal))
+			throw new ModelException("No path available");
+		this.routeSearch = new IndexSearch(world, start.getIndex(), this.goal.getIndex());
+		this.getWorld().getSearchScheduler().submit(this, this.routeSearch);
+		this.currentActivity = Activity.MOVE;
+	}
+	
+	/**
+	 * Check whether this Unit waits for a route, from the PathPlanningService or the SearchScheduler of its World.
+	 */
+	public boolean isPlanning(){
+		return (this.routeRequest != null) || (this.routeSearch != null);
+	}
+	
+	/**
+	 * Stop waiting for a route.
+	 * @post	This Unit is not planning.
+	 * 			| ! new.isPlanning()
+	 */
+	private void cancelPlanning(){
+		this.routeRequest = null;
+		if (this.routeSearch != null){
+			this.getWorld().getSearchScheduler().cancel(this);
+			this.routeSearch = null;
+		}
+	}
+	
+	/**
+	 * Check whether this Unit still waits for the result of the given request.
+	 */
+	boolean isWaitingFor(PathRequest request){
+		return this.routeRequest == request;
+	}
+	
+	/**
+	 * Give this Unit the route planned for the given request.
+	 * @param route	The indices of the Cubes on the route, or null if the goal can not be reached.
+	 * @post	This Unit is no longer planning.
+	 * 			| ! new.isPlanning()
+	 * @post	If a route was found, this Unit follows it from its next advanceTime on. Otherwise it stops moving.
+	 */
+	void routePlanned(PathRequest request, int[] route){
+		this.routeRequest = null;
+		if (route == null){
+			this.receiveRoute(null);
+			return;
+		}
+		this.receiveRoute(this.toRoute(route));
+	}
+	
+	/**
+	 * Give this Unit the route found by the given finished search.
+	 * @post	This Unit is no longer planning.
+	 * 			| ! new.isPlanning()
+	 * @post	If a route was found, this Unit follows it from its next advanceTime on. Otherwise it stops moving.
+	 * @post	If the terrain of this Unit's World did not change during the search, its result is kept in the
+	 * 			PathCache of the World.
+	 */
+	void searchFinished(IndexSearch search){
+		if (this.routeSearch != search)
+			return;
+		this.routeSearch = null;
+		int[] route = search.getRoute();
+		// a route found while the terrain changed may pass Cubes the PathCache no longer sees as changed
+		if (search.getTerrainVersion() == this.getWorld().getTerrainVersion())
+			this.getWorld().getPathCache().putRoute(search.getStart(), search.getGoal(), route);
+		this.receiveRoute((route == null) ? null : this.toRoute(route));
+	}
+	
+	/**
+	 * Return the route from the given Cube to this Unit's goal held by the PathCache of this Unit's World.
+	 * @return	Null if the PathCache holds no up-to-date route between them.
+	 */
+	private Stack<Cube> getCachedRoute(Cube start){
+		int[] route = this.getWorld().getPathCache().getCachedRoute(start.getIndex(), this.goal.getIndex());
+		return (route == null) ? null : this.toRoute(route);
+	}
+	
+	/**
+	 * Return the Cubes with the given indices as a route, with the first step on top.
+	 */
+	private Stack<Cube> toRoute(int[] route){
+		Stack<Cube> result = new Stack<Cube>();
+		for (int i = route.length-1 ; i >= 0 ; i--)
+			result.push(this.getWorld().getCubeAtIndex(route[i]));
+		return result;
+	}
+	
+	/**
+	 * Follow the given route from the next advanceTime on, or stop moving if no route is given.
+	 */
+	private void receiveRoute(Stack<Cube> route){
+		if (route == null){
+			this.goal = null;
+			if (this.adjacant == null)
+				this.currentActivity = null;
+			return;
+		}
+		this.route = route;
+	}
+	
+	/**
+	 * Register that the route planned for the given request no longer fits the terrain of this Unit's World.
+	 * @effect	A new route is requested from the Cube this Unit occupies, or this Unit stops moving if its goal
+	 * 			can no longer be reached.
+	 */
+	void routeDiscarded(PathRequest request){
+		this.routeRequest = null;
+		try {
+			this.requestRoute(this.occupiesCube());
+		} catch (ModelException exc){
+			this.routePlanned(request, null);
+		}
+	}
+	
+	/**
+	 * Start moving to the next Cube toward this Unit's goal given by its IncrementalPlanner.
+	 * @post	If this Unit has no planner toward its goal yet, a new one is created and registered with this
+	 * 			Unit's World, so it is told about every terrain change.
+	 * @effect	This Unit moves to the next Cube of a cheapest route to its goal.
+	 * 			|moveToAdjacant(dx, dy, dz)
+	 * @effect	If the goal can not be reached, the planner of this Unit is dropped.
+	 * 			|dropPlanner()
+	 * @throws ModelException
+	 * 			The goal can not be reached from the given Cube.
+	 */
+	private void moveWithPlanner(Cube start) throws ModelException{
+		World world = this.getWorld();
+		if (! world.isReachable(start, this.goal)){
+			this.dropPlanner();
+			throw new ModelException("No path available");
+		}
+		int goalIndex = world.getCubeIndex(this.goal.getXPosition(), this.goal.getYPosition(), this.goal.getZPosition());
+		if ((this.planner == null) || (this.planner.getGoal() != goalIndex)){
+			this.dropPlanner();
+			this.planner = new IncrementalPlanner(world, goalIndex);
+			world.addTerrainChangeListener(this.planner);
+		}
+		int next = this.planner.getNextStep(world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition()));
+		if (next < 0){
+			this.dropPlanner();
+			throw new ModelException("No path available");
+		}
+		Cube nextCube = world.getCubeAtIndex(next);
+		this.moveToAdjacant(nextCube.getXPosition() - start.getXPosition(), nextCube.getYPosition() - start.getYPosition(),
+				nextCube.getZPosition() - start.getZPosition());
+	}
+	
+	/**
+	 * Start moving to the next Cube toward this Unit's goal given by the CooperativePlanner of its World, or wait
+	 * where this Unit is if its plan lets another Unit pass first.
+	 * @post	This Unit is moving, and has a plan with reservations toward its goal.
+	 * 			|new.isMoving()
+	 * @effect	If the plan tells this Unit to step now, it moves to the next Cube of its plan.
+	 * 			|moveToAdjacant(dx, dy, dz)
+	 * @throws ModelException
+	 * 			The goal can not be reached from the given Cube.
+	 */
+	private void moveCooperatively(Cube start) throws ModelException{
+		World world = this.getWorld();
+		if (start.equals(this.goal))
 			throw new ModelException("No path available");
+		int next = world.getCooperativePlanner().getNextStep(this, start, this.goal);
+		this.currentActivity = Activity.MOVE;
+		if (next == CooperativePlanner.WAIT)
+			return;
+		Cube nextCube = world.getCubeAtIndex(next);
+		this.moveToAdjacant(nextCube.getXPosition() - start.getXPosition(), nextCube.getYPosition() - start.getYPosition(),
+				nextCube.getZPosition() - start.getZPosition());
+	}
+	
+	/**
+	 * Return the IncrementalPlanner this Unit moves toward its goal with.
+	 * @return	Null if this Unit is not moving with an incremental path algorithm.
+	 */
+	@Basic
+	public IncrementalPlanner getPlanner(){
+		return this.planner;
+	}
+	
+	/**
+	 * Stop planning with the IncrementalPlanner of this Unit, if it has one.
+	 * @post	This Unit has no planner, and its former planner is no longer registered with its World.
+	 */
+	private void dropPlanner(){
+		if (this.planner != null){
+			this.getWorld().removeTerrainChangeListener(this.planner);
+			this.planner = null;
 		}
 	}
 	
+	/**
+	 * Check whether a Unit in the given Cube can step to the given next Cube.
+	 * @return	True if and only if next is a valid Cube that neighbours the given Cube.
+	 */
+	private boolean isNextStep(Cube cube, Cube next){
+		int dx = Math.abs(next.getXPosition() - cube.getXPosition());
+		int dy = Math.abs(next.getYPosition() - cube.getYPosition());
+		int dz = Math.abs(next.getZPosition() - cube.getZPosition());
+		return (dx <= 1) && (dy <= 1) && (dz <= 1) && (dx + dy + dz > 0) && next.isValidCube();
+	}
+	
+	/**
+	 * Return how often this Unit had to plan a new route toward the same goal because the next Cube of its
+	 * route could no longer be entered.
+	 */
+	@Basic
+	public int getNbReplans(){
+		return this.nbReplans;
+	}
+	
 	
 	/**
 	 * The Unit starts working for a fixed time depending on its strength. 
@@ -918,21 +1263,11 @@ public class Unit {
 	 * 		  The Cube the Unit must work on.
 	 * @return true if and only if the target Cube is the Cube which is occupied by the Unit or that Cube's surrounding Cubes.
 	 * 		   false if the above conditions are not met.
-	 * 			|if (this.occupiesCube() == cube)
-	 * 			|reslt == true
-	 * 			|for (Cube i : cube.getSurroundingCubes())
-	 *			|	if (this.occupiesCube() == i)
-	 *			|		result == true
-	 *			|else result == false
+	 * 			|result == this.occupiesCube().equals(cube) || this.occupiesCube().isNeighbourOf(cube)
 	 * 
 	 */
 	public boolean isValidWorkingCube(Cube cube){
-		if (this.occupiesCube() == cube)
-			return true;
-		for (Cube i : cube.getSurroundingCubes())
-			if (this.occupiesCube() == i)
-				return true;
-		return false;
+		return this.occupiesCube().equals(cube) || this.occupiesCube().isNeighbourOf(cube);
 	}
 	/**
 	 * Makes the Unit work on the Cube at the given x, y and z coordinates.
@@ -1284,125 +1619,118 @@ public class Unit {
 			this.putDownLog(this.occupiesCube());
 		}
 		
+		this.dropPlanner();
+		this.cancelPlanning();
+		this.getWorld().getCooperativePlanner().release(this);
 		this.getFaction().removeUnit(this);
+		this.getWorld().moveUnit(this, this.occupiedCube, -1);
+		this.occupiedCube = -1;
 		this.isAlive = false;
 	}
 	
 	/**
 	 * Returns the Log that is closest to this Unit.
 	 * @return The nearest Log in this World. All other Logs are further away. The distance is measured in the	
-	 * 			amount of Cubes this Unit has to pass to reach the Log.
+	 * 			cost of the cheapest route this Unit has to take to reach the Log.
 	 * 			|foreach log in getWorld().getLogs():
 	 * 			|	distance >= minDistance
 	 */
 	public Log getNearestLog(){
-		Log nearestLog = null;
-		double minDistance = Double.MAX_VALUE;
-		for (Log i : this.getWorld().getLogs()){
-			Path path = new Path(this.occupiesCube(), i.occupiesCube());
-			if (!path.getRoute().isEmpty()){
-				int distance = path.countStepsinRoute();
-				if ((distance < minDistance)){
-					nearestLog = i;
-					minDistance = distance;
-				}
-			}
-		}
-		return nearestLog;
+		return this.getNearest(FieldTarget.LOG, this.getWorld().getLogs(), log -> log.occupiesCube());
 	}
 	
 	/**
 	 * Returns the Boulder that is closest to this Unit.
 	 * @return The nearest Boulder in this World. All other Boulders are further away. The distance is measured in the	
-	 * 			amount of Cubes this Unit has to pass to reach the Boulder.
+	 * 			cost of the cheapest route this Unit has to take to reach the Boulder.
 	 * 			|foreach boulder in getWorld().getBoulders():
 	 * 			|	distance >= minDistance
 	 */
 	public Boulder getNearestBoulder(){
-		Boulder nearestBoulder = null;
-		double minDistance = Double.MAX_VALUE;
-		for (Boulder i : this.getWorld().getBoulders()){
-			Path path = new Path(this.occupiesCube(), i.occupiesCube());
-			if (!path.getRoute().isEmpty()){
-				int distance = path.countStepsinRoute();
-				if ((distance < minDistance)){
-					nearestBoulder = i;
-					minDistance = distance;
-				}
-			}
-		}
-		return nearestBoulder;
+		return this.getNearest(FieldTarget.BOULDER, this.getWorld().getBoulders(), boulder -> boulder.occupiesCube());
 	}
 	
 	/**
 	 * Return the Workshop Cube that is closest to this Unit.
 	 * @return The nearest Workshop Cube in this World. All other Workshop Cubes are further away. The distance is measured in the	
-	 * 			amount of Cubes this Unit has to pass to reach the Workshop Cube.
+	 * 			cost of the cheapest route this Unit has to take to reach the Workshop Cube.
 	 * 			|foreach workshop in getWorld().getWorkshops():
 	 * 			|	distance >= minDistance
 	 */
 	public Cube getNearestWorkshop(){
-		Cube nearestWorkshop = null;
-		double minDistance = Double.MAX_VALUE;
-		for (Cube i : this.getWorld().getWorkshops()){
-			Path path = new Path(this.occupiesCube(), i);
-			if (!path.getRoute().isEmpty()){
-				int distance = path.countStepsinRoute();
-				if ((distance < minDistance)){
-					nearestWorkshop = i;
-					minDistance = distance;
-				}
-			}
-		}
-		return nearestWorkshop;
+		return this.getNearest(FieldTarget.WORKSHOP, this.getWorld().getWorkshops(), workshop -> workshop);
 	}
 	
 	
 	/**
 	 * Returns the nearest friend of this Unit.
-	 * @return The nearest Unit from the same Faction. All other faction members are further away. The distance is measured in the	
-	 * 			amount of Cubes this Unit has to pass to reach his friend.
+	 * @return The nearest other Unit from the same Faction. All other faction members are further away. The distance is measured in the	
+	 * 			cost of the cheapest route this Unit has to take to reach his friend.
 	 * 			|foreach Unit in getFaction().getMembers():
 	 * 			|	distance >= minDistance
 	 */
 	public Unit getNearestFriend(){
-		Unit nearestFriend = null;
-		double minDistance = Double.MAX_VALUE;
-		for (Unit i : this.getFaction().getMembers()){
-			Path path = new Path(this.occupiesCube(), i.occupiesCube());
-			if (!path.getRoute().isEmpty()){
-				int distance = path.countStepsinRoute();
-				if ((distance < minDistance) && (i.getFaction() == this.getFaction())){
-					nearestFriend = i;
-					minDistance = distance;
-				}
-			}
-		}
-		return nearestFriend;
+		Set<Unit> friends = new HashSet<Unit>(this.getFaction().getMembers());
+		friends.remove(this);
+		return this.getNearest(friends, unit -> unit.occupiesCube());
 	}
 	
 	/**
 	 * Returns the nearest Enemy of this Unit.
 	 * @return The nearest Unit from a different Faction. All other Units of a different Faction are further away. 
-	 * 			The distance is measured in the	amount of cubes this Unit has to pass to reach his enemy.
+	 * 			The distance is measured in the cost of the cheapest route this Unit has to take to reach his enemy.
 	 * 			|foreach unit in getWorld().getUnit():
 	 * 			|	if unit.getFaction != this.getFaction:
 	 * 			|		distance >= minDistance
 	 */
 	public Unit getNearestEnemy(){
-		Unit nearestEnemy = null;
-		double minDistance = Double.MAX_VALUE;
-		for (Unit i : this.getFaction().getMembers()){
-			Path path = new Path(this.occupiesCube(), i.occupiesCube());
-			if (!path.getRoute().isEmpty()){
-				int distance = path.countStepsinRoute();
-				if ((distance < minDistance) && (i.getFaction() != this.getFaction())){
-					nearestEnemy = i;
-					minDistance = distance;
-				}
-			}
-		}
-		return nearestEnemy;
+		Set<Unit> enemies = new HashSet<Unit>();
+		for (Unit unit : this.getWorld().getActiveUnits())
+			if (! this.isFriend(unit))
+				enemies.add(unit);
+		return this.getNearest(enemies, unit -> unit.occupiesCube());
+	}
+	
+	/**
+	 * Returns the object among the given objects of the given category that is closest to this Unit, using
+	 * the DistanceField of this Unit's World for that category.
+	 * @param target	The category of the given objects.
+	 * @param objects	The objects to choose from.
+	 * @param cubeOf	The function giving the Cube an object occupies.
+	 * @return	An object in the nearest target Cube of the DistanceField, or null if no target can be reached.
+	 * @return	If this Unit does not stand on a walkable Cube, the result of a single search instead.
+	 * 			|result == getNearest(objects, cubeOf)
+	 */
+	private <T> T getNearest(FieldTarget target, Collection<T> objects, java.util.function.Function<T, Cube> cubeOf){
+		Cube cube = this.occupiesCube();
+		if (! cube.isValidCube())
+			return this.getNearest(objects, cubeOf);
+		Cube nearest = this.getWorld().getDistanceField(target).getNearestTarget(cube);
+		if (nearest == null)
+			return null;
+		for (T object : objects)
+			if (nearest.equals(cubeOf.apply(object)))
+				return object;
+		return null;
+	}
+	
+	/**
+	 * Returns the object among the given objects that is closest to this Unit, using a single search
+	 * from the Cube this Unit occupies that stops at the first Cube holding one of the objects.
+	 * @param objects	The objects to choose from.
+	 * @param cubeOf	The function giving the Cube an object occupies.
+	 * @return	An object whose Cube can be reached at the lowest cost, or null if none can be reached.
+	 */
+	private <T> T getNearest(Collection<T> objects, java.util.function.Function<T, Cube> cubeOf){
+		Map<Cube, T> byCube = new HashMap<Cube, T>();
+		for (T object : objects)
+			byCube.put(cubeOf.apply(object), object);
+		if (byCube.isEmpty())
+			return null;
+		Path path = new Path(this.occupiesCube(), byCube.keySet());
+		if (path.getEnd() == null)
+			return null;
+		return byCube.get(path.getEnd());
 	}
 	
 	/**
@@ -1442,10 +1770,10 @@ public class Unit {
 	 * Checks whether this Unit is next to the given Unit.
 	 * @param other	The Unit that is to be checked if it's next to this Unit
 	 * @return	true if and only if the other Unit occupies one of the surrounding Cubes of this Unit.
-	 * 			|result == other.occupiesCube().getSurroundingCubes().contains(this.occupiesCube())
+	 * 			|result == other.occupiesCube().isNeighbourOf(this.occupiesCube())
 	 */
 	public boolean isNextTo(Unit other){
-		return other.occupiesCube().getSurroundingCubes().contains(this.occupiesCube());
+		return other.occupiesCube().isNeighbourOf(this.occupiesCube());
 	}
 	
 	/**
@@ -1493,6 +1821,11 @@ public class Unit {
 	 */
 	private double[] position;
 	
+	/**
+	 * Variable registering the index of the Cube this Unit is registered in with its World, or -1 if none.
+	 */
+	private int occupiedCube = -1;
+	
 	/**
 	 * Variable registering the orientation of this Unit.
 	 */
@@ -1618,6 +1951,31 @@ public class Unit {
 	 */
 	private Cube goal;
 	
+	/**
+	 * Variable registering the Cubes this Unit still has to pass to reach its goal, the next one on top.
+	 */
+	private Stack<Cube> route;
+	
+	/**
+	 * Variable registering the incremental planner toward this Unit's goal, if its World uses one.
+	 */
+	private IncrementalPlanner planner;
+	
+	/**
+	 * Variable registering the request for a route this Unit waits for, if its World plans asynchronously.
+	 */
+	private PathRequest routeRequest;
+	
+	/**
+	 * Variable registering the search for a route this Unit waits for, if its World slices its searches.
+	 */
+	private IndexSearch routeSearch;
+	
+	/**
+	 * Variable registering how often this Unit planned a new route toward the same goal.
+	 */
+	private int nbReplans = 0;
+	
 	/**
 	 * Variable registering the faction this Unit belongs to.
 	 */
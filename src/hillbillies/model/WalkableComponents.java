@@ -0,0 +1,418 @@
+package hillbillies.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A class of labellings of the walkable Cubes of a World into connected components. Two walkable Cubes carry
+ * the same label if and only if a Unit can walk from one to the other, so reachability is decided in
+ * constant time. The labels are kept up to date after every terrain change: Cubes that become walkable join
+ * or merge the components around them, relabelling only the smaller ones, and Cubes that stop being walkable
+ * only start a search when their neighbours are not connected around them.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+public class WalkableComponents {
+
+	/**
+	 * Initialize a new labelling of the walkable Cubes of the given World.
+	 * @param world	The World of this new labelling.
+	 */
+	WalkableComponents(World world){
+		this.world = world;
+		int nbCubes = world.getNbCubes();
+		TerrainStore terrain = world.getTerrainStore();
+		this.label = terrain.createCubeArray(-1);
+		this.stamp = terrain.createCubeArray(0);
+		this.owner = terrain.createCubeArray(0);
+		for (int index = 0 ; index < nbCubes ; index++)
+			if (world.isWalkable(index))
+				this.label.set(index, UNLABELED);
+		for (int index = 0 ; index < nbCubes ; index++)
+			if (this.label.get(index) == UNLABELED)
+				this.relabel(index, UNLABELED, this.newLabel());
+	}
+
+	/**
+	 * Return the label of the component of the Cube with the given index.
+	 * @return	-1 if the Cube is not walkable.
+	 */
+	public int getComponent(int index){
+		return this.label.get(index);
+	}
+
+	/**
+	 * Return the number of components of walkable Cubes.
+	 */
+	public int getNbComponents(){
+		return this.nbComponents;
+	}
+
+	/**
+	 * Check whether a Unit in the Cube with the given start index can walk to the Cube with the given goal index.
+	 * @return	True if start and goal are the same Cube.
+	 * @return	False if the goal is not walkable.
+	 * @return	If the start is walkable, true if and only if start and goal lie in the same component.
+	 * @return	If the start is not walkable, true if and only if a walkable neighbour of the start lies in
+	 * 			the component of the goal.
+	 */
+	public boolean isReachable(int start, int goal){
+		if (start == goal)
+			return true;
+		int target = this.label.get(goal);
+		if (target < 0)
+			return false;
+		if (this.label.get(start) >= 0)
+			return this.label.get(start) == target;
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int x = start % nbX, y = (start % layer) / nbX, z = start / layer;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (this.world.isInside(nx, ny, nz) && (this.label.get(this.world.getCubeIndex(nx, ny, nz)) == target))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Bring the labels up to date after the type of the Cube at the given coordinates has changed.
+	 * @post	Cubes around the changed Cube that stopped being walkable lose their label, and components that
+	 * 			fell apart because of it get a new label for every part but the largest.
+	 * @post	Cubes around the changed Cube that became walkable join the components of their walkable
+	 * 			neighbours, merging those components into one.
+	 */
+	void terrainChanged(int x, int y, int z){
+		int[] removed = new int[27], added = new int[27];
+		int nbRemoved = 0, nbAdded = 0;
+		for (int dz = -1 ; dz <= 1 ; dz++)
+			for (int dy = -1 ; dy <= 1 ; dy++)
+				for (int dx = -1 ; dx <= 1 ; dx++){
+					if (! this.world.isInside(x + dx, y + dy, z + dz))
+						continue;
+					int index = this.world.getCubeIndex(x + dx, y + dy, z + dz);
+					boolean walkable = this.world.isWalkable(x + dx, y + dy, z + dz);
+					if ((this.label.get(index) >= 0) && ! walkable)
+						removed[nbRemoved++] = index;
+					else if ((this.label.get(index) < 0) && walkable)
+						added[nbAdded++] = index;
+				}
+		for (int i = 0 ; i < nbRemoved ; i++){
+			this.shrink(this.label.get(removed[i]), 1);
+			this.label.set(removed[i], -1);
+		}
+		if (nbRemoved > 0)
+			this.split(Arrays.copyOf(removed, nbRemoved));
+		for (int i = 0 ; i < nbAdded ; i++)
+			this.join(added[i]);
+	}
+
+	/**
+	 * Bring the labels up to date after the types of the Cubes of a batch have changed.
+	 * @param around	The changed Cubes and their neighbours.
+	 * @post	The given Cubes that stopped being walkable all lose their label before the components around
+	 * 			them are checked, so a component that fell apart is split only once.
+	 * @post	The given Cubes that became walkable then join the components of their walkable neighbours,
+	 * 			merging those components into one.
+	 */
+	void terrainChanged(BitSet around){
+		int[] removed = new int[16], added = new int[16];
+		int nbRemoved = 0, nbAdded = 0;
+		for (int index = around.nextSetBit(0) ; index >= 0 ; index = around.nextSetBit(index + 1)){
+			boolean walkable = this.world.isWalkable(index);
+			if ((this.label.get(index) >= 0) && ! walkable){
+				if (nbRemoved == removed.length)
+					removed = Arrays.copyOf(removed, nbRemoved * 2);
+				removed[nbRemoved++] = index;
+			}
+			else if ((this.label.get(index) < 0) && walkable){
+				if (nbAdded == added.length)
+					added = Arrays.copyOf(added, nbAdded * 2);
+				added[nbAdded++] = index;
+			}
+		}
+		for (int i = 0 ; i < nbRemoved ; i++){
+			this.shrink(this.label.get(removed[i]), 1);
+			this.label.set(removed[i], -1);
+		}
+		if (nbRemoved > 0)
+			this.split(Arrays.copyOf(removed, nbRemoved));
+		for (int i = 0 ; i < nbAdded ; i++)
+			this.join(added[i]);
+	}
+
+	/**
+	 * Give the Cube with the given index, which became walkable, the label of its walkable neighbours, merging
+	 * their components into the largest one.
+	 */
+	private void join(int index){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int x = index % nbX, y = (index % layer) / nbX, z = index / layer;
+		int largest = -1;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (! this.world.isInside(nx, ny, nz))
+				continue;
+			int neighbour = this.label.get(this.world.getCubeIndex(nx, ny, nz));
+			if ((neighbour >= 0) && ((largest < 0) || (this.size[neighbour] > this.size[largest])))
+				largest = neighbour;
+		}
+		if (largest < 0)
+			largest = this.newLabel();
+		this.label.set(index, largest);
+		this.size[largest] += 1;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+			int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+			if (! this.world.isInside(nx, ny, nz))
+				continue;
+			int neighbour = this.world.getCubeIndex(nx, ny, nz);
+			if ((this.label.get(neighbour) >= 0) && (this.label.get(neighbour) != largest))
+				this.relabel(neighbour, this.label.get(neighbour), largest);
+		}
+	}
+
+	/**
+	 * Check whether the components of the walkable neighbours of the given Cubes, which stopped being walkable,
+	 * fell apart, and give every part but one a new label.
+	 * Neighbours that are connected within the box of three Cubes around a removed Cube surely stay connected.
+	 * Only the remaining groups of neighbours are searched from, in lockstep, so the cost of a search is
+	 * bounded by the size of the smaller parts.
+	 */
+	private void split(int[] removed){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		this.generation += 1;
+		int[] starts = new int[Neighbourhood.SIZE * removed.length];
+		int nbStarts = 0;
+		for (int index : removed){
+			int x = index % nbX, y = (index % layer) / nbX, z = index / layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				int neighbour = this.world.getCubeIndex(nx, ny, nz);
+				if ((this.label.get(neighbour) < 0) || (this.stamp.get(neighbour) == this.generation))
+					continue;
+				// mark all neighbours connected to this one within the box around the removed Cube
+				this.markLocally(neighbour, nbStarts, x, y, z);
+				starts[nbStarts++] = neighbour;
+			}
+		}
+		// neighbours of different components can not have been connected through the removed Cube either
+		for (int first = 0 ; first < nbStarts ; first++){
+			if (starts[first] < 0)
+				continue;
+			int component = this.label.get(starts[first]);
+			int[] sameComponent = new int[nbStarts];
+			int nbSame = 0;
+			for (int other = first ; other < nbStarts ; other++)
+				if ((starts[other] >= 0) && (this.label.get(starts[other]) == component)){
+					sameComponent[nbSame++] = starts[other];
+					starts[other] = -1;
+				}
+			if (nbSame > 1)
+				this.separate(Arrays.copyOf(sameComponent, nbSame));
+		}
+	}
+
+	/**
+	 * Mark the walkable Cubes with the same label as the given Cube that are connected to it within the box of
+	 * three Cubes around the given center with the given search.
+	 */
+	private void markLocally(int first, int search, int cx, int cy, int cz){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int component = this.label.get(first);
+		int[] stack = new int[343];
+		int size = 0;
+		this.stamp.set(first, this.generation);
+		this.owner.set(first, search);
+		stack[size++] = first;
+		while (size > 0){
+			int current = stack[--size];
+			int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if ((Math.abs(nx - cx) > 3) || (Math.abs(ny - cy) > 3) || (Math.abs(nz - cz) > 3) || ! this.world.isInside(nx, ny, nz))
+					continue;
+				int next = this.world.getCubeIndex(nx, ny, nz);
+				if ((this.label.get(next) == component) && (this.stamp.get(next) != this.generation)){
+					this.stamp.set(next, this.generation);
+					this.owner.set(next, search);
+					stack[size++] = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Search from the given Cubes of one component in lockstep. Searches that meet are merged. A group of
+	 * searches that runs out of Cubes before meeting the others has found a separate part, which gets a new
+	 * label. The search stops as soon as at most one group is left.
+	 */
+	private void separate(int[] starts){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int nbSearches = starts.length;
+		int component = this.label.get(starts[0]);
+		this.generation += 1;
+		int[] group = new int[nbSearches];
+		int[][] visited = new int[nbSearches][];
+		int[] nbVisited = new int[nbSearches];
+		int[] head = new int[nbSearches];
+		for (int s = 0 ; s < nbSearches ; s++){
+			group[s] = s;
+			visited[s] = new int[16];
+			visited[s][nbVisited[s]++] = starts[s];
+			this.stamp.set(starts[s], this.generation);
+			this.owner.set(starts[s], s);
+		}
+		int nbGroups = nbSearches;
+		boolean[] done = new boolean[nbSearches];
+		while (nbGroups > 1){
+			for (int s = 0 ; s < nbSearches ; s++){
+				if (done[s] || (head[s] == nbVisited[s]))
+					continue;
+				int current = visited[s][head[s]++];
+				int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+				for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+					int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+					if (! this.world.isInside(nx, ny, nz))
+						continue;
+					int next = this.world.getCubeIndex(nx, ny, nz);
+					if (this.label.get(next) != component)
+						continue;
+					if (this.stamp.get(next) != this.generation){
+						this.stamp.set(next, this.generation);
+						this.owner.set(next, s);
+						if (nbVisited[s] == visited[s].length)
+							visited[s] = Arrays.copyOf(visited[s], nbVisited[s] * 2);
+						visited[s][nbVisited[s]++] = next;
+					}
+					else {
+						int mine = find(group, s), theirs = find(group, this.owner.get(next));
+						if (mine != theirs){
+							group[Math.max(mine, theirs)] = Math.min(mine, theirs);
+							nbGroups -= 1;
+						}
+					}
+				}
+			}
+			// a group whose searches all ran out is a separate part
+			for (int root = 0 ; (root < nbSearches) && (nbGroups > 1) ; root++){
+				if (done[root] || (find(group, root) != root))
+					continue;
+				boolean exhausted = true;
+				for (int s = 0 ; (s < nbSearches) && exhausted ; s++)
+					if ((find(group, s) == root) && (head[s] < nbVisited[s]))
+						exhausted = false;
+				if (! exhausted)
+					continue;
+				int part = this.newLabel();
+				for (int s = 0 ; s < nbSearches ; s++){
+					if (find(group, s) != root)
+						continue;
+					done[s] = true;
+					for (int i = 0 ; i < nbVisited[s] ; i++)
+						this.label.set(visited[s][i], part);
+					this.size[part] += nbVisited[s];
+					this.shrink(component, nbVisited[s]);
+				}
+				nbGroups -= 1;
+			}
+		}
+	}
+
+	private static int find(int[] group, int search){
+		while (group[search] != search)
+			search = group[search];
+		return search;
+	}
+
+	/**
+	 * Give all Cubes with the given old label that are connected to the Cube with the given index the given new label.
+	 */
+	private void relabel(int index, int oldLabel, int newLabel){
+		int nbX = this.world.getNbCubesX(), layer = nbX * this.world.getNbCubesY();
+		int[] stack = new int[64];
+		int size = 0;
+		this.label.set(index, newLabel);
+		stack[size++] = index;
+		int count = 1;
+		while (size > 0){
+			int current = stack[--size];
+			int x = current % nbX, y = (current % layer) / nbX, z = current / layer;
+			for (int n = 0 ; n < Neighbourhood.SIZE ; n++){
+				int nx = x + Neighbourhood.DX[n], ny = y + Neighbourhood.DY[n], nz = z + Neighbourhood.DZ[n];
+				if (! this.world.isInside(nx, ny, nz))
+					continue;
+				int next = this.world.getCubeIndex(nx, ny, nz);
+				if (this.label.get(next) != oldLabel)
+					continue;
+				this.label.set(next, newLabel);
+				count += 1;
+				if (size == stack.length)
+					stack = Arrays.copyOf(stack, size * 2);
+				stack[size++] = next;
+			}
+		}
+		this.size[newLabel] += count;
+		if (oldLabel >= 0)
+			this.shrink(oldLabel, count);
+	}
+
+	/**
+	 * Return a label no Cube carries, reusing the label of a component that disappeared if there is one.
+	 * @post	The number of components is incremented.
+	 */
+	private int newLabel(){
+		this.nbComponents += 1;
+		if (this.nbFree > 0)
+			return this.free[--this.nbFree];
+		if (this.nbLabels == this.size.length)
+			this.size = Arrays.copyOf(this.size, this.size.length * 2);
+		return this.nbLabels++;
+	}
+
+	/**
+	 * Register that the given number of Cubes no longer carry the given label.
+	 * @post	If no Cube carries the label anymore, it is kept for reuse and the number of components is
+	 * 			decremented.
+	 */
+	private void shrink(int label, int count){
+		this.size[label] -= count;
+		if (this.size[label] > 0)
+			return;
+		if (this.nbFree == this.free.length)
+			this.free = Arrays.copyOf(this.free, this.free.length * 2);
+		this.free[this.nbFree++] = label;
+		this.nbComponents -= 1;
+	}
+
+	private static final int UNLABELED = -2;
+
+	private final World world;
+
+	/**
+	 * Variable registering per Cube index the label of its component, or -1 if it is not walkable, chunked if the
+	 * terrain store of the World is.
+	 */
+	private final CubeArray label;
+
+	/**
+	 * Variable registering per label the number of Cubes carrying it.
+	 */
+	private int[] size = new int[16];
+	private int nbLabels;
+
+	/**
+	 * Variable registering the labels below nbLabels that no Cube carries, to be handed out again.
+	 */
+	private int[] free = new int[16];
+	private int nbFree;
+	private int nbComponents;
+
+	/**
+	 * Variables registering per Cube index the search that reached it last, and in which generation.
+	 */
+	private final CubeArray stamp;
+	private final CubeArray owner;
+	private int generation;
+}
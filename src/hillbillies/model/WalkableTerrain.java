@@ -0,0 +1,38 @@
+package hillbillies.model;
+
+/**
+ * An interface for grids of Cubes in which a path finder can decide where a Unit can stand. Both a World
+ * and the immutable TerrainSnapshots taken of it are walkable terrains.
+ * @author Kristof Van Cappellen
+ * @author Jakob De Hertogh
+ *
+ */
+interface WalkableTerrain {
+
+	/**
+	 * Return the number of Cubes along the x axis.
+	 */
+	int getNbCubesX();
+
+	/**
+	 * Return the number of Cubes along the y axis.
+	 */
+	int getNbCubesY();
+
+	/**
+	 * Return the number of Cubes along the z axis.
+	 */
+	int getNbCubesZ();
+
+	/**
+	 * Check whether a Unit can stand in the Cube at the given coordinates, which lie inside the terrain.
+	 */
+	boolean isWalkable(int x, int y, int z);
+
+	/**
+	 * Return the mask of the walkable neighbours of the Cube with the given index.
+	 * @return	An int of which bit n is set if and only if the neighbour of step n of the Neighbourhood lies inside
+	 * 			the terrain and is walkable.
+	 */
+	int getNeighbourMask(int index);
+}
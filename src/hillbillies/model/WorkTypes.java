@@ -77,9 +77,7 @@ public enum WorkTypes {
 		
 		public void execute(Unit unit, Cube cube){
 			try {
-				cube.caveIn();
-				cube.getWorld().caveInCubes.addAll(cube.getWorld().getCTB().changeSolidToPassable(
-						cube.getXPosition(), cube.getYPosition(), cube.getZPosition()));
+				cube.getWorld().caveInCube(cube.getXPosition(), cube.getYPosition(), cube.getZPosition());
 			} catch (ModelException e) {
 			}
 		}
@@ -92,9 +90,7 @@ public enum WorkTypes {
 		
 		public void execute(Unit unit, Cube cube){
 			try {
-				cube.caveIn();
-				cube.getWorld().caveInCubes.addAll(cube.getWorld().getCTB().changeSolidToPassable(
-						cube.getXPosition(), cube.getYPosition(), cube.getZPosition()));
+				cube.getWorld().caveInCube(cube.getXPosition(), cube.getYPosition(), cube.getZPosition());
 			} catch (ModelException e) {
 			}
 		}
@@ -2,51 +2,106 @@ package hillbillies.model;
 
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import hillbillies.part2.listener.TerrainChangeListener;
-import hillbillies.util.ConnectedToBorder;
 import ogp.framework.util.ModelException;
 
-public class World {
+public class World implements WalkableTerrain {
 	/**
 	 * 
 	 * @param terraintypes
 	 * @param tcl	The given TerrainChangeListener for the new World.
 	 * @post	The number of x, y and z Cubes is set to the dimensions of the given terraintypes.
 	 * @post	The TerrainChangeListener for this world is set to the given TerrainChangeListener.
-	 * 
+	 * @effect	The new World stores its terrain in a flat array.
+	 * 			|this(terraintypes, tcl, TerrainBackend.FLAT)
 	 */
 	public World(int[][][] terraintypes, TerrainChangeListener tcl){
+		this(terraintypes, tcl, TerrainBackend.FLAT);
+	}
+	
+	/**
+	 * 
+	 * @param terraintypes
+	 * @param tcl	The given TerrainChangeListener for the new World.
+	 * @param backend	The way the new World stores the types of its Cubes.
+	 * @post	The number of x, y and z Cubes is set to the dimensions of the given terraintypes.
+	 * @post	The TerrainChangeListener for this world is set to the given TerrainChangeListener.
+	 * @effect	The new World keeps track of the solid Cubes connected to its border with flood fills.
+	 * 			|this(terraintypes, tcl, backend, ConnectivityBackend.FLOOD_FILL)
+	 */
+	public World(int[][][] terraintypes, TerrainChangeListener tcl, TerrainBackend backend) throws IllegalArgumentException{
+		this(terraintypes, tcl, backend, ConnectivityBackend.FLOOD_FILL);
+	}
+	
+	/**
+	 * 
+	 * @param terraintypes
+	 * @param tcl	The given TerrainChangeListener for the new World.
+	 * @param backend	The way the new World stores the types of its Cubes.
+	 * @param connectivity	The way the new World keeps track of the solid Cubes connected to its border.
+	 * @post	The number of x, y and z Cubes is set to the dimensions of the given terraintypes.
+	 * @post	The TerrainChangeListener for this world is set to the given TerrainChangeListener.
+	 * @post	The terrain of the new World is kept in a store of the given backend.
+	 * @post	The BorderConnectivity of the new World is one of the given connectivity backend.
+	 * @note	Whoever creates a World with the OFF_HEAP backend owns its memory outside the Java heap, and has to
+	 * 			terminate the World when it is done with it. Nothing terminates a World on its own; an OFF_HEAP
+	 * 			World that is never terminated only frees that memory once the garbage collector reclaims it.
+	 * @throws IllegalArgumentException
+	 * 			The given backend or connectivity backend is null.
+	 */
+	public World(int[][][] terraintypes, TerrainChangeListener tcl, TerrainBackend backend,
+			ConnectivityBackend connectivity) throws IllegalArgumentException{
+		if (backend == null)
+			throw new IllegalArgumentException("No terrain backend given");
+		if (connectivity == null)
+			throw new IllegalArgumentException("No connectivity backend given");
 		
 		this.nbXCubes = terraintypes.length; 
 		this.nbYCubes = terraintypes[0].length;
 		this.nbZCubes = terraintypes[0][0].length;
 
-		//INITIALISE CONNECTEDTOBORDER 
-		ConnectedToBorder ctb = new ConnectedToBorder(this.nbXCubes, this.nbYCubes, this.nbZCubes);
-		this.ctb = ctb;
-
-		this.cubes = new Cube[this.getNbCubesX()][this.getNbCubesY()][this.getNbCubesZ()];
+		this.terrain = backend.createStore(terraintypes);
 		for (int i = 0 ; i < terraintypes.length ; i++){
 			for (int j = 0 ; j < terraintypes[0].length  ; j++){
 				for (int k = 0 ; k< terraintypes[0][0].length ; k++){
 					CubeType type = CubeType.getCubeTypeOfValue(terraintypes[i][j][k]);
-					cubes[i][j][k] = new Cube(this, i,j,k, type);
-					if (cubes[i][j][k].getType() == CubeType.WORKSHOP){
-						workshops.add(cubes[i][j][k]);
-					}
-					
-					//	UPDATE CONNECTEDTOBORDER
-					if (type.isPassable()){
-						caveInCubes.addAll(ctb.changeSolidToPassable(i, j, k));
-						if (cubes[i][j][k].isValidCube())
-							this.viableSpawnCubes.add(cubes[i][j][k]);
+					if (type == CubeType.WORKSHOP){
+						workshops.add(this.getCubeAtPos(i, j, k));
 					}
 				}
 			}
 		}
+		// the connection to the border is set up for the whole terrain at once; solid Cubes it does not reach cave in
+		this.borderConnectivity = connectivity.createConnectivity(this.terrain);
+		List<int[]> loose = new ArrayList<int[]>();
+		for (int i = 0 ; i < terraintypes.length ; i++)
+			for (int j = 0 ; j < terraintypes[0].length  ; j++)
+				for (int k = 0 ; k< terraintypes[0][0].length ; k++)
+					if (! this.isPassableType(i, j, k) && ! this.borderConnectivity.isSolidConnectedToBorder(i, j, k))
+						loose.add(new int[]{i, j, k});
+		this.collapseScheduler.schedule(loose);
+		// walkability and spawn cubes can only be determined once the types of all neighbouring cubes are known
+		this.walkable = new long[(this.getNbCubes() + 63) >>> 6];
+		for (int i = 0 ; i < terraintypes.length ; i++)
+			for (int j = 0 ; j < terraintypes[0].length  ; j++)
+				for (int k = 0 ; k< terraintypes[0][0].length ; k++)
+					if (this.computeWalkable(i, j, k))
+						this.walkable[this.getCubeIndex(i, j, k) >>> 6] |= 1L << this.getCubeIndex(i, j, k);
+		this.neighbourOffsets = Neighbourhood.getIndexOffsets(this.nbXCubes, this.nbYCubes);
+		// a chunked World looks its neighbour masks up in its walkability bitset, like a snapshot, instead of keeping them
+		this.neighbourMasks = (this.terrain instanceof ChunkedTerrainStore) ? null : new int[this.getNbCubes()];
+		if (this.neighbourMasks != null)
+			for (int i = 0 ; i < terraintypes.length ; i++)
+				for (int j = 0 ; j < terraintypes[0].length  ; j++)
+					for (int k = 0 ; k< terraintypes[0][0].length ; k++)
+						this.neighbourMasks[this.getCubeIndex(i, j, k)] = Neighbourhood.getNeighbourMask(this, i, j, k);
 		this.tcl = tcl;
+		this.pathCache = new PathCache(this, PathCache.DEFAULT_CAPACITY);
+		this.walkableComponents = new WalkableComponents(this);
 	}
 	
 	/**
@@ -54,16 +109,57 @@ public class World {
 	 * @param dt The time step this World advances with.
 	 * @throws ModelException
 	 * @effect	For every Unit in this World the time will advance with the given time step.
+	 * @effect	The Cubes scheduled to cave in before the end of the time step cave in, within the budget of the
+	 * 			CollapseScheduler of this World.
 	 */
-	public void advanceTime(double dt) throws ModelException{
-		// caveIn alle cubes die moeten instorten. Onmiddellijk => max 5s delay?
-		for (int[] i : caveInCubes){
-			caveInCube(i[0], i[1], i[2]);
-		}
+	public void advanceTime(double dt) throws ModelException, IllegalStateException{
+		this.checkNotTerminated();
+		if (this.planningService != null)
+			this.planningService.applyResults();
+		this.searchScheduler.runSlices();
+		this.collapseScheduler.runCollapses(this.time + dt);
 		
 		for (Unit unit : this.getActiveUnits()){
 			unit.advanceTime(dt);
 		}
+		this.time += dt;
+	}
+	
+	/**
+	 * Return the game time that passed in this World, in seconds.
+	 */
+	@Basic
+	public double getTime(){
+		return this.time;
+	}
+	
+	/**
+	 * Register that a Unit of this World reached the goal it was moving to.
+	 * @post	|new.getNbArrivals() == getNbArrivals() + 1
+	 */
+	void registerArrival(){
+		this.nbArrivals += 1;
+	}
+	
+	/**
+	 * Return the number of times a Unit of this World reached the goal it was moving to.
+	 */
+	@Basic
+	public long getNbArrivals(){
+		return this.nbArrivals;
+	}
+	
+	/**
+	 * Return the number of Units of this World that reached their goal per minute of game time.
+	 * @return	Zero if no time has passed in this World.
+	 * 			|if (getTime() == 0)
+	 * 			|	then result == 0
+	 * 			|else result == getNbArrivals() * 60 / getTime()
+	 */
+	public double getArrivalsPerMinute(){
+		if (this.time == 0)
+			return 0;
+		return this.nbArrivals * 60 / this.time;
 	}
 	
 	/**
@@ -76,11 +172,11 @@ public class World {
 	}
 	
 	/**
-	 * Return the ConnectedToBorder of this World.
+	 * Return the BorderConnectivity of this World, which keeps track of the solid Cubes connected to its border.
 	 */
 	@Basic
-	public ConnectedToBorder getCTB(){
-		return this.ctb;
+	public BorderConnectivity getBorderConnectivity(){
+		return this.borderConnectivity;
 	}
 	
 	/*
@@ -88,7 +184,7 @@ public class World {
 	 * @return	True if and only if this position is solidly connected to the World border.
 	 */
 	public boolean isSolidConnectedToBorder(int x, int y, int z){
-		return this.ctb.isSolidConnectedToBorder(x,y,z);
+		return this.borderConnectivity.isSolidConnectedToBorder(x,y,z);
 	}
 	
 	/**
@@ -96,10 +192,17 @@ public class World {
 	 * @param x	The x coordinate of the Cube that has to cave in.
 	 * @param y The y coordinate of the Cube that has to cave in.
 	 * @param z The z coordinate of the Cube that has to cave in.
+	 * @effect	The Cube caves in.
+	 * 			|getCubeAtPos(x, y, z).caveIn()
+	 * @effect	Unless the terrain of this World is edited in a batch, which updates the connection to the border
+	 * 			when it is done, the solid Cubes that lose their connection to the border by this cave-in are
+	 * 			scheduled to cave in as well.
 	 * @throws ModelException
 	 */
 	public void caveInCube(int x, int y, int z) throws ModelException{
 		getCubeAtPos(x,y,z).caveIn();
+		if (this.terrainBatch == null)
+			this.collapseScheduler.schedule(this.borderConnectivity.changeSolidToPassable(x, y, z));
 	}
 	
 	/**
@@ -107,23 +210,392 @@ public class World {
 	 * @param x The x coordinate of the Cube that has to be returned.
 	 * @param y	The x coordinate of the Cube that has to be returned.
 	 * @param z	The x coordinate of the Cube that has to be returned.
+	 * @return	A Cube that is equal to every other Cube returned for the same coordinates.
+	 * @throws IndexOutOfBoundsException
+	 * 			The given coordinates do not lie inside this World.
+	 * 			| ! isInside(x, y, z)
 	 */
-	@Basic
-	public Cube getCubeAtPos(int x, int y, int z){
-		return cubes[x][y][z];
+	public Cube getCubeAtPos(int x, int y, int z) throws IndexOutOfBoundsException{
+		return new Cube(this, this.getCheckedIndex(x, y, z));
 	}
 	/**
 	 * Return the Cube at the given position.
 	 * @param pos The position of which the Cube must be returned/
+	 * @see #getCubeAtPos(int, int, int)
+	 */
+	public Cube getCubeAtPos(int[] pos) throws IndexOutOfBoundsException{
+		return this.getCubeAtPos(pos[0], pos[1], pos[2]);
+	}
+	
+	
+	/**
+	 * Return the index of the Cube at the given coordinates. Cubes are numbered along the x-axis first,
+	 * then along the y-axis and then along the z-axis.
+	 * @param x The x coordinate of the Cube.
+	 * @param y The y coordinate of the Cube.
+	 * @param z The z coordinate of the Cube.
+	 * @return	|result == x + y*getNbCubesX() + z*getNbCubesX()*getNbCubesY()
+	 */
+	public int getCubeIndex(int x, int y, int z){
+		return x + y*this.nbXCubes + z*this.nbXCubes*this.nbYCubes;
+	}
+	
+	/**
+	 * Return the index of the Cube at the given coordinates.
+	 * @throws IndexOutOfBoundsException
+	 * 			The given coordinates do not lie inside this World.
+	 * 			| ! isInside(x, y, z)
+	 */
+	private int getCheckedIndex(int x, int y, int z) throws IndexOutOfBoundsException{
+		if (! this.isInside(x, y, z))
+			throw new IndexOutOfBoundsException("No cube at " + x + ", " + y + ", " + z);
+		return this.getCubeIndex(x, y, z);
+	}
+	
+	/**
+	 * Return the Cube with the given index.
+	 * @param index The index of the Cube that has to be returned.
+	 */
+	public Cube getCubeAtIndex(int index){
+		return new Cube(this, index);
+	}
+	
+	/**
+	 * Return the CubeType of the Cube with the given index.
+	 */
+	CubeType getCubeType(int index){
+		return CubeType.getCubeTypeOfValue(this.terrain.getType(index));
+	}
+	
+	/**
+	 * Store the given CubeType for the Cube with the given index, without registering the change.
+	 * @post	|new.getCubeType(index) == type
+	 */
+	void storeCubeType(int index, CubeType type){
+		this.terrain.setType(index, type.getValue());
+	}
+	
+	/**
+	 * Check whether the Cube with the given index is of a passable CubeType.
+	 */
+	private boolean isPassableType(int index){
+		return CubeType.getCubeTypeOfValue(this.terrain.getType(index)).isPassable();
+	}
+	
+	/**
+	 * Check whether the Cube at the given coordinates, which lie inside this World, is of a passable CubeType.
+	 */
+	private boolean isPassableType(int x, int y, int z){
+		return CubeType.getCubeTypeOfValue(this.terrain.getType(x, y, z)).isPassable();
+	}
+	
+	/**
+	 * Return the store that holds the types of the Cubes of this World.
+	 */
+	@Basic
+	public TerrainStore getTerrainStore(){
+		return this.terrain;
+	}
+	
+	/**
+	 * Terminate this World.
+	 * @post	This World is terminated.
+	 * 			|new.isTerminated()
+	 * @effect	The store of the terrain of this World releases the memory it holds outside the Java heap, so the
+	 * 			terrain of this World can no longer be read.
+	 * @note	A terminated World can no longer be used. Advancing its time, adding Units and reading or changing
+	 * 			the types of its Cubes fail with an IllegalStateException; other methods, apart from isTerminated,
+	 * 			may fail in any way.
+	 */
+	public void terminate(){
+		if (this.isTerminated)
+			return;
+		this.isTerminated = true;
+		this.terrain.release();
+	}
+	
+	/**
+	 * Check that this World is not terminated.
+	 * @throws IllegalStateException
+	 * 			This World is terminated.
+	 * 			|isTerminated()
+	 */
+	private void checkNotTerminated() throws IllegalStateException{
+		if (this.isTerminated)
+			throw new IllegalStateException("World terminated");
+	}
+	
+	/**
+	 * Check whether this World is terminated.
 	 */
 	@Basic
-	public Cube getCubeAtPos(int[] pos){
-		return cubes[pos[0]][pos[1]][pos[2]];
+	public boolean isTerminated(){
+		return this.isTerminated;
+	}
+	
+	/**
+	 * Return the Logs in the Cube with the given index.
+	 * @return	An unmodifiable empty set if the Cube holds no Logs.
+	 */
+	Set<Log> getLogsIn(int index){
+		Set<Log> logs = this.cubeLogs.get(index);
+		return (logs == null) ? Collections.<Log>emptySet() : logs;
+	}
+	
+	/**
+	 * Add the given Log to the Logs in the Cube with the given index.
+	 */
+	void addLogTo(int index, Log log){
+		Set<Log> logs = this.cubeLogs.get(index);
+		if (logs == null){
+			logs = new HashSet<Log>();
+			this.cubeLogs.put(index, logs);
+		}
+		logs.add(log);
+	}
+	
+	/**
+	 * Remove the given Log from the Logs in the Cube with the given index.
+	 * @post	No set of Logs is kept for the Cube if it no longer holds Logs.
+	 */
+	void removeLogFrom(int index, Log log){
+		Set<Log> logs = this.cubeLogs.get(index);
+		if ((logs != null) && logs.remove(log) && logs.isEmpty())
+			this.cubeLogs.remove(index);
+	}
+	
+	/**
+	 * Return the Boulders in the Cube with the given index.
+	 * @return	An unmodifiable empty set if the Cube holds no Boulders.
+	 */
+	Set<Boulder> getBouldersIn(int index){
+		Set<Boulder> boulders = this.cubeBoulders.get(index);
+		return (boulders == null) ? Collections.<Boulder>emptySet() : boulders;
+	}
+	
+	/**
+	 * Add the given Boulder to the Boulders in the Cube with the given index.
+	 */
+	void addBoulderTo(int index, Boulder boulder){
+		Set<Boulder> boulders = this.cubeBoulders.get(index);
+		if (boulders == null){
+			boulders = new HashSet<Boulder>();
+			this.cubeBoulders.put(index, boulders);
+		}
+		boulders.add(boulder);
+	}
+	
+	/**
+	 * Remove the given Boulder from the Boulders in the Cube with the given index.
+	 * @post	No set of Boulders is kept for the Cube if it no longer holds Boulders.
+	 */
+	void removeBoulderFrom(int index, Boulder boulder){
+		Set<Boulder> boulders = this.cubeBoulders.get(index);
+		if ((boulders != null) && boulders.remove(boulder) && boulders.isEmpty())
+			this.cubeBoulders.remove(index);
+	}
+	
+	/**
+	 * Return the Units that stand in the Cube with the given index.
+	 * @return	An unmodifiable empty set if no Unit stands in the Cube.
+	 */
+	Set<Unit> getUnitsIn(int index){
+		Set<Unit> units = this.cubeUnits.get(index);
+		return (units == null) ? Collections.<Unit>emptySet() : units;
 	}
 	
+	/**
+	 * Move the given Unit from the Cube with the given index to the Cube with the other given index.
+	 * @param from	The index of the Cube the Unit stood in, or -1 if it did not stand in this World.
+	 * @param to	The index of the Cube the Unit stands in, or -1 if it left this World.
+	 * @post	No set of Units is kept for a Cube if no Unit stands in it anymore.
+	 */
+	void moveUnit(Unit unit, int from, int to){
+		if (from >= 0){
+			Set<Unit> units = this.cubeUnits.get(from);
+			if ((units != null) && units.remove(unit) && units.isEmpty())
+				this.cubeUnits.remove(from);
+		}
+		if (to >= 0){
+			Set<Unit> units = this.cubeUnits.get(to);
+			if (units == null){
+				units = new HashSet<Unit>(4);
+				this.cubeUnits.put(to, units);
+			}
+			units.add(unit);
+		}
+	}
+	
+	/**
+	 * Return the number of Cubes in this World.
+	 */
+	public int getNbCubes(){
+		return this.nbXCubes*this.nbYCubes*this.nbZCubes;
+	}
 	
-	public int getCubeTypeOf(int x,int y,int z){
-		return this.getCubeAtPos(x, y, z).getType().getValue();
+	/**
+	 * Check whether the given coordinates lie inside this World.
+	 * @return	True if and only if every coordinate lies between 0 and the number of Cubes along its axis.
+	 */
+	public boolean isInside(int x, int y, int z){
+		return (x >= 0) && (x < this.nbXCubes) && (y >= 0) && (y < this.nbYCubes) && (z >= 0) && (z < this.nbZCubes);
+	}
+	
+	/**
+	 * Check whether a Unit can stand in the Cube at the given coordinates.
+	 * @return	True if and only if the Cube is passable and at least one of its neighbouring Cubes is solid or
+	 * 			lies outside this World.
+	 * @throws IndexOutOfBoundsException
+	 * 			The given coordinates do not lie inside this World.
+	 * 			| ! isInside(x, y, z)
+	 */
+	public boolean isWalkable(int x, int y, int z) throws IndexOutOfBoundsException{
+		return this.isWalkable(this.getCheckedIndex(x, y, z));
+	}
+	
+	/**
+	 * Check whether a Unit can stand in the Cube with the given index.
+	 * @see #isWalkable(int, int, int)
+	 */
+	public boolean isWalkable(int index){
+		return (this.walkable[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Return the words of the walkability bitset of this World: the bit of a Cube's index is set if and only if
+	 * the Cube is walkable. The array is shared and must not be modified.
+	 */
+	long[] getWalkableWords(){
+		return this.walkable;
+	}
+	
+	/**
+	 * Return the mask of the walkable neighbours of the Cube with the given index.
+	 * @return	An int of which bit n is set if and only if the n'th neighbour of the Cube lies inside this World and
+	 * 			is walkable. Neighbours are numbered by their offsets along the z, y and x axis, each from -1 to 1,
+	 * 			skipping the Cube itself.
+	 * @note	A World with a chunked terrain store keeps no masks, and looks them up in its walkability bitset.
+	 */
+	@Override
+	public int getNeighbourMask(int index){
+		if (this.neighbourMasks == null)
+			return Neighbourhood.getNeighbourMask(this, index % this.nbXCubes, (index / this.nbXCubes) % this.nbYCubes,
+					index / (this.nbXCubes * this.nbYCubes));
+		return this.neighbourMasks[index];
+	}
+	
+	/**
+	 * Return the differences between the index of a Cube of this World and the indices of its neighbours, by
+	 * their numbers in the neighbour mask. The array is shared and must not be modified.
+	 */
+	int[] getNeighbourOffsets(){
+		return this.neighbourOffsets;
+	}
+	
+	/**
+	 * Look up whether the Cube at the given coordinates, which lie inside this World, is walkable, and store it in
+	 * the walkability bitset of this World.
+	 * @post	If the walkability of the Cube changed, the neighbour masks of its neighbours are updated.
+	 */
+	private void updateWalkable(int x, int y, int z){
+		int index = this.getCubeIndex(x, y, z);
+		boolean walkable = this.computeWalkable(x, y, z);
+		if (walkable == this.isWalkable(index))
+			return;
+		this.walkable[index >>> 6] ^= 1L << index;
+		if (this.neighbourMasks == null)
+			return;
+		for (int n = 0 ; n < Neighbourhood.SIZE ; n++)
+			if (this.isInside(x + Neighbourhood.DX[n], y + Neighbourhood.DY[n], z + Neighbourhood.DZ[n]))
+				// the Cube is the neighbour of the opposite step of its neighbour
+				this.neighbourMasks[index + this.neighbourOffsets[n]] ^= 1 << Neighbourhood.getOpposite(n);
+	}
+	
+	/**
+	 * Check whether a Unit can stand in the Cube at the given coordinates, which lie inside this World, from the
+	 * types of the Cube and its neighbours.
+	 */
+	private boolean computeWalkable(int x, int y, int z){
+		if (! this.isPassableType(x, y, z))
+			return false;
+		for (int i = x-1 ; i <= x+1 ; i++)
+			for (int j = y-1 ; j <= y+1 ; j++)
+				for (int k = z-1 ; k <= z+1 ; k++){
+					if (! this.isInside(i, j, k))
+						return true;
+					if (! this.isPassableType(i, j, k))
+						return true;
+				}
+		return false;
+	}
+	
+	/**
+	 * Return the algorithm this World uses to plan the routes of its Units.
+	 */
+	@Basic
+	public PathAlgorithm getPathAlgorithm(){
+		return this.pathAlgorithm;
+	}
+	
+	/**
+	 * Set the algorithm this World uses to plan the routes of its Units.
+	 * @param pathAlgorithm The algorithm to be used.
+	 * @post	The path algorithm of this World is set to the given algorithm.
+	 * 			|new.getPathAlgorithm() == pathAlgorithm
+	 * @post	The PathCache of this World holds no routes found by the previous algorithm.
+	 * 			|new.getPathCache().getSize() == 0
+	 * @note	With JUMP_POINT, Units walk shortest rather than fastest routes; see PathAlgorithm.JUMP_POINT.
+	 * @throws IllegalArgumentException
+	 * 			The given algorithm is null.
+	 */
+	public void setPathAlgorithm(PathAlgorithm pathAlgorithm) throws IllegalArgumentException{
+		if (pathAlgorithm == null)
+			throw new IllegalArgumentException("No path algorithm given");
+		this.pathAlgorithm = pathAlgorithm;
+		this.pathCache.clear();
+	}
+	
+	/**
+	 * Return the labelling of the walkable Cubes of this World into connected components.
+	 */
+	@Basic
+	public WalkableComponents getWalkableComponents(){
+		return this.walkableComponents;
+	}
+	
+	/**
+	 * Check whether a Unit in the given start Cube can walk to the given goal Cube.
+	 * @return	True if and only if a route from start to goal exists.
+	 * 			|result == getWalkableComponents().isReachable(index of start, index of goal)
+	 */
+	public boolean isReachable(Cube start, Cube goal){
+		return this.walkableComponents.isReachable(
+				this.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition()),
+				this.getCubeIndex(goal.getXPosition(), goal.getYPosition(), goal.getZPosition()));
+	}
+	
+	/**
+	 * Return the hierarchical path finder of this World.
+	 * @return	The hierarchical path finder of this World. It is built the first time it is asked for and
+	 * 			repaired locally after terrain changes afterwards.
+	 */
+	public HierarchicalPathFinder getHierarchicalPathFinder(){
+		if (this.hierarchicalPathFinder == null)
+			this.hierarchicalPathFinder = new HierarchicalPathFinder(this);
+		return this.hierarchicalPathFinder;
+	}
+	
+	/**
+	 * Return the cache of routes between Cubes of this World.
+	 */
+	@Basic
+	public PathCache getPathCache(){
+		return this.pathCache;
+	}
+	
+	public int getCubeTypeOf(int x,int y,int z) throws IndexOutOfBoundsException, IllegalStateException{
+		this.checkNotTerminated();
+		return this.terrain.getType(this.getCheckedIndex(x, y, z));
 	}
 	
 	/**
@@ -134,11 +606,347 @@ public class World {
 	 * @param value The type value to which the Cube's type is to be set.
 	 * @effect The Cube at the given coordinates is given the proper CubeType.
 	 */
-	public void setCubeTypeOf(int x, int y, int z, int value){
+	public void setCubeTypeOf(int x, int y, int z, int value) throws IllegalStateException{
+		this.checkNotTerminated();
 		CubeType type = CubeType.getCubeTypeOfValue(value);
 		this.getCubeAtPos(x, y, z).setCubeType(type);
 	}
 	
+	/**
+	 * Return the DistanceField of this World toward the given category of targets.
+	 * @param target	The category of targets.
+	 * @return	The DistanceField of this World for the given category. It is computed the first time it is
+	 * 			asked for and kept up to date incrementally afterwards.
+	 */
+	public DistanceField getDistanceField(FieldTarget target){
+		DistanceField field = this.distanceFields.get(target);
+		if (field == null){
+			field = new DistanceField(this, target);
+			this.distanceFields.put(target, field);
+		}
+		return field;
+	}
+
+	/**
+	 * Change the types of any number of Cubes of this World at once.
+	 * @param edits	The edits to make, setting the types of Cubes through the batch they are given.
+	 * @effect	The edits are given a new TerrainBatch of this World, or the batch that is already open if this
+	 * 			World is being edited in a batch.
+	 * @post	Once the edits of a new batch are done, even if they end in an exception, the walkability of the
+	 * 			Cubes around the changed Cubes is looked up once, the connection to the border is updated in a
+	 * 			single pass over the Cubes that became solid or passable, and the terrain version of this World
+	 * 			increases by one if any Cube changed.
+	 * @post	Every listener that is a TerrainRegionListener, the TerrainChangeListener of this World included,
+	 * 			is notified of the batch once. Other listeners are notified of every changed Cube.
+	 * @throws IllegalArgumentException
+	 * 			No edits are given.
+	 */
+	public void editTerrain(Consumer<TerrainBatch> edits) throws IllegalArgumentException, IllegalStateException{
+		this.checkNotTerminated();
+		if (edits == null)
+			throw new IllegalArgumentException("No edits given");
+		if (this.terrainBatch != null){
+			edits.accept(this.terrainBatch);
+			return;
+		}
+		TerrainBatch batch = new TerrainBatch(this);
+		this.terrainBatch = batch;
+		try {
+			edits.accept(batch);
+		} finally {
+			this.terrainBatch = null;
+			batch.finish();
+			this.terrainChanged(batch);
+		}
+	}
+	
+	/**
+	 * Return the batch this World is being edited in, or null if it is not.
+	 */
+	TerrainBatch getTerrainBatch(){
+		return this.terrainBatch;
+	}
+
+	/**
+	 * Register that the type of the Cube at the given coordinates has changed.
+	 * @effect	The walkability of the Cube and its neighbours is looked up again.
+	 * @effect	The structures derived from the terrain of this World are told about the change.
+	 * @effect	Every listener added to this World is notified of the change.
+	 */
+	void terrainChanged(int x, int y, int z){
+		this.terrainVersion += 1;
+		// only the Cube and its neighbours can have a new solid neighbour or lose their last one
+		for (int k = Math.max(z - 1, 0) ; k <= Math.min(z + 1, this.nbZCubes - 1) ; k++)
+			for (int j = Math.max(y - 1, 0) ; j <= Math.min(y + 1, this.nbYCubes - 1) ; j++)
+				for (int i = Math.max(x - 1, 0) ; i <= Math.min(x + 1, this.nbXCubes - 1) ; i++)
+					this.updateWalkable(i, j, k);
+		this.registerChange(x, y, z);
+		for (TerrainChangeListener listener : this.terrainChangeListeners)
+			listener.notifyTerrainChanged(x, y, z);
+	}
+	
+	/**
+	 * Register that the types of the changed Cubes of the given batch, which is done, have changed.
+	 * @effect	The walkability of every Cube next to a changed Cube is looked up again, once.
+	 * @effect	The connection to the border of the Cubes of this World is brought up to date.
+	 * @effect	The structures derived from the terrain of this World are told about the whole batch at once.
+	 * @effect	Every listener added to this World and the TerrainChangeListener of this World are notified of the batch.
+	 */
+	private void terrainChanged(TerrainBatch batch){
+		int nbChanged = batch.getNbChanged();
+		if (nbChanged == 0)
+			return;
+		this.terrainVersion += 1;
+		BitSet changed = new BitSet(this.getNbCubes());
+		BitSet updated = new BitSet(this.getNbCubes());
+		for (int c = 0 ; c < nbChanged ; c++){
+			int index = batch.getChangedCube(c);
+			changed.set(index);
+			int x = index % this.nbXCubes, y = (index / this.nbXCubes) % this.nbYCubes, z = index / (this.nbXCubes * this.nbYCubes);
+			for (int k = Math.max(z - 1, 0) ; k <= Math.min(z + 1, this.nbZCubes - 1) ; k++)
+				for (int j = Math.max(y - 1, 0) ; j <= Math.min(y + 1, this.nbYCubes - 1) ; j++)
+					for (int i = Math.max(x - 1, 0) ; i <= Math.min(x + 1, this.nbXCubes - 1) ; i++)
+						if (! updated.get(this.getCubeIndex(i, j, k))){
+							updated.set(this.getCubeIndex(i, j, k));
+							this.updateWalkable(i, j, k);
+						}
+		}
+		this.registerChanges(changed, updated);
+		this.updateConnectedToBorder(batch);
+		for (TerrainChangeListener listener : this.terrainChangeListeners)
+			notifyTerrainChanged(listener, batch);
+		notifyTerrainChanged(this.tcl, batch);
+	}
+	
+	/**
+	 * Notify the given listener of the changed Cubes of the given batch: once if it is a TerrainRegionListener,
+	 * once for every changed Cube otherwise.
+	 */
+	private static void notifyTerrainChanged(TerrainChangeListener listener, TerrainBatch batch){
+		if (listener instanceof TerrainRegionListener){
+			((TerrainRegionListener) listener).notifyTerrainRegionChanged(batch);
+			return;
+		}
+		World world = batch.getWorld();
+		int nbX = world.getNbCubesX(), layer = nbX * world.getNbCubesY();
+		for (int c = 0 ; c < batch.getNbChanged() ; c++){
+			int index = batch.getChangedCube(c);
+			listener.notifyTerrainChanged(index % nbX, (index % layer) / nbX, index / layer);
+		}
+	}
+	
+	/**
+	 * Bring the connection to the border up to date with the changed Cubes of the given batch.
+	 * @post	The Cubes that became solid are connected first, so Cubes they hold up again are not caved in
+	 * 			because of Cubes that became passable in the same batch.
+	 * @post	Every solid Cube that is no longer connected to the border after the batch is registered to cave in.
+	 */
+	private void updateConnectedToBorder(TerrainBatch batch){
+		int[] solid = new int[batch.getNbChanged()], passable = new int[batch.getNbChanged()];
+		int nbSolid = 0, nbPassable = 0;
+		for (int c = 0 ; c < batch.getNbChanged() ; c++){
+			int index = batch.getChangedCube(c);
+			if (batch.getOriginalType(c).isPassable() && ! this.isPassableType(index))
+				solid[nbSolid++] = index;
+			else if (! batch.getOriginalType(c).isPassable() && this.isPassableType(index))
+				passable[nbPassable++] = index;
+		}
+		if (nbSolid > 0)
+			this.borderConnectivity.changePassableToSolid(solid, nbSolid);
+		if (nbPassable > 0)
+			this.collapseScheduler.schedule(this.borderConnectivity.changeSolidToPassable(passable, nbPassable));
+	}
+	
+	/**
+	 * Register that the type of the Cube at the given coordinates has changed with the structures derived from
+	 * the terrain of this World, once its walkability and that of its neighbours is up to date.
+	 * @effect	The Cube is added to or removed from the workshops of this World according to its new type.
+	 * @effect	Every DistanceField of this World is told about the change.
+	 */
+	private void registerChange(int x, int y, int z){
+		this.registerChangeOfType(x, y, z);
+		this.walkableComponents.terrainChanged(x, y, z);
+		for (DistanceField field : this.distanceFields.values())
+			field.terrainChanged(x, y, z);
+		this.pathCache.terrainChanged(x, y, z);
+		if (this.hierarchicalPathFinder != null)
+			this.hierarchicalPathFinder.terrainChanged(x, y, z);
+	}
+
+	/**
+	 * Register that the types of the given Cubes have changed in a single batch with the structures derived
+	 * from the terrain of this World, once the walkability of all Cubes around them is up to date.
+	 * @param changed	The Cubes whose type changed.
+	 * @param updated	The changed Cubes and their neighbours, whose walkability was looked up again.
+	 * @effect	Every changed Cube is added to or removed from the workshops of this World according to its new type.
+	 * @effect	The walkable components, every DistanceField, the path cache and the hierarchical path finder of
+	 * 			this World are each told about the whole batch once.
+	 */
+	private void registerChanges(BitSet changed, BitSet updated){
+		int nbX = this.nbXCubes, layer = nbX * this.nbYCubes;
+		for (int index = changed.nextSetBit(0) ; index >= 0 ; index = changed.nextSetBit(index + 1))
+			this.registerChangeOfType(index % nbX, (index % layer) / nbX, index / layer);
+		this.walkableComponents.terrainChanged(updated);
+		for (DistanceField field : this.distanceFields.values())
+			field.terrainChanged(changed);
+		this.pathCache.terrainChanged(updated);
+		if (this.hierarchicalPathFinder != null)
+			this.hierarchicalPathFinder.terrainChanged(updated);
+	}
+
+	/**
+	 * Register that the type of the Cube at the given coordinates has changed with the terrain snapshot and the
+	 * workshops of this World.
+	 */
+	private void registerChangeOfType(int x, int y, int z){
+		if (this.terrainSnapshot != null){
+			// past this many changes, copying the whole World is cheaper than updating the old snapshot
+			if (this.nbChangedSinceSnapshot >= this.getNbCubes() / 27){
+				this.terrainSnapshot = null;
+				this.nbChangedSinceSnapshot = 0;
+			}
+			else if (this.nbChangedSinceSnapshot == this.changedSinceSnapshot.length)
+				this.changedSinceSnapshot = Arrays.copyOf(this.changedSinceSnapshot, this.nbChangedSinceSnapshot * 2);
+			if (this.terrainSnapshot != null)
+				this.changedSinceSnapshot[this.nbChangedSinceSnapshot++] = this.getCubeIndex(x, y, z);
+		}
+		Cube cube = this.getCubeAtPos(x, y, z);
+		if (cube.getType() == CubeType.WORKSHOP){
+			if (! this.workshops.contains(cube)){
+				this.workshops.add(cube);
+				this.targetsChanged(FieldTarget.WORKSHOP);
+			}
+		}
+		else if (this.workshops.remove(cube))
+			this.targetsChanged(FieldTarget.WORKSHOP);
+	}
+
+	/**
+	 * Return the terrain version of this World, which increases with every change of the type of a Cube.
+	 */
+	public long getTerrainVersion(){
+		return this.terrainVersion;
+	}
+	
+	/**
+	 * Return an immutable snapshot of the walkable Cubes of this World at its current terrain version.
+	 * @return	A snapshot whose version is the current terrain version of this World. The snapshot of the
+	 * 			previous request is reused if the terrain did not change since, and is updated around the
+	 * 			changed Cubes otherwise, unless so many Cubes changed that copying the World is cheaper.
+	 */
+	TerrainSnapshot getTerrainSnapshot(){
+		if ((this.terrainSnapshot != null) && (this.terrainSnapshot.getVersion() == this.terrainVersion))
+			return this.terrainSnapshot;
+		if (this.terrainSnapshot == null)
+			this.terrainSnapshot = new TerrainSnapshot(this);
+		else
+			this.terrainSnapshot = new TerrainSnapshot(this.terrainSnapshot, this, this.changedSinceSnapshot, this.nbChangedSinceSnapshot);
+		this.nbChangedSinceSnapshot = 0;
+		return this.terrainSnapshot;
+	}
+	
+	/**
+	 * Check whether this World plans the routes of its Units asynchronously.
+	 */
+	public boolean isAsyncPlanning(){
+		return this.asyncPlanning;
+	}
+	
+	/**
+	 * Set whether this World plans the routes of its Units asynchronously.
+	 * @param asyncPlanning	True if routes have to be planned on the worker threads of the common fork-join pool.
+	 * @post	The asynchronous planning of this World is set to the given value.
+	 * 			|new.isAsyncPlanning() == asyncPlanning
+	 * @post	If asynchronous planning is switched on, this World has a PathPlanningService, which hands out
+	 * 			its results at the start of every advanceTime.
+	 */
+	public void setAsyncPlanning(boolean asyncPlanning){
+		this.asyncPlanning = asyncPlanning;
+		if (asyncPlanning && (this.planningService == null))
+			this.planningService = new PathPlanningService(this, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Return the PathPlanningService of this World, or null if it never planned asynchronously.
+	 */
+	@Basic
+	public PathPlanningService getPathPlanningService(){
+		return this.planningService;
+	}
+	
+	/**
+	 * Return the number of Cubes the route searches of this World may expand every tick, over all Units together.
+	 * @return	Zero if route searches are run to completion when they are started.
+	 */
+	public int getSearchBudget(){
+		return this.searchScheduler.getBudget();
+	}
+	
+	/**
+	 * Set the number of Cubes the route searches of this World may expand every tick.
+	 * @param budget	The new budget, or zero to run every search to completion when it is started.
+	 * @effect	The budget of the SearchScheduler of this World is set to the given budget.
+	 * 			|getSearchScheduler().setBudget(budget)
+	 * @throws IllegalArgumentException
+	 * 			The given budget is negative.
+	 */
+	public void setSearchBudget(int budget) throws IllegalArgumentException{
+		this.searchScheduler.setBudget(budget);
+	}
+	
+	/**
+	 * Return the scheduler that runs the route searches of this World in slices.
+	 */
+	@Basic
+	public SearchScheduler getSearchScheduler(){
+		return this.searchScheduler;
+	}
+	
+	/**
+	 * Return the scheduler that makes the solid Cubes of this World that lost their connection to the border
+	 * cave in.
+	 */
+	@Basic
+	public CollapseScheduler getCollapseScheduler(){
+		return this.collapseScheduler;
+	}
+	
+	/**
+	 * Return the planner that reserves the routes of the Units of Factions that plan cooperatively.
+	 */
+	public CooperativePlanner getCooperativePlanner(){
+		if (this.cooperativePlanner == null)
+			this.cooperativePlanner = new CooperativePlanner(this);
+		return this.cooperativePlanner;
+	}
+	
+	/**
+	 * Add the given listener to the listeners this World notifies of every change of a Cube's type.
+	 * @param listener	The listener to be added.
+	 * @post	The given listener is notified of every later terrain change, after the internal structures
+	 * 			of this World have been brought up to date.
+	 */
+	public void addTerrainChangeListener(TerrainChangeListener listener){
+		this.terrainChangeListeners.add(listener);
+	}
+	
+	/**
+	 * Remove the given listener from the listeners this World notifies of terrain changes.
+	 * @param listener	The listener to be removed.
+	 */
+	public void removeTerrainChangeListener(TerrainChangeListener listener){
+		this.terrainChangeListeners.remove(listener);
+	}
+	
+	/**
+	 * Register that targets of the given category have been added, removed or moved.
+	 */
+	void targetsChanged(FieldTarget target){
+		DistanceField field = this.distanceFields.get(target);
+		if (field != null)
+			field.targetsChanged();
+	}
+
 	/**
 	 * Return all game entities (Logs, boulders, Units) that occupy the given Cube.
 	 * @param cube The Cube of which all occupying entities (Logs, Boulder and Units) are to determined.
@@ -159,8 +967,8 @@ public class World {
 	 * @param z	The z coordinate of the position that needs to be checked.
 	 * @return True if and only if the Cube at the given coordinates is of z passable CubeType.
 	 */
-	public boolean isPassableCube(int x,int y,int z){
-		return this.getCubeAtPos(x, y, z).isPassableType();
+	public boolean isPassableCube(int x,int y,int z) throws IndexOutOfBoundsException{
+		return this.isPassableType(this.getCheckedIndex(x, y, z));
 	}
 	
 	/**
@@ -200,15 +1008,20 @@ public class World {
 				(int)Math.floor(newBoulder.getPosition()[1]),
 				(int)Math.floor(newBoulder.getPosition()[2])};
 		this.getCubeAtPos(position[0], position[1], position[2]).addBoulder(newBoulder);
+		this.targetsChanged(FieldTarget.BOULDER);
 	}
 	
 	/**
 	 * Remove the given Boulder from this World
 	 * @param boulder The Boulder that is to be removed.
 	 * @post	The Boulder is removed from the world.
+	 * @post	The Boulder is removed from the Cube that contains its position.
 	 */
 	public void removeBoulder(Boulder boulder){
 		this.boulders.remove(boulder);
+		this.removeBoulderFrom(this.getCubeIndex((int)Math.floor(boulder.getPosition()[0]),
+				(int)Math.floor(boulder.getPosition()[1]), (int)Math.floor(boulder.getPosition()[2])), boulder);
+		this.targetsChanged(FieldTarget.BOULDER);
 	}
 	
 	/**
@@ -222,18 +1035,24 @@ public class World {
 		int[] position = new int[]{(int)Math.floor(newLog.getPosition()[0]), (int)Math.floor(newLog.getPosition()[1]),
 				(int)Math.floor(newLog.getPosition()[2])};
 		this.getCubeAtPos(position[0], position[1], position[2]).addLog(newLog);
+		this.targetsChanged(FieldTarget.LOG);
 	}
 	
 	/**
 	 * Remove the given Log from this World.
 	 * @param log The log that is to be removed.
 	 * @effect	The given Log is removed from this World.
+	 * @post	The given Log is removed from the Cube that contains its position.
 	 */
 	public void removeLog(Log log){
 		this.logs.remove(log);
+		this.removeLogFrom(this.getCubeIndex((int)Math.floor(log.getPosition()[0]), (int)Math.floor(log.getPosition()[1]),
+				(int)Math.floor(log.getPosition()[2])), log);
+		this.targetsChanged(FieldTarget.LOG);
 	}
 	
-	public void addUnit(Unit unit) throws ModelException{
+	public void addUnit(Unit unit) throws ModelException, IllegalStateException{
+		this.checkNotTerminated();
 		if (this.getActiveUnits().size() == activeUnitsLimit)
 			throw new ModelException("Maximum number of units reached!");
 
@@ -258,18 +1077,27 @@ public class World {
 	
 	/**
 	 * Return a random Cube that is spawnable.
-	 * @return
+	 * @return	A walkable Cube of this World, every walkable Cube being as likely, or null if no Cube is walkable.
+	 * @note	The spawnable Cubes are looked up in the walkability bitset of this World, so no set of them is kept.
 	 */
 	public Cube getRandomSpawnCube(){
-		int size = this.viableSpawnCubes.size();
+		int size = 0;
+		for (long word : this.walkable)
+			size += Long.bitCount(word);
+		if (size == 0)
+			return null;
 		int random = new Random().nextInt(size);
-		int i = 0;
-		for (Cube cube : viableSpawnCubes){
-			if (i == random)
-				return cube;
-			i += 1;
+		for (int w = 0 ; w < this.walkable.length ; w++){
+			int count = Long.bitCount(this.walkable[w]);
+			if (random < count){
+				long word = this.walkable[w];
+				for (int i = 0 ; i < random ; i++)
+					word &= word - 1;
+				return this.getCubeAtIndex((w << 6) + Long.numberOfTrailingZeros(word));
+			}
+			random -= count;
 		}
-		return null; // kan eigenlijk niet voorkomen
+		return null;
 	}
 	
 	/**
@@ -360,13 +1188,57 @@ public class World {
 	 */
 	private Set<Boulder> boulders = new HashSet<Boulder>();
 	private Set<Log> logs = new HashSet<Log>();
-	Set<int[]> caveInCubes = new HashSet<int[]>();
-	public Set<Cube> viableSpawnCubes = new HashSet<Cube>();
-	private Cube[][][] cubes;
+	
+	/**
+	 * Variable registering the store holding the value of the CubeType of every Cube.
+	 */
+	private final TerrainStore terrain;
+	
+	/**
+	 * Variable registering, as a bitset, whether a Unit can stand in every Cube, at the bit of the index of the Cube.
+	 */
+	private final long[] walkable;
+	
+	/**
+	 * Variable registering, per Cube, the mask of its walkable neighbours, or null if the terrain store is chunked.
+	 */
+	private final int[] neighbourMasks;
+	private final int[] neighbourOffsets;
+	private boolean isTerminated = false;
+	
+	/**
+	 * Variables registering the Logs and Boulders of the Cubes that hold any, by the index of the Cube.
+	 */
+	private final Map<Integer, Set<Log>> cubeLogs = new HashMap<Integer, Set<Log>>();
+	private final Map<Integer, Set<Boulder>> cubeBoulders = new HashMap<Integer, Set<Boulder>>();
+	
+	/**
+	 * Variable registering the Units of the Cubes any Unit stands in, by the index of the Cube.
+	 */
+	private final Map<Integer, Set<Unit>> cubeUnits = new HashMap<Integer, Set<Unit>>();
 	private ArrayList<Cube> workshops = new ArrayList<Cube>();
 	private final TerrainChangeListener tcl;
 	
-	private ConnectedToBorder ctb;
+	private PathAlgorithm pathAlgorithm = PathAlgorithm.INDEXED;
+	private final PathCache pathCache;
+	private HierarchicalPathFinder hierarchicalPathFinder;
+	private final WalkableComponents walkableComponents;
+	private final Set<TerrainChangeListener> terrainChangeListeners = new LinkedHashSet<TerrainChangeListener>();
+	private long terrainVersion;
+	private TerrainBatch terrainBatch;
+	private TerrainSnapshot terrainSnapshot;
+	private int[] changedSinceSnapshot = new int[16];
+	private int nbChangedSinceSnapshot;
+	private boolean asyncPlanning = false;
+	private PathPlanningService planningService;
+	private final SearchScheduler searchScheduler = new SearchScheduler(0);
+	private final CollapseScheduler collapseScheduler = new CollapseScheduler(this, CollapseScheduler.DEFAULT_BUDGET);
+	private CooperativePlanner cooperativePlanner;
+	private double time;
+	private long nbArrivals;
+	private final Map<FieldTarget, DistanceField> distanceFields = new EnumMap<FieldTarget, DistanceField>(FieldTarget.class);
+	
+	private final BorderConnectivity borderConnectivity;
 	private final int nbXCubes;
 	private final int nbYCubes; 
 	private final int nbZCubes;
@@ -158,8 +158,7 @@ public class TaskFactory implements ITaskFactory<Expression<? extends Type>, Sta
 
 	@Override
 	public Expression<PosType> createWorkshopPosition(SourceLocation sourceLocation) {
-		// TODO Auto-generated method stub
-		return null;
+		return new UnitExpression<PosType>(a -> new PosType(a.getValue().getNearestWorkshop().getPosition()));
 	}
 
 	@Override
@@ -1,5 +1,6 @@
 package hillbillies.task.statement;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -24,12 +25,17 @@ public class MoveStatement extends ActionStatement{
 		
 		if (thisUnit.getActivity() == null){
 			// activity is either not initiated or completed
-			if (thisUnit.getCubeCoordinate() == this.target.evaluate(globalVars, thisUnit).getValue())
+			int[] position = this.target.evaluate(globalVars, thisUnit).getValue();
+			if (Arrays.equals(thisUnit.getCubeCoordinate(), position))
 				this.isExecuted = true;
 			
 			else{
+				// targets in another component of walkable cubes fail without searching
+				if (! thisUnit.getWorld().isInside(position[0], position[1], position[2]) || ! thisUnit.getWorld().isReachable(
+						thisUnit.occupiesCube(), thisUnit.getWorld().getCubeAtPos(position)))
+					throw new ExecutionErrorException();
 				try{
-					thisUnit.moveTo(target.evaluate(globalVars, thisUnit).getValue());
+					thisUnit.moveTo(position);
 				} catch (ModelException ex){
 					throw new ExecutionErrorException();
 				}
@@ -0,0 +1,128 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import hillbillies.model.BorderConnectivity;
+import hillbillies.model.ConnectivityBackend;
+import hillbillies.model.TerrainBackend;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import hillbillies.util.ConnectedToBorder;
+
+public class BorderConnectivityTest {
+
+	private static int[][][] randomTerrain(Random random, int nbX, int nbY, int nbZ) {
+		int[][][] types = new int[nbX][nbY][nbZ];
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				for (int z = 0; z < nbZ; z++)
+					types[x][y][z] = random.nextInt(3) == 0 ? 0 : 1;
+		return types;
+	}
+
+	private static ConnectedToBorder reference(int[][][] types) {
+		ConnectedToBorder ctb = new ConnectedToBorder(types.length, types[0].length, types[0][0].length);
+		for (int x = 0; x < types.length; x++)
+			for (int y = 0; y < types[0].length; y++)
+				for (int z = 0; z < types[0][0].length; z++)
+					if (types[x][y][z] == 0)
+						ctb.changeSolidToPassable(x, y, z);
+		return ctb;
+	}
+
+	private static void assertSameConnectivity(ConnectedToBorder expected, BorderConnectivity actual, int[][][] types) {
+		for (int x = 0; x < types.length; x++)
+			for (int y = 0; y < types[0].length; y++)
+				for (int z = 0; z < types[0][0].length; z++)
+					assertEquals("Connection of " + x + ", " + y + ", " + z, expected.isSolidConnectedToBorder(x, y, z),
+							actual.isSolidConnectedToBorder(x, y, z));
+	}
+
+	private static Set<Integer> connectedCubes(BorderConnectivity connectivity, int size) {
+		Set<Integer> result = new HashSet<Integer>();
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++)
+				for (int z = 0; z < size; z++)
+					if (connectivity.isSolidConnectedToBorder(x, y, z))
+						result.add(x + size * (y + size * z));
+		return result;
+	}
+
+	@Test
+	public void testInitialisation() {
+		Random random = new Random(4);
+		for (int trial = 0; trial < 10; trial++) {
+			int[][][] types = randomTerrain(random, 9, 8, 7);
+			for (ConnectivityBackend backend : ConnectivityBackend.values()) {
+				World world = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.FLAT, backend);
+				assertSameConnectivity(reference(types), world.getBorderConnectivity(), types);
+			}
+		}
+	}
+
+	@Test
+	public void testChanges() {
+		for (ConnectivityBackend backend : ConnectivityBackend.values()) {
+			Random random = new Random(6);
+			int[][][] types = randomTerrain(random, 8, 8, 8);
+			ConnectedToBorder expected = reference(types);
+			BorderConnectivity actual = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.FLAT, backend)
+					.getBorderConnectivity();
+			for (int change = 0; change < 300; change++) {
+				int x = random.nextInt(8), y = random.nextInt(8), z = random.nextInt(8);
+				Set<Integer> before = connectedCubes(actual, 8);
+				List<int[]> reported;
+				boolean mined = random.nextBoolean();
+				if (mined) {
+					expected.changeSolidToPassable(x, y, z);
+					reported = actual.changeSolidToPassable(x, y, z);
+				} else {
+					expected.changePassableToSolid(x, y, z);
+					reported = actual.changePassableToSolid(x, y, z);
+				}
+				assertSameConnectivity(expected, actual, types);
+				Set<Integer> flipped = connectedCubes(actual, 8);
+				for (int cube : before)
+					if (!flipped.remove(cube))
+						flipped.add(cube);
+				// a cube that becomes passable is not reported itself
+				if (mined)
+					flipped.remove(x + 8 * (y + 8 * z));
+				Set<Integer> reportedCubes = new HashSet<Integer>();
+				for (int[] cube : reported)
+					reportedCubes.add(cube[0] + 8 * (cube[1] + 8 * cube[2]));
+				assertEquals(backend + " reports the cubes whose connection changed", flipped, reportedCubes);
+			}
+		}
+	}
+
+	@Test
+	public void testDynamicMining() {
+		// mining a solid block from its centre outward, until the core hangs free
+		int[][][] types = new int[12][12][12];
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				for (int z = 0; z < 12; z++)
+					types[x][y][z] = 1;
+		BorderConnectivity dynamic = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.FLAT,
+				ConnectivityBackend.DYNAMIC).getBorderConnectivity();
+		ConnectedToBorder expected = reference(types);
+		int nbDisconnected = 0;
+		for (int x = 3; x <= 8; x++)
+			for (int y = 3; y <= 8; y++)
+				for (int z = 3; z <= 8; z++)
+					if (x == 3 || x == 8 || y == 3 || y == 8 || z == 3 || z == 8) {
+						expected.changeSolidToPassable(x, y, z);
+						nbDisconnected += dynamic.changeSolidToPassable(x, y, z).size();
+					}
+		assertEquals("The 4x4x4 core is cut loose", 64, nbDisconnected);
+		assertSameConnectivity(expected, dynamic, types);
+	}
+}
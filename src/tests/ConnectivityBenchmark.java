@@ -0,0 +1,85 @@
+package tests;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+import hillbillies.model.BorderConnectivity;
+import hillbillies.model.ConnectivityBackend;
+import hillbillies.model.TerrainBackend;
+import hillbillies.model.World;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * Compares the connectivity backends by mining the centre of a map cube by cube: the solid Cubes within the
+ * given distance of the centre are made passable from the centre outward. For every backend, the time to set up
+ * the World, the total and the longest time of a change, and the number of Cubes reported to be cut loose from
+ * the border are printed.
+ * Usage: ConnectivityBenchmark [map] [distance from the centre] [backend,...]
+ */
+public class ConnectivityBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		String map = args.length > 0 ? args[0] : "resources/50x50x50.wrld";
+		int distance = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		ConnectivityBackend[] backends = ConnectivityBackend.values();
+		if (args.length > 2) {
+			String[] names = args[2].split(",");
+			backends = new ConnectivityBackend[names.length];
+			for (int i = 0; i < names.length; i++)
+				backends[i] = ConnectivityBackend.valueOf(names[i]);
+		}
+		int[][][] types = load(map);
+		List<int[]> cubes = centre(types, distance);
+		for (ConnectivityBackend backend : backends) {
+			// the first run warms up the JIT
+			mine(types, backend, cubes);
+			mine(types, backend, cubes);
+		}
+	}
+
+	private static int[][][] load(String map) throws FileNotFoundException {
+		GameMap gameMap = new GameMapReader().readFromFile(map);
+		int[][][] types = new int[gameMap.getNbTilesX()][gameMap.getNbTilesY()][gameMap.getNbTilesZ()];
+		for (int x = 0; x < types.length; x++)
+			for (int y = 0; y < types[0].length; y++)
+				for (int z = 0; z < types[0][0].length; z++)
+					types[x][y][z] = gameMap.getTypeAt(x, y, z).getByteValue();
+		return types;
+	}
+
+	/**
+	 * Return the solid cubes within the given distance of the centre, by increasing distance.
+	 */
+	private static List<int[]> centre(int[][][] types, int distance) {
+		int cx = types.length / 2, cy = types[0].length / 2, cz = types[0][0].length / 2;
+		List<int[]> result = new ArrayList<int[]>();
+		for (int d = 0; d <= distance; d++)
+			for (int x = cx - d; x <= cx + d; x++)
+				for (int y = cy - d; y <= cy + d; y++)
+					for (int z = cz - d; z <= cz + d; z++)
+						if (Math.max(Math.abs(x - cx), Math.max(Math.abs(y - cy), Math.abs(z - cz))) == d
+								&& (types[x][y][z] == 1 || types[x][y][z] == 2))
+							result.add(new int[] { x, y, z });
+		return result;
+	}
+
+	private static void mine(int[][][] types, ConnectivityBackend backend, List<int[]> cubes) {
+		long start = System.nanoTime();
+		World world = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.FLAT, backend);
+		double setupTime = (System.nanoTime() - start) / 1e6;
+		BorderConnectivity connectivity = world.getBorderConnectivity();
+		long longest = 0, total = 0, disconnected = 0;
+		for (int[] cube : cubes) {
+			start = System.nanoTime();
+			disconnected += connectivity.changeSolidToPassable(cube[0], cube[1], cube[2]).size();
+			long time = System.nanoTime() - start;
+			total += time;
+			longest = Math.max(longest, time);
+		}
+		System.out.printf("%-10s setup %8.1f ms  %6d changes %8.1f ms  longest %7.2f ms  cut loose %d%n", backend,
+				setupTime, cubes.size(), total / 1e6, longest / 1e6, disconnected);
+	}
+}
@@ -0,0 +1,75 @@
+package tests;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+import ogp.framework.util.ModelException;
+
+/**
+ * Compares the throughput of Units that plan their routes alone with that of Units that plan cooperatively:
+ * two crowds of Units shuttle back and forth between the opposite ends of a narrow corridor, passing each
+ * other head-on, and for both ways of planning the arrivals per minute of game time, the number of times a
+ * Unit ended a tick in a Cube another Unit was already in and the time taken are printed. Units never block
+ * each other in this game, so Units that plan alone lose no time to congestion: what cooperation buys is the
+ * drop in shared Cubes, for the waits it costs.
+ * Usage: CrowdBenchmark [number of Units] [seconds of game time] [width of the corridor]
+ */
+public class CrowdBenchmark {
+
+	public static void main(String[] args) throws ModelException {
+		int nbUnits = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		double duration = args.length > 1 ? Double.parseDouble(args[1]) : 300;
+		int width = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		for (boolean cooperative : new boolean[] { false, true })
+			run(nbUnits, duration, width, cooperative);
+	}
+
+	private static void run(int nbUnits, double duration, int width, boolean cooperative) throws ModelException {
+		// the border of the World bounds the corridor, so no Unit cuts the corner of a wall
+		int[][][] types = new int[LENGTH][width][2];
+		for (int x = 0; x < LENGTH; x++)
+			for (int y = 0; y < width; y++)
+				types[x][y][0] = 1;
+		World world = new World(types, new DefaultTerrainChangeListener());
+		Unit[] units = new Unit[nbUnits];
+		int[][] homes = new int[nbUnits][], goals = new int[nbUnits][];
+		for (int i = 0; i < nbUnits; i++) {
+			// the first half starts on the left and the second half on the right, each in its mirrored spot
+			int j = i % (nbUnits / 2 + nbUnits % 2);
+			int x = j / width, y = j % width;
+			homes[i] = new int[] { (i < nbUnits / 2) ? x : LENGTH - 1 - x, y, 1 };
+			goals[i] = new int[] { LENGTH - 1 - homes[i][0], y, 1 };
+			units[i] = new Unit("Kobbe", homes[i], 50, 50, 50, 50, false);
+			world.addUnit(units[i]);
+			units[i].getFaction().setCooperativePathfinding(cooperative);
+		}
+		long shared = 0;
+		long start = System.nanoTime();
+		for (int tick = 0; tick * TICK < duration; tick++) {
+			for (int i = 0; i < nbUnits; i++)
+				// a Unit also stops moving when it rests, and then resumes toward the same goal
+				if (! units[i].isMoving()) {
+					if (units[i].occupiesCube().getIndex() == world.getCubeIndex(goals[i][0], goals[i][1], goals[i][2])) {
+						int[] next = homes[i];
+						homes[i] = goals[i];
+						goals[i] = next;
+					}
+					units[i].moveTo(goals[i]);
+				}
+			world.advanceTime(TICK);
+			Set<Integer> occupied = new HashSet<Integer>();
+			for (Unit unit : units)
+				if (! occupied.add(unit.occupiesCube().getIndex()))
+					shared += 1;
+		}
+		System.out.printf("%-12s %4d units  %8.1f arrivals/min  shared %6d  %8.1f ms%n",
+				cooperative ? "cooperative" : "alone", nbUnits, world.getArrivalsPerMinute(), shared,
+				(System.nanoTime() - start) / 1e6);
+	}
+
+	private static final int LENGTH = 40;
+	private static final double TICK = 0.1;
+}
@@ -0,0 +1,61 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import hillbillies.model.DistanceField;
+import hillbillies.model.FieldTarget;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+public class DistanceFieldTest {
+
+	private static int[][][] floorWithWorkshop() {
+		int[][][] types = new int[12][12][4];
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				types[x][y][0] = 1;
+		types[2][2][1] = 3;
+		return types;
+	}
+
+	@Test
+	public void testNextStepLeadsToTarget() {
+		World world = new World(floorWithWorkshop(), new DefaultTerrainChangeListener());
+		DistanceField field = world.getDistanceField(FieldTarget.WORKSHOP);
+		int index = world.getCubeIndex(9, 6, 1);
+		assertEquals("Diagonal steps first, then straight ones", Math.sqrt(2) * 4 + 3, field.getDistance(index), 1e-4);
+		int steps = 0;
+		while (field.getNextStep(index) >= 0) {
+			index = field.getNextStep(index);
+			steps++;
+		}
+		assertEquals(world.getCubeIndex(2, 2, 1), index);
+		assertEquals(7, steps);
+		assertEquals(world.getCubeAtPos(2, 2, 1), field.getNearestTarget(world.getCubeAtPos(9, 6, 1)));
+	}
+
+	@Test
+	public void testIncrementalUpdatesMatchRecomputation() {
+		int[][][] types = floorWithWorkshop();
+		World world = new World(types, new DefaultTerrainChangeListener());
+		DistanceField field = world.getDistanceField(FieldTarget.WORKSHOP);
+		Random random = new Random(4);
+		for (int change = 0; change < 200; change++) {
+			int x = random.nextInt(12), y = random.nextInt(12), z = 1 + random.nextInt(3);
+			int type = new int[] { 0, 0, 1, 3 }[random.nextInt(4)];
+			types[x][y][z] = type;
+			world.setCubeTypeOf(x, y, z, type);
+			if (change % 20 == 19) {
+				World fresh = new World(types, new DefaultTerrainChangeListener());
+				DistanceField expected = fresh.getDistanceField(FieldTarget.WORKSHOP);
+				for (int index = 0; index < world.getNbCubes(); index++)
+					assertEquals("Distance of cube " + index + " after " + (change + 1) + " changes",
+							expected.getDistance(index), field.getDistance(index), 1e-3);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package tests;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Random;
+
+import hillbillies.model.PathAlgorithm;
+import hillbillies.model.World;
+import hillbillies.part2.internal.map.GameMap;
+import hillbillies.part2.internal.map.GameMapReader;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * Compares the path algorithms on the bundled maps: for every map, the same random pairs of walkable Cubes
+ * are searched with every algorithm, without the PathCache, and the time and total route length are printed.
+ * Usage: PathBenchmark [map directory] [number of queries] [algorithm,...]
+ */
+public class PathBenchmark {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		File directory = new File(args.length > 0 ? args[0] : "resources");
+		int nbQueries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		PathAlgorithm[] algorithms = { PathAlgorithm.ASTAR, PathAlgorithm.INDEXED, PathAlgorithm.JUMP_POINT };
+		if (args.length > 2) {
+			String[] names = args[2].split(",");
+			algorithms = new PathAlgorithm[names.length];
+			for (int i = 0; i < names.length; i++)
+				algorithms[i] = PathAlgorithm.valueOf(names[i]);
+		}
+		File[] maps = directory.listFiles((dir, name) -> name.endsWith(".wrld"));
+		if (maps == null)
+			throw new FileNotFoundException(directory.getPath());
+		Arrays.sort(maps);
+		for (File map : maps) {
+			World world = load(map);
+			world.getPathCache().setCapacity(0);
+			int[][] queries = createQueries(world, nbQueries, new Random(1));
+			for (PathAlgorithm algorithm : algorithms) {
+				// the first run warms up the JIT
+				run(world, algorithm, queries);
+				long start = System.nanoTime();
+				long length = run(world, algorithm, queries);
+				System.out.printf("%-16s %-12s %8.1f ms  length %d%n", map.getName(), algorithm,
+						(System.nanoTime() - start) / 1e6, length);
+			}
+		}
+	}
+
+	private static World load(File map) throws FileNotFoundException {
+		GameMap gameMap = new GameMapReader().readFromFile(map.getPath());
+		int[][][] types = new int[gameMap.getNbTilesX()][gameMap.getNbTilesY()][gameMap.getNbTilesZ()];
+		for (int x = 0; x < types.length; x++)
+			for (int y = 0; y < types[0].length; y++)
+				for (int z = 0; z < types[0][0].length; z++)
+					types[x][y][z] = gameMap.getTypeAt(x, y, z).getByteValue();
+		return new World(types, new DefaultTerrainChangeListener());
+	}
+
+	private static int[][] createQueries(World world, int nbQueries, Random random) {
+		int[][] queries = new int[nbQueries][2];
+		for (int[] query : queries)
+			for (int i = 0; i < 2; i++)
+				do {
+					query[i] = random.nextInt(world.getNbCubes());
+				} while (!world.isWalkable(query[i]));
+		return queries;
+	}
+
+	private static long run(World world, PathAlgorithm algorithm, int[][] queries) {
+		long length = 0;
+		for (int[] query : queries) {
+			int[] route = algorithm.findRoute(world, query[0], query[1]);
+			if (route != null)
+				length += route.length;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,292 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hillbillies.model.Cube;
+import hillbillies.model.CubeType;
+import hillbillies.model.HierarchicalPathFinder;
+import hillbillies.model.Path;
+import hillbillies.model.PathAlgorithm;
+import hillbillies.model.PathCache;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+public class PathTest {
+
+	private World world;
+
+	@Before
+	public void setUp() {
+		// a 10x10x3 world with a rock floor and a rock wall at x == 5, with a single gap at y == 9
+		int[][][] types = new int[10][10][3];
+		for (int x = 0; x < 10; x++)
+			for (int y = 0; y < 10; y++)
+				types[x][y][0] = 1;
+		for (int y = 0; y < 9; y++)
+			for (int z = 1; z < 3; z++)
+				types[5][y][z] = 1;
+		world = new World(types, new DefaultTerrainChangeListener());
+	}
+
+	@Test
+	public void testRouteIsConnected() {
+		Cube start = world.getCubeAtPos(1, 1, 1);
+		Cube end = world.getCubeAtPos(8, 1, 1);
+		Stack<Cube> route = new Path(start, end).getRoute();
+		assertFalse("A route around the wall exists", route.isEmpty());
+		Cube previous = start;
+		while (!route.isEmpty()) {
+			Cube next = route.pop();
+			assertTrue("Every step goes to a neighbouring cube",
+					Math.abs(next.getXPosition() - previous.getXPosition()) <= 1
+					&& Math.abs(next.getYPosition() - previous.getYPosition()) <= 1
+					&& Math.abs(next.getZPosition() - previous.getZPosition()) <= 1);
+			assertTrue("Every step goes to a valid cube", next.isValidCube());
+			previous = next;
+		}
+		assertEquals("The route ends in the end cube", end, previous);
+	}
+
+	@Test
+	public void testShortestRoute() {
+		Path path = new Path(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(4, 4, 1));
+		assertEquals("Diagonal steps make the route as long as the largest coordinate difference", 3,
+				path.countStepsinRoute());
+	}
+
+	@Test
+	public void testUnreachable() {
+		world.getCubeAtPos(5, 9, 1).setCubeType(CubeType.ROCK);
+		world.getCubeAtPos(5, 9, 2).setCubeType(CubeType.ROCK);
+		Path path = new Path(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(8, 1, 1));
+		assertTrue("No route exists through a closed wall", path.getRoute().isEmpty());
+	}
+
+	@Test
+	public void testAlgorithmsAgree() {
+		Cube start = world.getCubeAtPos(1, 1, 1);
+		Cube end = world.getCubeAtPos(8, 2, 2);
+		world.setPathAlgorithm(PathAlgorithm.ASTAR);
+		int objectSteps = new Path(start, end).countStepsinRoute();
+		world.setPathAlgorithm(PathAlgorithm.INDEXED);
+		int indexSteps = new Path(start, end).countStepsinRoute();
+		assertTrue("A route exists", objectSteps > 0);
+		assertEquals("Both algorithms find equally long routes", objectSteps, indexSteps);
+		world.setPathAlgorithm(PathAlgorithm.INCREMENTAL);
+		assertEquals("The incremental planner finds an equally long route", indexSteps, new Path(start, end).countStepsinRoute());
+		world.setPathAlgorithm(PathAlgorithm.JUMP_POINT);
+		assertEquals("Jump Point Search finds an equally long route", indexSteps, new Path(start, end).countStepsinRoute());
+	}
+
+	@Test
+	public void testNearestEnd() {
+		Cube start = world.getCubeAtPos(1, 1, 1);
+		Cube near = world.getCubeAtPos(8, 8, 1);
+		Cube far = world.getCubeAtPos(8, 1, 1);
+		Path path = new Path(start, Arrays.asList(far, near));
+		assertEquals("The end behind the shorter detour around the wall is chosen", near, path.getEnd());
+		assertEquals(new Path(start, near).countStepsinRoute(), path.countStepsinRoute());
+		assertNull("No end is chosen when none is given", new Path(start, Arrays.<Cube>asList()).getEnd());
+	}
+
+	@Test
+	public void testCache() {
+		PathCache cache = world.getPathCache();
+		Cube start = world.getCubeAtPos(1, 1, 1);
+		Cube end = world.getCubeAtPos(8, 1, 1);
+		new Path(start, end);
+		new Path(start, end);
+		assertEquals(1, cache.getNbMisses());
+		assertEquals(1, cache.getNbHits());
+		// the gap is narrowed first: a closed gap is rejected by the walkable components before the cache is asked
+		world.getCubeAtPos(5, 9, 2).setCubeType(CubeType.ROCK);
+		assertFalse("Narrowing the gap keeps a route", new Path(start, end).getRoute().isEmpty());
+		assertEquals("Narrowing the gap invalidates the cached route", 1, cache.getNbInvalidations());
+		world.getCubeAtPos(5, 9, 1).setCubeType(CubeType.ROCK);
+		assertTrue("Closing the gap leaves no route", new Path(start, end).getRoute().isEmpty());
+		cache.setCapacity(0);
+		assertEquals(1, cache.getNbEvictions());
+	}
+
+	private static double routeLength(Cube start, Stack<Cube> route) {
+		double cost = 0;
+		Cube previous = start;
+		while (!route.isEmpty()) {
+			Cube next = route.pop();
+			cost += Math.sqrt(Math.pow(next.getXPosition() - previous.getXPosition(), 2)
+					+ Math.pow(next.getYPosition() - previous.getYPosition(), 2)
+					+ Math.pow(next.getZPosition() - previous.getZPosition(), 2));
+			previous = next;
+		}
+		return cost;
+	}
+
+	@Test
+	public void testHierarchical() {
+		// a 40x40x3 world with a rock floor and random rock pillars
+		int[][][] types = new int[40][40][3];
+		Random random = new Random(7);
+		for (int x = 0; x < 40; x++)
+			for (int y = 0; y < 40; y++) {
+				types[x][y][0] = 1;
+				if (random.nextInt(5) == 0)
+					types[x][y][1] = types[x][y][2] = 1;
+			}
+		types[1][1][1] = types[1][1][2] = types[38][37][1] = types[38][37][2] = 0;
+		World large = new World(types, new DefaultTerrainChangeListener());
+		Cube start = large.getCubeAtPos(1, 1, 1);
+		Cube end = large.getCubeAtPos(38, 37, 1);
+		large.getPathCache().setCapacity(0);
+		double optimal = new Path(start, end).getCost();
+		large.setPathAlgorithm(PathAlgorithm.HIERARCHICAL);
+		HierarchicalPathFinder finder = large.getHierarchicalPathFinder();
+		assertTrue("Entrances exist between the chunks", finder.getNbEntrances() > 0);
+		double hierarchical = new Path(start, end).getCost();
+		assertTrue("A route is found", hierarchical > 0);
+		assertTrue("The route is close to the cheapest route", hierarchical <= optimal * 1.1);
+		large.getCubeAtPos(20, 20, 1).setCubeType(CubeType.ROCK);
+		new Path(start, end);
+		assertTrue("Only the chunks around the change are repaired", finder.getNbRepairedChunks() <= 8);
+	}
+
+	@Test
+	public void testHierarchicalBound() {
+		// worlds with a rock floor, random rock pillars and long walls, the hardest case for the abstract graph
+		Random random = new Random(5);
+		int nbRoutes = 0;
+		double excess = 0;
+		for (int trial = 0; trial < 3; trial++) {
+			int size = 64;
+			int[][][] types = new int[size][size][4];
+			for (int x = 0; x < size; x++)
+				for (int y = 0; y < size; y++) {
+					types[x][y][0] = 1;
+					if (random.nextInt(8) == 0)
+						types[x][y][1] = types[x][y][2] = types[x][y][3] = 1;
+				}
+			for (int wall = 0; wall < 8; wall++) {
+				boolean alongY = random.nextBoolean();
+				int at = random.nextInt(size), from = random.nextInt(size), length = 10 + random.nextInt(size / 2);
+				for (int i = from; i < Math.min(size, from + length); i++)
+					for (int z = 1; z < 4; z++)
+						if (alongY)
+							types[at][i][z] = 1;
+						else
+							types[i][at][z] = 1;
+			}
+			World walled = new World(types, new DefaultTerrainChangeListener());
+			walled.getPathCache().setCapacity(0);
+			for (int query = 0; query < 80; query++) {
+				Cube start = walled.getCubeAtPos(random.nextInt(size), random.nextInt(size), 1 + random.nextInt(3));
+				Cube end = walled.getCubeAtPos(random.nextInt(size), random.nextInt(size), 1 + random.nextInt(3));
+				if (!start.isValidCube() || !end.isValidCube() || start.equals(end))
+					continue;
+				walled.setPathAlgorithm(PathAlgorithm.INDEXED);
+				double optimal = new Path(start, end).getCost();
+				walled.setPathAlgorithm(PathAlgorithm.HIERARCHICAL);
+				double hierarchical = new Path(start, end).getCost();
+				assertEquals("A route is found if and only if one exists", optimal == 0, hierarchical == 0);
+				if (optimal == 0)
+					continue;
+				nbRoutes += 1;
+				assertTrue("The route costs at most 6% more than the cheapest route: " + hierarchical + " against " + optimal,
+						hierarchical <= optimal * 1.06);
+				excess += hierarchical / optimal - 1;
+			}
+		}
+		assertTrue("Most routes are cheapest routes", excess / nbRoutes < 0.005);
+	}
+
+	@Test
+	public void testJumpPointOptimal() {
+		// worlds with a rock floor and random rock in the layers above it
+		Random random = new Random(3);
+		for (int trial = 0; trial < 20; trial++) {
+			int[][][] types = new int[16][16][5];
+			for (int x = 0; x < 16; x++)
+				for (int y = 0; y < 16; y++) {
+					types[x][y][0] = 1;
+					for (int z = 1; z < 5; z++)
+						if (random.nextInt(4) == 0)
+							types[x][y][z] = 1;
+				}
+			World rocky = new World(types, new DefaultTerrainChangeListener());
+			rocky.getPathCache().setCapacity(0);
+			for (int query = 0; query < 20; query++) {
+				Cube start = rocky.getCubeAtPos(random.nextInt(16), random.nextInt(16), 1 + random.nextInt(4));
+				Cube end = rocky.getCubeAtPos(random.nextInt(16), random.nextInt(16), 1 + random.nextInt(4));
+				if (!start.isValidCube() || !end.isValidCube())
+					continue;
+				rocky.setPathAlgorithm(PathAlgorithm.JUMP_POINT);
+				Stack<Cube> route = new Path(start, end).getRoute();
+				double shortest = shortestLength(rocky, start, end);
+				assertEquals("A route is found if and only if one exists", shortest == Double.POSITIVE_INFINITY,
+						route.isEmpty() && !start.equals(end));
+				for (Cube cube : route)
+					assertTrue("Every step goes to a valid cube", cube.isValidCube());
+				if (shortest != Double.POSITIVE_INFINITY)
+					assertEquals("The route is as short as possible", shortest, routeLength(start, route), 1e-4);
+			}
+		}
+	}
+
+	/**
+	 * Return the length of a shortest route between the given cubes, by Dijkstra's algorithm over the walkable
+	 * neighbours of every cube, with steps weighted by their length.
+	 */
+	private static double shortestLength(World world, Cube start, Cube end) {
+		int nbX = world.getNbCubesX(), layer = nbX * world.getNbCubesY();
+		double[] distance = new double[world.getNbCubes()];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		int first = world.getCubeIndex(start.getXPosition(), start.getYPosition(), start.getZPosition());
+		int goal = world.getCubeIndex(end.getXPosition(), end.getYPosition(), end.getZPosition());
+		distance[first] = 0;
+		PriorityQueue<double[]> open = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+		open.add(new double[] { 0, first });
+		while (!open.isEmpty()) {
+			double[] entry = open.poll();
+			int index = (int) entry[1];
+			if (entry[0] > distance[index])
+				continue;
+			if (index == goal)
+				return distance[index];
+			for (int mask = world.getNeighbourMask(index); mask != 0; mask &= mask - 1) {
+				// neighbours are numbered by their z, y and x offsets, skipping the cube itself
+				int n = Integer.numberOfTrailingZeros(mask), k = (n < 13) ? n : n + 1;
+				int dx = k % 3 - 1, dy = (k / 3) % 3 - 1, dz = k / 9 - 1;
+				int next = index + dx + dy * nbX + dz * layer;
+				double cost = distance[index] + Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (cost < distance[next]) {
+					distance[next] = cost;
+					open.add(new double[] { cost, next });
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	@Test
+	public void testTravelTime() {
+		// climbing a staircase of rock is faster than descending it
+		int[][][] types = new int[6][3][4];
+		for (int x = 0; x < 6; x++)
+			for (int y = 0; y < 3; y++)
+				for (int z = 0; z <= Math.min(x, 2); z++)
+					types[x][y][z] = 1;
+		World stairs = new World(types, new DefaultTerrainChangeListener());
+		Cube low = stairs.getCubeAtPos(0, 1, 1), high = stairs.getCubeAtPos(3, 1, 3);
+		Path up = new Path(low, high), down = new Path(high, low);
+		assertEquals(up.countStepsinRoute(), down.countStepsinRoute());
+		assertTrue("Moving up is faster", up.getCost() < down.getCost());
+		assertEquals("A route of one step up takes its length divided by 1.2", Math.sqrt(2) / 1.2,
+				new Path(low, stairs.getCubeAtPos(1, 1, 2)).getCost(), 1e-6);
+	}
+}
@@ -0,0 +1,118 @@
+package tests;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import hillbillies.model.PathAlgorithm;
+import hillbillies.model.TerrainBackend;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+/**
+ * Compares the terrain backends on a generated World: rock below a hilly surface with scattered trees. For every
+ * backend, the heap the World takes, the time of random reads of cube types, passability and connection to the
+ * border, and the time of a batch of route searches are printed, with the garbage collections during the reads
+ * and searches.
+ * Usage: TerrainBenchmark [size along x and y] [size along z] [number of reads] [backend,...]
+ */
+public class TerrainBenchmark {
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int height = args.length > 1 ? Integer.parseInt(args[1]) : 48;
+		int nbReads = args.length > 2 ? Integer.parseInt(args[2]) : 20000000;
+		TerrainBackend[] backends = TerrainBackend.values();
+		if (args.length > 3) {
+			String[] names = args[3].split(",");
+			backends = new TerrainBackend[names.length];
+			for (int i = 0; i < names.length; i++)
+				backends[i] = TerrainBackend.valueOf(names[i]);
+		}
+		int[][][] types = generate(size, height, new Random(1));
+		for (TerrainBackend backend : backends) {
+			long before = usedHeap();
+			World world = new World(types, new DefaultTerrainChangeListener(), backend);
+			long heap = usedHeap() - before;
+			try {
+				world.getPathCache().setCapacity(0);
+				// the first run warms up the JIT
+				read(world, nbReads / 10);
+				route(world, 20);
+				long collections = collections(), start = System.nanoTime();
+				long checksum = read(world, nbReads);
+				double readTime = (System.nanoTime() - start) / 1e6;
+				start = System.nanoTime();
+				long length = route(world, 200);
+				double routeTime = (System.nanoTime() - start) / 1e6;
+				System.out.printf("%-8s heap %8.1f MB  store %8.1f MB  reads %8.1f ms  routes %8.1f ms  gc %d  (%d, %d)%n",
+						backend, heap / 1e6, world.getTerrainStore().getStorageSize() / 1e6, readTime, routeTime,
+						collections() - collections, checksum, length);
+			} finally {
+				// an OFF_HEAP World holds its buffer until it is terminated
+				world.terminate();
+			}
+		}
+	}
+
+	private static int[][][] generate(int size, int height, Random random) {
+		int[][][] types = new int[size][size][height];
+		for (int x = 0; x < size; x++)
+			for (int y = 0; y < size; y++) {
+				int surface = height / 2 + (int) (3 * Math.sin(x / 7.0) + 3 * Math.cos(y / 9.0));
+				for (int z = 0; z < surface; z++)
+					types[x][y][z] = 1;
+				if (random.nextInt(40) == 0)
+					for (int z = surface; z < Math.min(surface + 4, height); z++)
+						types[x][y][z] = 2;
+			}
+		return types;
+	}
+
+	private static long read(World world, int nbReads) {
+		Random random = new Random(2);
+		int nbX = world.getNbCubesX(), nbY = world.getNbCubesY(), nbZ = world.getNbCubesZ();
+		long checksum = 0;
+		for (int i = 0; i < nbReads; i++) {
+			int x = random.nextInt(nbX), y = random.nextInt(nbY), z = random.nextInt(nbZ);
+			checksum += world.getCubeTypeOf(x, y, z);
+			if (world.isPassableCube(x, y, z))
+				checksum += 1;
+			else if (world.isSolidConnectedToBorder(x, y, z))
+				checksum += 2;
+		}
+		return checksum;
+	}
+
+	private static long route(World world, int nbQueries) {
+		Random random = new Random(3);
+		long length = 0;
+		for (int i = 0; i < nbQueries; i++) {
+			int start, goal;
+			do {
+				start = random.nextInt(world.getNbCubes());
+			} while (!world.isWalkable(start));
+			do {
+				goal = random.nextInt(world.getNbCubes());
+			} while (!world.isWalkable(goal));
+			int[] route = PathAlgorithm.INDEXED.findRoute(world, start, goal);
+			if (route != null)
+				length += route.length;
+		}
+		return length;
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long collections() {
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+			count += bean.getCollectionCount();
+		return count;
+	}
+}
@@ -4,9 +4,16 @@ import static hillbillies.tests.util.PositionAsserts.assertDoublePositionEquals;
 import static org.junit.Assert.*;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
+import hillbillies.model.Boulder;
+import hillbillies.model.Cube;
+import hillbillies.model.IncrementalPlanner;
+import hillbillies.model.Log;
+import hillbillies.model.PathAlgorithm;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
@@ -14,6 +21,16 @@ import ogp.framework.util.ModelException;
 
 public class UnitTest {
 	
+	/**
+	 * Return the types of a world of the given width and depth, three cubes high, with a rock floor and air above it.
+	 */
+	private static int[][][] floor(int nbX, int nbY) {
+		int[][][] types = new int[nbX][nbY][3];
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				types[x][y][0] = 1;
+		return types;
+	}
 
 	@Test
 	public void testName() throws ModelException {
@@ -164,6 +181,276 @@ public class UnitTest {
 	}
 	
 	
+	@Test
+	public void testRouteReuse() throws ModelException {
+		int[][][] types = floor(10, 10);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		
+		Kobbe.moveTo(new int[] {1,8,1});
+		Kobbe.advanceTime(0.1);
+		TestWorld.setCubeTypeOf(1, 5, 1, 1);
+		for (int i = 1 ; i < 200; i++){
+			Kobbe.advanceTime(0.1);
+		}
+		assertDoublePositionEquals("The unit walks around the new rock", 1.5, 8.5, 1.5,
+				Kobbe.getPosition());
+		assertEquals("Only the blocked step made the unit plan again", 1, Kobbe.getNbReplans());
+	}
+	
+	@Test
+	public void testIncrementalPlanner() throws ModelException {
+		// a wall with a gap at its far end makes every search from scratch expand most of the field
+		int[][][] types = floor(30, 30);
+		for (int x = 0; x < 28; x++)
+			for (int z = 1; z < 3; z++)
+				types[x][15][z] = 1;
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setPathAlgorithm(PathAlgorithm.INCREMENTAL);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		
+		Kobbe.moveTo(new int[] {1,28,1});
+		Kobbe.advanceTime(0.1);
+		IncrementalPlanner planner = Kobbe.getPlanner();
+		TestWorld.setCubeTypeOf(5, 1, 1, 1);
+		assertEquals("The rock on the route touches the search state", 1, planner.getNbRepairs());
+		// the repair happens when the unit asks for its next step, at the centre of the next cube
+		while (Kobbe.getCubeCoordinate()[0] == 1)
+			Kobbe.advanceTime(0.1);
+		while (Math.abs(Kobbe.getPosition()[0] - Kobbe.getCubeCoordinate()[0] - 0.5) > 0.01
+				|| Math.abs(Kobbe.getPosition()[1] - Kobbe.getCubeCoordinate()[1] - 0.5) > 0.01)
+			Kobbe.advanceTime(0.1);
+		long before = planner.getNbExpansions();
+		Kobbe.advanceTime(0.1);
+		long repair = planner.getNbExpansions() - before;
+		IncrementalPlanner fresh = new IncrementalPlanner(TestWorld, TestWorld.getCubeAtPos(1, 28, 1).getIndex());
+		fresh.findRoute(Kobbe.occupiesCube().getIndex());
+		assertTrue("Repairing expands far fewer cubes than planning again: " + repair + " against " + fresh.getNbExpansions(),
+				(repair > 0) && (10 * repair < fresh.getNbExpansions()));
+		for (int i = 1 ; i < 600; i++){
+			Kobbe.advanceTime(0.1);
+		}
+		assertDoublePositionEquals("The unit walks around the new rock", 1.5, 28.5, 1.5,
+				Kobbe.getPosition());
+		assertEquals("The unit kept its planner instead of planning again", 0, Kobbe.getNbReplans());
+	}
+	
+	@Test
+	public void testUnreachableGoalDropsPlanner() throws ModelException {
+		int[][][] types = floor(10, 10);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setPathAlgorithm(PathAlgorithm.INCREMENTAL);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		
+		Kobbe.moveTo(new int[] {1,8,1});
+		Kobbe.advanceTime(0.1);
+		IncrementalPlanner planner = Kobbe.getPlanner();
+		assertNotNull(planner);
+		for (int x = 0; x < 10; x++)
+			for (int z = 1; z < 3; z++)
+				TestWorld.setCubeTypeOf(x, 5, z, 1);
+		try {
+			for (int i = 0 ; i < 30; i++)
+				Kobbe.advanceTime(0.1);
+			fail("The goal can no longer be reached");
+		} catch (ModelException exc) {
+		}
+		assertNull("A unit that can not reach its goal drops its planner", Kobbe.getPlanner());
+		long repairs = planner.getNbRepairs();
+		TestWorld.setCubeTypeOf(1, 2, 2, 1);
+		assertEquals("The dropped planner no longer hears of terrain changes", repairs, planner.getNbRepairs());
+	}
+	
+	@Test
+	public void testNearestObjects() throws ModelException {
+		int[][][] types = floor(10, 10);
+		types[6][1][1] = 3;
+		types[8][8][1] = 3;
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		Log near = new Log(TestWorld, new int[] {4,1,1}), far = new Log(TestWorld, new int[] {8,7,1});
+		TestWorld.addLog(near);
+		TestWorld.addLog(far);
+		Boulder boulder = new Boulder(TestWorld, new int[] {2,5,1});
+		TestWorld.addBoulder(boulder);
+		
+		assertSame(near, Kobbe.getNearestLog());
+		assertSame(boulder, Kobbe.getNearestBoulder());
+		assertEquals(TestWorld.getCubeAtPos(6, 1, 1), Kobbe.getNearestWorkshop());
+	}
+	
+	@Test
+	public void testAsyncPlanning() throws ModelException {
+		int[][][] types = floor(10, 10);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setAsyncPlanning(true);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		
+		Kobbe.moveTo(new int[] {1,8,1});
+		assertTrue("The unit waits for its route", Kobbe.isPlanning());
+		TestWorld.setCubeTypeOf(1, 5, 1, 1);
+		TestWorld.getPathPlanningService().awaitResults();
+		TestWorld.advanceTime(0.1);
+		assertEquals("The route through the new rock is discarded", 1,
+				TestWorld.getPathPlanningService().getNbDiscarded());
+		assertTrue("A new route is requested", Kobbe.isPlanning());
+		assertDoublePositionEquals("The unit did not move yet", 1.5, 1.5, 1.5, Kobbe.getPosition());
+		TestWorld.getPathPlanningService().awaitResults();
+		for (int i = 1 ; i < 200; i++){
+			TestWorld.advanceTime(0.1);
+		}
+		assertDoublePositionEquals("The unit walks around the new rock", 1.5, 8.5, 1.5,
+				Kobbe.getPosition());
+		assertEquals(2, TestWorld.getPathPlanningService().getNbSubmitted());
+	}
+	
+	@Test
+	public void testAsyncPlanningUsesCache() throws ModelException {
+		int[][][] types = floor(10, 10);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setAsyncPlanning(true);
+		TestWorld.setPathAlgorithm(PathAlgorithm.JUMP_POINT);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		Kobbe.moveTo(new int[] {8,8,1});
+		TestWorld.getPathPlanningService().awaitResults();
+		TestWorld.advanceTime(0.1);
+		assertEquals("The route found on the current terrain is cached", 1, TestWorld.getPathCache().getSize());
+		long hits = TestWorld.getPathCache().getNbHits();
+		
+		Unit Jef = new Unit("Jef", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Jef);
+		Jef.moveTo(new int[] {8,8,1});
+		assertEquals(hits + 1, TestWorld.getPathCache().getNbHits());
+		for (int i = 0 ; i < 200; i++)
+			TestWorld.advanceTime(0.1);
+		assertDoublePositionEquals(8.5, 8.5, 1.5, Kobbe.getPosition());
+		assertDoublePositionEquals(8.5, 8.5, 1.5, Jef.getPosition());
+	}
+	
+	@Test
+	public void testSlicedSearch() throws ModelException {
+		int[][][] types = floor(20, 20);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setSearchBudget(20);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		Unit Jef = new Unit("Jef", new int[] {18,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		TestWorld.addUnit(Jef);
+		
+		Kobbe.moveTo(new int[] {1,18,1});
+		Jef.moveTo(new int[] {18,18,1});
+		TestWorld.advanceTime(0.1);
+		assertTrue("Neither search fits in one tick", Kobbe.isPlanning() && Jef.isPlanning());
+		for (int i = 1 ; i < 300; i++){
+			TestWorld.advanceTime(0.1);
+		}
+		assertDoublePositionEquals(1.5, 18.5, 1.5, Kobbe.getPosition());
+		assertDoublePositionEquals(18.5, 18.5, 1.5, Jef.getPosition());
+		assertEquals(2, TestWorld.getSearchScheduler().getNbMultiTickSearches());
+	}
+	
+	@Test
+	public void testSlicedSearchUsesCache() throws ModelException {
+		int[][][] types = floor(20, 20);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		TestWorld.setSearchBudget(20);
+		Unit Kobbe = new Unit("Kobbe", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Kobbe);
+		Kobbe.moveTo(new int[] {1,18,1});
+		for (int i = 0 ; i < 200; i++)
+			TestWorld.advanceTime(0.1);
+		assertDoublePositionEquals(1.5, 18.5, 1.5, Kobbe.getPosition());
+		
+		Unit Jef = new Unit("Jef", new int[] {1,1,1},50,50,50,50, false);
+		TestWorld.addUnit(Jef);
+		Jef.moveTo(new int[] {1,18,1});
+		TestWorld.advanceTime(0.1);
+		assertFalse("The route found by the first search is cached", Jef.isPlanning());
+		assertEquals(1, TestWorld.getSearchScheduler().getNbSearches());
+		for (int i = 0 ; i < 200; i++)
+			TestWorld.advanceTime(0.1);
+		assertDoublePositionEquals(1.5, 18.5, 1.5, Jef.getPosition());
+	}
+	
+	@Test
+	public void testCooperativePathfinding() throws ModelException {
+		int[] alone = runCrossing(false), cooperative = runCrossing(true);
+		assertTrue("Units that plan alone walk through each other", alone[0] > 0);
+		assertTrue("Cooperating Units step around each other", cooperative[0] < alone[0]);
+		assertEquals("All cooperating Units arrive", 4, cooperative[1]);
+	}
+	
+	@Test
+	public void testCooperativeCrowdInCorridor() throws ModelException {
+		// two crowds of six swap the ends of a corridor one Cube wide, head-on, so no two of them can pass
+		// each other without one planning alone
+		int[][][] types = new int[24][1][2];
+		for (int x = 0 ; x < 24 ; x++)
+			types[x][0][0] = 1;
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		Unit[] units = new Unit[12];
+		int[][] goals = new int[12][];
+		for (int i = 0 ; i < 12 ; i++){
+			int x = i % 6;
+			units[i] = new Unit("Kobbe", new int[] {(i < 6) ? x : 23 - x, 0, 1},50,50,50,50, false);
+			goals[i] = new int[] {(i < 6) ? 23 - x : x, 0, 1};
+			TestWorld.addUnit(units[i]);
+			units[i].getFaction().setCooperativePathfinding(true);
+		}
+		boolean[] arrived = new boolean[12];
+		int nbArrived = 0;
+		for (int tick = 0 ; (tick < 600) && (nbArrived < 12) ; tick++){
+			for (int i = 0 ; i < 12 ; i++){
+				if (arrived[i])
+					continue;
+				if (units[i].occupiesCube().equals(TestWorld.getCubeAtPos(goals[i][0], goals[i][1], goals[i][2]))){
+					arrived[i] = true;
+					nbArrived += 1;
+				}
+				// a Unit also stops moving when it rests, and then resumes toward the same goal
+				else if (! units[i].isMoving())
+					units[i].moveTo(goals[i]);
+			}
+			TestWorld.advanceTime(0.1);
+		}
+		assertEquals("Every Unit of the crowd arrives within a minute", 12, nbArrived);
+		assertTrue("Waiting Units planned alone", TestWorld.getCooperativePlanner().getNbSoloPlans() > 0);
+	}
+	
+	/**
+	 * Let four Units cross a narrow field to the opposite side, and return the number of ticks during which
+	 * two of them shared a Cube and the number of Units that arrived.
+	 */
+	private int[] runCrossing(boolean cooperative) throws ModelException {
+		int[][][] types = floor(12, 4);
+		World TestWorld = new World(types, new DefaultTerrainChangeListener());
+		Unit[] units = new Unit[4];
+		for (int i = 0 ; i < 4 ; i++){
+			units[i] = new Unit("Kobbe", new int[] {(i < 2) ? 1 : 9, 1 + i % 2, 1},50,50,50,50, false);
+			TestWorld.addUnit(units[i]);
+			units[i].getFaction().setCooperativePathfinding(cooperative);
+		}
+		for (int i = 0 ; i < 4 ; i++)
+			units[i].moveTo(new int[] {(i < 2) ? 9 : 1, 1 + i % 2, 1});
+		int shared = 0;
+		for (int tick = 0 ; tick < 400 ; tick++){
+			TestWorld.advanceTime(0.1);
+			Set<Cube> occupied = new HashSet<Cube>();
+			for (Unit unit : units)
+				if (! occupied.add(unit.occupiesCube()))
+					shared += 1;
+		}
+		assertEquals(40, TestWorld.getTime(), 1e-6);
+		assertEquals(TestWorld.getNbArrivals() * 60 / 40.0, TestWorld.getArrivalsPerMinute(), 1e-9);
+		return new int[] {shared, (int) TestWorld.getNbArrivals()};
+	}
+	
 //	@Test 
 //	public void testWork() throws ModelException{
 //		Unit Kobbe = new Unit("Kobbe", new int[] {0,2,0},50,50,50,50, false);
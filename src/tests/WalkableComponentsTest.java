@@ -0,0 +1,127 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hillbillies.model.WalkableComponents;
+import hillbillies.model.World;
+import hillbillies.part2.listener.DefaultTerrainChangeListener;
+
+public class WalkableComponentsTest {
+
+	private World world;
+
+	@Before
+	public void setUp() {
+		// a 10x10x3 world with a rock floor and a rock wall at x == 5 that splits it in two
+		int[][][] types = new int[10][10][3];
+		for (int x = 0; x < 10; x++)
+			for (int y = 0; y < 10; y++)
+				types[x][y][0] = 1;
+		for (int y = 0; y < 10; y++)
+			for (int z = 1; z < 3; z++)
+				types[5][y][z] = 1;
+		world = new World(types, new DefaultTerrainChangeListener());
+	}
+
+	@Test
+	public void testWallSeparatesComponents() {
+		WalkableComponents components = world.getWalkableComponents();
+		assertFalse(world.isReachable(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(8, 1, 1)));
+		assertTrue(world.isReachable(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(4, 8, 2)));
+		int before = components.getNbComponents();
+		world.setCubeTypeOf(5, 4, 1, 0);
+		world.setCubeTypeOf(5, 4, 2, 0);
+		assertTrue("Opening the wall joins both sides", world.isReachable(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(8, 1, 1)));
+		assertEquals(before - 1, components.getNbComponents());
+		world.setCubeTypeOf(5, 4, 1, 1);
+		world.setCubeTypeOf(5, 4, 2, 1);
+		assertFalse("Closing the wall splits them again", world.isReachable(world.getCubeAtPos(1, 1, 1), world.getCubeAtPos(8, 1, 1)));
+	}
+
+	@Test
+	public void testLabelsAreReused() {
+		WalkableComponents components = world.getWalkableComponents();
+		int before = components.getNbComponents();
+		for (int i = 0; i < 200; i++) {
+			world.setCubeTypeOf(5, 4, 1, 0);
+			world.setCubeTypeOf(5, 4, 2, 0);
+			world.setCubeTypeOf(5, 4, 1, 1);
+			world.setCubeTypeOf(5, 4, 2, 1);
+		}
+		assertEquals(before, components.getNbComponents());
+		int highest = -1;
+		for (int index = 0; index < world.getNbCubes(); index++)
+			highest = Math.max(highest, components.getComponent(index));
+		assertTrue("Splitting and merging again hands out the labels of vanished components", highest < 2 * before);
+	}
+
+	@Test
+	public void testIncrementalLabelsMatchRecomputation() {
+		int[][][] types = new int[12][12][5];
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				types[x][y][0] = 1;
+		World changing = new World(types, new DefaultTerrainChangeListener());
+		Random random = new Random(11);
+		for (int change = 0; change < 300; change++) {
+			int x = random.nextInt(12), y = random.nextInt(12), z = 1 + random.nextInt(4);
+			int type = random.nextInt(3) == 0 ? 0 : 1;
+			types[x][y][z] = type;
+			changing.setCubeTypeOf(x, y, z, type);
+			if (change % 25 == 24) {
+				World fresh = new World(types, new DefaultTerrainChangeListener());
+				assertSamePartition(fresh.getWalkableComponents(), changing.getWalkableComponents(), changing.getNbCubes());
+				assertEquals(fresh.getWalkableComponents().getNbComponents(), changing.getWalkableComponents().getNbComponents());
+			}
+		}
+	}
+
+	@Test
+	public void testBatchedLabelsMatchRecomputation() {
+		int[][][] types = new int[12][12][5];
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				types[x][y][0] = 1;
+		World changing = new World(types, new DefaultTerrainChangeListener());
+		Random random = new Random(13);
+		for (int round = 0; round < 12; round++) {
+			// every batch is registered with the components as a whole
+			changing.editTerrain(batch -> {
+				for (int change = 0; change < 25; change++) {
+					int x = random.nextInt(12), y = random.nextInt(12), z = 1 + random.nextInt(4);
+					int type = random.nextInt(3) == 0 ? 0 : 1;
+					types[x][y][z] = type;
+					batch.setCubeTypeOf(x, y, z, type);
+				}
+			});
+			World fresh = new World(types, new DefaultTerrainChangeListener());
+			assertSamePartition(fresh.getWalkableComponents(), changing.getWalkableComponents(), changing.getNbCubes());
+			for (int index = 0; index < changing.getNbCubes(); index++) {
+				int x = index % 12, y = (index / 12) % 12, z = index / 144;
+				assertEquals(fresh.isSolidConnectedToBorder(x, y, z), changing.isSolidConnectedToBorder(x, y, z));
+			}
+		}
+	}
+
+	private static void assertSamePartition(WalkableComponents expected, WalkableComponents actual, int nbCubes) {
+		Map<Integer, Integer> forward = new HashMap<Integer, Integer>();
+		Map<Integer, Integer> backward = new HashMap<Integer, Integer>();
+		for (int index = 0; index < nbCubes; index++) {
+			int e = expected.getComponent(index), a = actual.getComponent(index);
+			assertEquals("Walkability of cube " + index, e < 0, a < 0);
+			if (e < 0)
+				continue;
+			Integer knownA = forward.put(e, a), knownE = backward.put(a, e);
+			assertTrue("Cube " + index + " lies in the right component",
+					(knownA == null || knownA == a) && (knownE == null || knownE == e));
+		}
+		assertEquals(expected.getNbComponents(), actual.getNbComponents());
+	}
+}
@@ -2,9 +2,19 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
+import org.junit.After;
 import org.junit.Test;
 
+import hillbillies.model.ChunkedTerrainStore;
+import hillbillies.model.CollapseScheduler;
+import hillbillies.model.Cube;
+import hillbillies.model.CubeType;
 import hillbillies.model.Faction;
+import hillbillies.model.TerrainBackend;
+import hillbillies.model.TerrainBatch;
+import hillbillies.model.TerrainRegionListener;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
@@ -12,6 +22,17 @@ import ogp.framework.util.ModelException;
 
 public class WorldTest {
 
+	/**
+	 * The OFF_HEAP World of the current test, which is terminated after the test whether it passes or not.
+	 */
+	private World offHeap;
+
+	@After
+	public void tearDown() {
+		if (offHeap != null)
+			offHeap.terminate();
+	}
+
 	@Test
 	public void testConstructor() throws ModelException {
 		int[][][] types = new int[3][3][3];
@@ -60,4 +81,256 @@ public class WorldTest {
 		assertEquals("The world can not contain more than 100 units", 
 				TestWorld.getActiveUnits().size(), 100);
 	}
+	
+	@Test
+	public void testChunkedTerrain() throws ModelException {
+		int[][][] types = new int[40][40][40];
+		for (int x = 0; x < 40; x++)
+			for (int y = 0; y < 40; y++)
+				for (int z = 0; z < 20; z++)
+					types[x][y][z] = 1;
+		types[30][30][35] = 2;
+		World flat = new World(types, new DefaultTerrainChangeListener());
+		World chunked = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.CHUNKED);
+		ChunkedTerrainStore store = (ChunkedTerrainStore) chunked.getTerrainStore();
+		assertEquals(27, store.getNbChunks());
+		assertEquals("Only the chunks holding the surface and the tree are expanded", 10, store.getNbExpandedChunks());
+		assertEquals(27 + 10 * 16 * 16 * 16, store.getStorageSize());
+		for (int x = 0; x < 40; x++)
+			for (int y = 0; y < 40; y++)
+				for (int z = 0; z < 40; z++)
+					assertEquals(flat.getCubeTypeOf(x, y, z), chunked.getCubeTypeOf(x, y, z));
+		
+		int chunk = store.getChunkIndex(2, 2, 37);
+		assertTrue(store.isUniform(chunk));
+		chunked.setCubeTypeOf(2, 2, 37, 1);
+		assertFalse("A uniform chunk expands when one of its cubes changes", store.isUniform(chunk));
+		assertEquals(1, store.getChunkVersion(chunk));
+		assertArrayEquals(new int[] {chunk}, store.getDirtyChunks());
+		assertEquals(1, chunked.getCubeTypeOf(2, 2, 37));
+		assertEquals(0, chunked.getCubeTypeOf(3, 2, 37));
+		store.clearDirty(chunk);
+		assertFalse(store.isDirty(chunk));
+	}
+
+	@Test
+	public void testChunkedWorldMatchesFlatWorld() throws ModelException {
+		int[][][] types = new int[20][20][20];
+		for (int x = 0; x < 20; x++)
+			for (int y = 0; y < 20; y++)
+				for (int z = 0; z < 8 + (x + y) % 3; z++)
+					types[x][y][z] = 1;
+		World flat = new World(types, new DefaultTerrainChangeListener());
+		World chunked = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.CHUNKED);
+		Random random = new Random(7);
+		for (int round = 0; round < 4; round++) {
+			// the derived structures of the chunked World are kept up to date like those of the flat World
+			for (int change = 0; change < 60; change++) {
+				int x = 1 + random.nextInt(18), y = 1 + random.nextInt(18), z = 5 + random.nextInt(8);
+				int type = random.nextInt(2);
+				flat.setCubeTypeOf(x, y, z, type);
+				chunked.setCubeTypeOf(x, y, z, type);
+			}
+			for (int index = 0; index < flat.getNbCubes(); index++) {
+				assertEquals(flat.getNeighbourMask(index), chunked.getNeighbourMask(index));
+				Cube cube = flat.getCubeAtIndex(index);
+				assertEquals(flat.isSolidConnectedToBorder(cube.getXPosition(), cube.getYPosition(), cube.getZPosition()),
+						chunked.isSolidConnectedToBorder(cube.getXPosition(), cube.getYPosition(), cube.getZPosition()));
+			}
+			for (int query = 0; query < 50; query++) {
+				int start, goal;
+				do {
+					start = random.nextInt(flat.getNbCubes());
+				} while (!flat.isWalkable(start));
+				do {
+					goal = random.nextInt(flat.getNbCubes());
+				} while (!flat.isWalkable(goal));
+				assertEquals(flat.isReachable(flat.getCubeAtIndex(start), flat.getCubeAtIndex(goal)),
+						chunked.isReachable(chunked.getCubeAtIndex(start), chunked.getCubeAtIndex(goal)));
+			}
+		}
+	}
+	
+	@Test
+	public void testOffHeapTerrain() throws ModelException {
+		int[][][] types = new int[12][12][6];
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				types[x][y][(x + y) % 3] = 1 + (x * y) % 3;
+		World flat = new World(types, new DefaultTerrainChangeListener());
+		offHeap = new World(types, new DefaultTerrainChangeListener(), TerrainBackend.OFF_HEAP);
+		offHeap.setCubeTypeOf(4, 4, 5, 1);
+		flat.setCubeTypeOf(4, 4, 5, 1);
+		for (int x = 0; x < 12; x++)
+			for (int y = 0; y < 12; y++)
+				for (int z = 0; z < 6; z++){
+					assertEquals(flat.getCubeTypeOf(x, y, z), offHeap.getCubeTypeOf(x, y, z));
+					assertEquals(flat.isWalkable(x, y, z), offHeap.isWalkable(x, y, z));
+				}
+		offHeap.terminate();
+		assertTrue(offHeap.isTerminated());
+		assertEquals("The buffer is freed when the world is terminated", 0, offHeap.getTerrainStore().getStorageSize());
+		try {
+			offHeap.getCubeTypeOf(0, 0, 0);
+			fail("A terminated world can not be read");
+		} catch (IllegalStateException exc) {
+		}
+		offHeap.terminate();
+	}
+	
+	@Test
+	public void testWalkabilityFollowsTerrainChanges() throws ModelException {
+		int[][][] types = new int[8][8][6];
+		World world = new World(types, new DefaultTerrainChangeListener());
+		Random random = new Random(5);
+		for (int change = 0; change < 200; change++) {
+			int x = random.nextInt(8), y = random.nextInt(8), z = random.nextInt(6);
+			types[x][y][z] = random.nextInt(2);
+			world.setCubeTypeOf(x, y, z, types[x][y][z]);
+		}
+		World fresh = new World(types, new DefaultTerrainChangeListener());
+		for (int x = 0; x < 8; x++)
+			for (int y = 0; y < 8; y++)
+				for (int z = 0; z < 6; z++)
+					assertEquals("Walkability of " + x + ", " + y + ", " + z, fresh.isWalkable(x, y, z), world.isWalkable(x, y, z));
+	}
+
+	@Test
+	public void testNeighbourMasksFollowTerrainChanges() throws ModelException {
+		int[][][] types = new int[7][6][5];
+		World world = new World(types, new DefaultTerrainChangeListener());
+		Random random = new Random(9);
+		for (int change = 0; change < 150; change++) {
+			int x = random.nextInt(7), y = random.nextInt(6), z = random.nextInt(5);
+			types[x][y][z] = random.nextInt(2);
+			world.setCubeTypeOf(x, y, z, types[x][y][z]);
+		}
+		World fresh = new World(types, new DefaultTerrainChangeListener());
+		for (int index = 0; index < world.getNbCubes(); index++) {
+			assertEquals("Mask of cube " + index, fresh.getNeighbourMask(index), world.getNeighbourMask(index));
+			Cube cube = world.getCubeAtPos(index % 7, (index / 7) % 6, index / 42);
+			for (int mask = world.getNeighbourMask(index); mask != 0; mask &= mask - 1) {
+				// neighbours are numbered by their z, y and x offsets, skipping the cube itself
+				int n = Integer.numberOfTrailingZeros(mask), k = (n < 13) ? n : n + 1;
+				int nx = cube.getXPosition() + k % 3 - 1, ny = cube.getYPosition() + (k / 3) % 3 - 1,
+						nz = cube.getZPosition() + k / 9 - 1;
+				assertTrue(world.isWalkable(nx, ny, nz));
+				assertTrue(cube.isNeighbourOf(world.getCubeAtPos(nx, ny, nz)));
+			}
+		}
+	}
+
+	@Test
+	public void testTerrainBatch() throws ModelException {
+		int[][][] types = new int[7][7][7];
+		for (int x = 0; x < 7; x++)
+			for (int y = 0; y < 7; y++)
+				for (int z = 0; z < 7; z++)
+					types[x][y][z] = 1;
+		int[] regionCalls = new int[1], cubeCalls = new int[1];
+		World world = new World(types, new TerrainRegionListener() {
+			public void notifyTerrainChanged(int x, int y, int z) {
+				fail("The batch is notified as a whole");
+			}
+			public void notifyTerrainRegionChanged(TerrainBatch batch) {
+				assertTrue(batch.isDone());
+				assertArrayEquals(new int[] { 2, 2, 2 }, batch.getDirtyLow());
+				assertArrayEquals(new int[] { 4, 4, 4 }, batch.getDirtyHigh());
+				regionCalls[0]++;
+			}
+		});
+		world.addTerrainChangeListener((x, y, z) -> cubeCalls[0]++);
+		long version = world.getTerrainVersion();
+		// hollow out the cubes around the centre, and put one back
+		world.editTerrain(batch -> {
+			for (int x = 2; x <= 4; x++)
+				for (int y = 2; y <= 4; y++)
+					for (int z = 2; z <= 4; z++)
+						if (x != 3 || y != 3 || z != 3)
+							batch.setCubeType(x, y, z, CubeType.AIR);
+			batch.setCubeType(2, 2, 2, CubeType.ROCK);
+			world.getCubeAtPos(4, 4, 4).setCubeType(CubeType.WOOD);
+			world.getCubeAtPos(4, 4, 4).setCubeType(CubeType.AIR);
+		});
+		assertEquals("The batch is notified once", 1, regionCalls[0]);
+		assertEquals("Other listeners hear of every changed cube", 25, cubeCalls[0]);
+		assertEquals("The batch is a single terrain change", version + 1, world.getTerrainVersion());
+		assertFalse("The centre hangs free", world.isSolidConnectedToBorder(3, 3, 3));
+		assertTrue(world.isSolidConnectedToBorder(2, 2, 2));
+		World fresh = new World(new int[7][7][7], new DefaultTerrainChangeListener());
+		for (int x = 0; x < 7; x++)
+			for (int y = 0; y < 7; y++)
+				for (int z = 0; z < 7; z++)
+					fresh.setCubeTypeOf(x, y, z, world.getCubeTypeOf(x, y, z));
+		for (int index = 0; index < world.getNbCubes(); index++)
+			assertEquals(fresh.isWalkable(index), world.isWalkable(index));
+		world.editTerrain(batch -> batch.setCubeType(0, 0, 0, CubeType.ROCK));
+		assertEquals("A batch that changes nothing is not registered", version + 1, world.getTerrainVersion());
+	}
+
+	@Test
+	public void testCollapseScheduler() throws ModelException {
+		int[][][] types = new int[5][5][5];
+		// a floating bar of rock, and a wooden beam hanging from the border
+		types[1][2][2] = 1;
+		types[2][2][2] = 1;
+		types[3][2][2] = 1;
+		types[0][3][3] = 2;
+		types[1][3][3] = 2;
+		World world = new World(types, new DefaultTerrainChangeListener());
+		CollapseScheduler scheduler = world.getCollapseScheduler();
+		scheduler.setBudget(1);
+		assertEquals("The floating bar is scheduled", 3, scheduler.getBacklog());
+		long collapses = 0;
+		while (world.getTime() < CollapseScheduler.MAX_DELAY) {
+			world.advanceTime(0.1);
+			assertTrue("At most one cube caves in every tick", scheduler.getNbCollapses() - collapses <= 1);
+			collapses = scheduler.getNbCollapses();
+		}
+		world.advanceTime(0.1);
+		world.advanceTime(0.1);
+		assertEquals(3, scheduler.getNbCollapses());
+		assertEquals("Processed cubes leave the queue", 0, scheduler.getBacklog());
+		for (int x = 1; x <= 3; x++)
+			assertEquals(0, world.getCubeTypeOf(x, 2, 2));
+		assertEquals(2, world.getCubeTypeOf(1, 3, 3));
+		world.caveInCube(0, 3, 3);
+		assertEquals("Cutting the beam loose schedules the rest of it", 1, scheduler.getBacklog());
+		assertEquals("Nothing caves in before its delay", 2, world.getCubeTypeOf(1, 3, 3));
+		for (int tick = 0; tick <= CollapseScheduler.MAX_DELAY / 0.1 + 1; tick++)
+			world.advanceTime(0.1);
+		assertEquals(0, world.getCubeTypeOf(1, 3, 3));
+		assertEquals(4, scheduler.getNbCollapses());
+		assertEquals(0, scheduler.getBacklog());
+		try {
+			scheduler.setBudget(-1);
+			fail("A negative budget is refused");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testOccupancyFollowsUnits() throws ModelException {
+		int[][][] types = new int[5][5][5];
+		for (int x = 0; x < 5; x++)
+			for (int y = 0; y < 5; y++)
+				types[x][y][0] = 1;
+		World world = new World(types, new DefaultTerrainChangeListener());
+		Unit unit = new Unit("Test", new int[] { 2, 2, 1 }, 50, 50, 50, 50, false);
+		Unit other = new Unit("Other", new int[] { 2, 2, 1 }, 50, 50, 50, 50, false);
+		world.addUnit(unit);
+		world.addUnit(other);
+		Cube start = world.getCubeAtPos(2, 2, 1), next = world.getCubeAtPos(3, 2, 1);
+		assertEquals(2, start.isOccupiedByUnits().size());
+		unit.setPosition(new double[] { 3.2, 2.5, 1.5 });
+		assertEquals(1, start.isOccupiedByUnits().size());
+		assertTrue(next.isOccupiedByUnits().contains(unit));
+		assertTrue("Moving within a cube keeps the unit there",
+				world.isOccupiedBy(next).contains(unit));
+		unit.setPosition(new double[] { 3.9, 2.1, 1.5 });
+		assertTrue(next.isOccupiedByUnits().contains(unit));
+		unit.die();
+		assertTrue("A dead unit occupies no cube", next.isOccupiedByUnits().isEmpty());
+		assertTrue(start.isOccupiedByUnits().contains(other));
+	}
 }